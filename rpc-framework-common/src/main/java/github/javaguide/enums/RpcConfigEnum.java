@@ -8,7 +8,53 @@ import lombok.Getter;
 public enum RpcConfigEnum {
 
     RPC_CONFIG_PATH("rpc.properties"),
-    ZK_ADDRESS("rpc.zookeeper.address");
+    ZK_ADDRESS("rpc.zookeeper.address"),
+    CLIENT_TIMEOUT("rpc.client.timeout"),
+    CLIENT_CONNECTIONS("rpc.client.connections"),
+    CLIENT_FLUSH_CONSOLIDATION("rpc.client.flush.consolidation"),
+    CLIENT_FLUSH_MAX_MESSAGES("rpc.client.flush.max.messages"),
+    TRANSPORT("rpc.transport"),
+    CLIENT_WRITE_BUFFER_LOW_WATER_MARK("rpc.client.write.buffer.low"),
+    CLIENT_WRITE_BUFFER_HIGH_WATER_MARK("rpc.client.write.buffer.high"),
+    CLIENT_MAX_IN_FLIGHT("rpc.client.max.inflight"),
+    CLIENT_IN_FLIGHT_FAIL_FAST("rpc.client.inflight.failfast"),
+    CLIENT_HEDGE_ENABLED("rpc.client.hedge.enabled"),
+    CLIENT_HEDGE_PERCENTILE("rpc.client.hedge.percentile"),
+    CLIENT_HEDGE_BUDGET("rpc.client.hedge.budget"),
+    CLIENT_RETRIES("rpc.client.retries"),
+    CLIENT_RETRY_BACKOFF("rpc.client.retry.backoff"),
+    CLIENT_RETRY_MAX_BACKOFF("rpc.client.retry.backoff.max"),
+    CLIENT_BREAKER_ENABLED("rpc.client.breaker.enabled"),
+    CLIENT_BREAKER_WINDOW_SECONDS("rpc.client.breaker.window"),
+    CLIENT_BREAKER_MIN_REQUESTS("rpc.client.breaker.min.requests"),
+    CLIENT_BREAKER_ERROR_RATE("rpc.client.breaker.error.rate"),
+    CLIENT_BREAKER_SLOW_CALL_MILLIS("rpc.client.breaker.slow.call.millis"),
+    CLIENT_BREAKER_SLOW_CALL_RATE("rpc.client.breaker.slow.call.rate"),
+    CLIENT_BREAKER_OPEN_MILLIS("rpc.client.breaker.open.millis"),
+    CLIENT_BREAKER_HALF_OPEN_PROBES("rpc.client.breaker.half.open.probes"),
+    CLIENT_WARMUP_ENABLED("rpc.client.warmup.enabled"),
+    CLIENT_WARMUP_CONNECTIONS("rpc.client.warmup.connections"),
+    CLIENT_WARMUP_PING("rpc.client.warmup.ping"),
+    CLIENT_WARMUP_TIMEOUT("rpc.client.warmup.timeout"),
+    CLIENT_RECONNECT_BACKOFF("rpc.client.reconnect.backoff"),
+    CLIENT_RECONNECT_MAX_BACKOFF("rpc.client.reconnect.backoff.max"),
+    CLIENT_RECONNECT_MAX_ATTEMPTS("rpc.client.reconnect.max.attempts"),
+    CLIENT_STREAM_WINDOW("rpc.client.stream.window"),
+    SERVER_STREAM_CHUNK_SIZE("rpc.server.stream.chunk.size"),
+    CLIENT_STREAM_CHUNK_SIZE("rpc.client.stream.chunk.size"),
+    SERVER_STREAM_WINDOW("rpc.server.stream.window"),
+    SERVER_DISPATCH_PER_REQUEST("rpc.server.dispatch.per.request"),
+    SERVER_DISPATCH_THREADS("rpc.server.dispatch.threads"),
+    SERVER_DISPATCH_QUEUE_SIZE("rpc.server.dispatch.queue.size"),
+    SERVER_DIRECT_WARN_MILLIS("rpc.server.direct.warn.millis"),
+    SERVER_LIMIT_ENABLED("rpc.server.limit.enabled"),
+    SERVER_LIMIT_PER_METHOD("rpc.server.limit.per.method"),
+    SERVER_LIMIT_INITIAL("rpc.server.limit.initial"),
+    SERVER_LIMIT_MAX("rpc.server.limit.max"),
+    SERVER_LIMIT_TIMEOUT("rpc.server.limit.timeout"),
+    CODEC_FRAGMENT_SIZE("rpc.codec.fragment.size"),
+    CODEC_REASSEMBLY_MAX_CONNECTION_BYTES("rpc.codec.reassembly.max.connection.bytes"),
+    CODEC_REASSEMBLY_MAX_TOTAL_BYTES("rpc.codec.reassembly.max.total.bytes");
 
     private final String propertyValue;
 
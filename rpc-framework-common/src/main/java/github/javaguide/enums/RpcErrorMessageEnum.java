@@ -14,9 +14,18 @@ import lombok.ToString;
 public enum RpcErrorMessageEnum {
     CLIENT_CONNECT_SERVER_FAILURE("客户端连接服务端失败"),
     SERVICE_INVOCATION_FAILURE("服务调用失败"),
+    SERVICE_OVERLOADED("服务端过载，调用未执行"),
+    SERVICE_LIMITED("服务端达到并发上限，调用未执行"),
     SERVICE_CAN_NOT_BE_FOUND("没有找到指定的服务"),
+    METHOD_CAN_NOT_BE_FOUND("没有找到指定的方法"),
     SERVICE_NOT_IMPLEMENT_ANY_INTERFACE("注册的服务没有实现任何接口"),
-    REQUEST_NOT_MATCH_RESPONSE("返回结果错误！请求和返回的相应不匹配");
+    REQUEST_NOT_MATCH_RESPONSE("返回结果错误！请求和返回的相应不匹配"),
+    REQUEST_TIMEOUT("请求超时"),
+    TOO_MANY_IN_FLIGHT_REQUESTS("等待响应的请求过多"),
+    CIRCUIT_BREAKER_OPEN("服务节点已熔断"),
+    CHANNEL_CLOSED("连接已断开"),
+    STREAM_NOT_SUPPORTED("传输层不支持流式调用"),
+    SERVER_RECONNECTING("正在重连服务端");
 
     private final String message;
 
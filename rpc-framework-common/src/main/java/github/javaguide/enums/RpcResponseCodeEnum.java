@@ -14,7 +14,9 @@ import lombok.ToString;
 public enum RpcResponseCodeEnum {
 
     SUCCESS(200, "The remote call is successful"),
-    FAIL(500, "The remote call is fail");
+    FAIL(500, "The remote call is fail"),
+    OVERLOADED(503, "The server is overloaded, the remote call is not executed"),
+    LIMITED(429, "The server is at its concurrency limit, the remote call is not executed");
     private final int code;
 
     private final String message;
@@ -0,0 +1,28 @@
+package github.javaguide.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * netty 传输层实现，由 rpc.transport 配置
+ */
+@AllArgsConstructor
+@Getter
+public enum TransportTypeEnum {
+
+    NIO("nio"),
+    EPOLL("epoll"),
+    IO_URING("io_uring");
+
+    private final String name;
+
+    public static TransportTypeEnum getTransportType(String name) {
+        for (TransportTypeEnum c : TransportTypeEnum.values()) {
+            if (c.getName().equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+}
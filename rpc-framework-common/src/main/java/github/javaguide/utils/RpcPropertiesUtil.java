@@ -0,0 +1,66 @@
+package github.javaguide.utils;
+
+import github.javaguide.enums.RpcConfigEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Properties;
+
+/**
+ * 读取 rpc.properties 中的配置项，配置文件只在第一次使用时加载一次
+ */
+@Slf4j
+public final class RpcPropertiesUtil {
+
+    // rpc.properties 中的配置
+    private static final Properties PROPERTIES = loadProperties();
+
+    private RpcPropertiesUtil() {
+    }
+
+    /**
+     * 获取字符串配置
+     * @param rpcConfigEnum 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public static String getString(RpcConfigEnum rpcConfigEnum, String defaultValue) {
+        String value = PROPERTIES.getProperty(rpcConfigEnum.getPropertyValue());
+        return StringUtil.isBlank(value) ? defaultValue : value.trim();
+    }
+
+    /**
+     * 获取整数配置，格式错误时使用默认值
+     */
+    public static int getInt(RpcConfigEnum rpcConfigEnum, int defaultValue) {
+        return (int) getLong(rpcConfigEnum, defaultValue);
+    }
+
+    /**
+     * 获取长整数配置，格式错误时使用默认值
+     */
+    public static long getLong(RpcConfigEnum rpcConfigEnum, long defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("illegal value [{}] for [{}], use default [{}]", value, rpcConfigEnum.getPropertyValue(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 获取布尔配置
+     */
+    public static boolean getBoolean(RpcConfigEnum rpcConfigEnum, boolean defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    private static Properties loadProperties() {
+        Properties properties = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+        return properties == null ? new Properties() : properties;
+    }
+}
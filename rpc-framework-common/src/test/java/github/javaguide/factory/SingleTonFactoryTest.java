@@ -66,7 +66,7 @@ class SingletonBean implements Runnable {
         SingleTonFactoryTest.beans.add(SingletonFactory.getInstance(
                 ()-> SingletonBean.builder().msg("你好fzk").build(),
                 SingletonBean.class));
-        SingleTonFactoryTest.beans.add(SingletonFactory.getInstance((bean)-> bean.setMsg("你好fjh"),
+        SingleTonFactoryTest.beans.add(SingletonFactory.getInstanceWithInit((bean)-> bean.setMsg("你好fjh"),
                 SingletonBean.class));
         SingletonBean bean = SingletonFactory.getInstance(SingletonBean.class);
         SingleTonFactoryTest.beans.add(bean);
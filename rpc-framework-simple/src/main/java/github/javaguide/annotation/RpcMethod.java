@@ -0,0 +1,49 @@
+package github.javaguide.annotation;
+
+
+import java.lang.annotation.*;
+
+/**
+ *  用于标注服务接口中的方法，覆盖 {@link RpcReference} 上的调用配置
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface RpcMethod {
+
+    /**
+     * Call timeout in milliseconds, 0 means use the value of @RpcReference or the global config
+     */
+    long timeout() default 0;
+
+    /**
+     * Whether the method is idempotent and therefore safe to send more than once, e.g. as hedged requests
+     */
+    boolean idempotent() default false;
+
+    /**
+     * Retry times after a failed call of an idempotent method, 0 means use the value of @RpcReference or the global config
+     */
+    int retries() default 0;
+
+    /**
+     * Whether a void method is called one-way: the call returns once the request is handed to the connection,
+     * and the server sends no response, so failures on the server are not reported to the caller
+     */
+    boolean oneWay() default false;
+
+    /**
+     * Whether calls of this method on one connection are executed on the server one at a time in arrival order,
+     * instead of concurrently on the shared dispatch pool
+     */
+    boolean ordered() default false;
+
+    /**
+     * Whether the server runs the method directly on the I/O thread that read the request and writes the response
+     * inline, skipping the handoff to a worker thread. Only for cheap methods that never block, such as in-memory
+     * lookups: while the method runs, no other connection served by the same I/O thread is read or written
+     */
+    boolean direct() default false;
+
+}
@@ -23,4 +23,31 @@ public @interface RpcReference {
      */
     String group() default "";
 
+    /**
+     * Call timeout in milliseconds, 0 means use the global config rpc.client.timeout
+     */
+    long timeout() default 0;
+
+    /**
+     * Whether all methods of the service are idempotent and therefore safe to send more than once,
+     * e.g. as hedged requests
+     */
+    boolean idempotent() default false;
+
+    /**
+     * Retry times after a failed call of an idempotent method, 0 means use the global config rpc.client.retries
+     */
+    int retries() default 0;
+
+    /**
+     * Whether all void methods of the service are called one-way, see {@link RpcMethod#oneWay()}
+     */
+    boolean oneWay() default false;
+
+    /**
+     * Whether to subscribe to the service and connect to its providers when the proxy is created,
+     * so that the first call does not pay for it. The global config rpc.client.warmup.enabled turns it on for all references
+     */
+    boolean warmUp() default false;
+
 }
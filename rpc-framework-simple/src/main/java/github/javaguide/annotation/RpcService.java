@@ -23,4 +23,21 @@ public @interface RpcService {
      */
     String group() default "";
 
+    /**
+     * Threads of the service's own executor on the server, 0 means the service shares the server's dispatch pool.
+     * A service with its own executor cannot starve other services of threads, and is not starved by them
+     */
+    int threads() default 0;
+
+    /**
+     * Queue size of the service's own executor, 0 means no queue. Requests beyond the threads and the queue
+     * are answered at once with an overloaded response instead of waiting
+     */
+    int queueSize() default 0;
+
+    /**
+     * Whether all methods of the service run directly on the server's I/O thread, see {@link RpcMethod#direct()}
+     */
+    boolean direct() default false;
+
 }
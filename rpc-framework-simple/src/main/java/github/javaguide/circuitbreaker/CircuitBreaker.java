@@ -0,0 +1,217 @@
+package github.javaguide.circuitbreaker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 单个服务节点(服务名 + 地址)的熔断器
+ * <p>
+ * CLOSED：按秒分桶的滑动窗口统计错误率和慢调用率，任一超过阈值时熔断；
+ * OPEN：拒绝请求，openMillis 之后进入半开状态；
+ * HALF_OPEN：最多放行 halfOpenProbes 个探测请求，全部成功后关闭熔断，任一失败重新熔断。
+ * <p>
+ * 状态和窗口都用原子变量维护，负载均衡读取状态时不加锁。
+ * 请求的结果记到获取许可时的状态上，状态已经变化时迟到的结果不会占用或归还新状态的探测名额
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final LongSupplier clock;
+    private final AtomicReference<StateHolder> state;
+    // 滑动窗口，关闭熔断时整体替换
+    private volatile AtomicReferenceArray<Bucket> buckets;
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this(name, config, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, CircuitBreakerConfig config, LongSupplier clock) {
+        this.name = name;
+        this.config = config;
+        this.clock = clock;
+        this.state = new AtomicReference<>(new StateHolder(State.CLOSED, 0));
+        this.buckets = new AtomicReferenceArray<>(config.getWindowSeconds());
+    }
+
+    public State getState() {
+        return state.get().state;
+    }
+
+    /**
+     * 节点是否可以被负载均衡选中，不改变熔断器状态
+     */
+    public boolean isAvailable() {
+        StateHolder holder = state.get();
+        switch (holder.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return clock.getAsLong() - holder.openedAt >= config.getOpenMillis();
+            default:
+                return holder.permits.get() < config.getHalfOpenProbes();
+        }
+    }
+
+    /**
+     * 发送请求前获取许可，半开状态下会占用一个探测名额
+     * 请求结束时必须调用许可的 {@link Permission#onSuccess(long)}、{@link Permission#onError(long)} 或 {@link Permission#onIgnored()} 之一
+     * @return 熔断中时返回 null
+     */
+    public Permission tryAcquirePermission() {
+        while (true) {
+            StateHolder holder = state.get();
+            switch (holder.state) {
+                case CLOSED:
+                    return holder.permission;
+                case OPEN:
+                    if (clock.getAsLong() - holder.openedAt < config.getOpenMillis()) {
+                        return null;
+                    }
+                    if (state.compareAndSet(holder, new StateHolder(State.HALF_OPEN, holder.openedAt))) {
+                        log.info("circuit breaker [{}] half open", name);
+                    }
+                    break;
+                default:
+                    int permits = holder.permits.get();
+                    if (permits >= config.getHalfOpenProbes()) {
+                        return null;
+                    }
+                    if (holder.permits.compareAndSet(permits, permits + 1)) {
+                        return holder.permission;
+                    }
+            }
+        }
+    }
+
+    private void onResult(StateHolder holder, boolean failure, long durationMillis) {
+        boolean slow = config.getSlowCallMillis() > 0 && durationMillis >= config.getSlowCallMillis();
+        long now = clock.getAsLong();
+        if (holder.state == State.CLOSED) {
+            if (state.get() != holder) {
+                // 熔断后才结束的请求，不计入之后重新统计的窗口
+                return;
+            }
+            record(now, failure, slow);
+            if (shouldTrip(now) && state.compareAndSet(holder, new StateHolder(State.OPEN, now))) {
+                log.warn("circuit breaker [{}] open", name);
+            }
+        } else if (holder.state == State.HALF_OPEN) {
+            if (failure || slow) {
+                if (state.compareAndSet(holder, new StateHolder(State.OPEN, now))) {
+                    log.warn("circuit breaker [{}] probe failed, open again", name);
+                }
+            } else if (holder.successes.incrementAndGet() >= config.getHalfOpenProbes() && state.get() == holder) {
+                // 先换掉窗口再关闭熔断，关闭后的请求不会记到熔断前的窗口里
+                buckets = new AtomicReferenceArray<>(config.getWindowSeconds());
+                if (state.compareAndSet(holder, new StateHolder(State.CLOSED, 0))) {
+                    log.info("circuit breaker [{}] closed", name);
+                }
+            }
+        }
+    }
+
+    private void record(long now, boolean failure, boolean slow) {
+        AtomicReferenceArray<Bucket> window = buckets;
+        long second = now / 1000;
+        int index = (int) (second % window.length());
+        Bucket bucket = window.get(index);
+        if (bucket == null || bucket.second != second) {
+            Bucket newBucket = new Bucket(second);
+            bucket = window.compareAndSet(index, bucket, newBucket) ? newBucket : window.get(index);
+        }
+        bucket.total.incrementAndGet();
+        if (failure) {
+            bucket.failures.incrementAndGet();
+        }
+        if (slow) {
+            bucket.slowCalls.incrementAndGet();
+        }
+    }
+
+    private boolean shouldTrip(long now) {
+        AtomicReferenceArray<Bucket> window = buckets;
+        long oldestSecond = now / 1000 - window.length() + 1;
+        int total = 0;
+        int failures = 0;
+        int slowCalls = 0;
+        for (int i = 0; i < window.length(); i++) {
+            Bucket bucket = window.get(i);
+            if (bucket != null && bucket.second >= oldestSecond) {
+                total += bucket.total.get();
+                failures += bucket.failures.get();
+                slowCalls += bucket.slowCalls.get();
+            }
+        }
+        if (total < config.getMinRequests() || total == 0) {
+            return false;
+        }
+        return failures * 100 >= config.getErrorRatePercent() * total
+                || (config.getSlowCallMillis() > 0 && slowCalls * 100 >= config.getSlowCallRatePercent() * total);
+    }
+
+    /**
+     * 一次请求的许可，记录获取许可时的状态，结果只作用于该状态
+     */
+    public final class Permission {
+        private final StateHolder holder;
+
+        private Permission(StateHolder holder) {
+            this.holder = holder;
+        }
+
+        public void onSuccess(long durationMillis) {
+            onResult(holder, false, durationMillis);
+        }
+
+        public void onError(long durationMillis) {
+            onResult(holder, true, durationMillis);
+        }
+
+        /**
+         * 请求被取消等不计入统计的情况，归还半开状态下占用的探测名额
+         */
+        public void onIgnored() {
+            if (holder.state == State.HALF_OPEN) {
+                holder.permits.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 每次状态变化都替换为新对象，半开状态的探测计数随之重置
+     */
+    private final class StateHolder {
+        private final State state;
+        private final long openedAt;
+        private final AtomicInteger permits = new AtomicInteger();
+        private final AtomicInteger successes = new AtomicInteger();
+        // 同一状态下的许可没有各自的状态，共用一个对象
+        private final Permission permission = new Permission(this);
+
+        StateHolder(State state, long openedAt) {
+            this.state = state;
+            this.openedAt = openedAt;
+        }
+    }
+
+    private static final class Bucket {
+        private final long second;
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        Bucket(long second) {
+            this.second = second;
+        }
+    }
+}
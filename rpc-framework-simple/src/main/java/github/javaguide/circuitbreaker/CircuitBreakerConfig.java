@@ -0,0 +1,63 @@
+package github.javaguide.circuitbreaker;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcPropertiesUtil;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 熔断器配置，默认值可通过 rpc.properties 中 rpc.client.breaker.* 覆盖
+ */
+@AllArgsConstructor
+@Getter
+@Builder
+@ToString
+public class CircuitBreakerConfig {
+    /**
+     * 是否开启熔断，默认关闭，rpc.client.breaker.enabled=true 时开启
+     */
+    private final boolean enabled;
+    /**
+     * 滑动窗口长度(秒)，按秒分桶统计
+     */
+    private final int windowSeconds;
+    /**
+     * 窗口内请求数达到该值才会计算错误率和慢调用率
+     */
+    private final int minRequests;
+    /**
+     * 错误率达到该百分比时熔断
+     */
+    private final int errorRatePercent;
+    /**
+     * 超过该耗时(毫秒)的调用算作慢调用，0 表示不按延迟熔断
+     */
+    private final long slowCallMillis;
+    /**
+     * 慢调用率达到该百分比时熔断
+     */
+    private final int slowCallRatePercent;
+    /**
+     * 熔断后多久(毫秒)进入半开状态
+     */
+    private final long openMillis;
+    /**
+     * 半开状态下放行的探测请求数，全部成功后关闭熔断
+     */
+    private final int halfOpenProbes;
+
+    public static CircuitBreakerConfig fromProperties() {
+        return CircuitBreakerConfig.builder()
+                .enabled(RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_BREAKER_ENABLED, false))
+                .windowSeconds(Math.max(1, RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_WINDOW_SECONDS, 10)))
+                .minRequests(RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_MIN_REQUESTS, 20))
+                .errorRatePercent(RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_ERROR_RATE, 50))
+                .slowCallMillis(RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_BREAKER_SLOW_CALL_MILLIS, 0))
+                .slowCallRatePercent(RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_SLOW_CALL_RATE, 50))
+                .openMillis(RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_BREAKER_OPEN_MILLIS, 5000))
+                .halfOpenProbes(Math.max(1, RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_HALF_OPEN_PROBES, 3)))
+                .build();
+    }
+}
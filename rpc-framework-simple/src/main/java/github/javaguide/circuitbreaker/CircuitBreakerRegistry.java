@@ -0,0 +1,45 @@
+package github.javaguide.circuitbreaker;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 客户端侧每个服务节点的熔断器，按服务名和地址区分
+ */
+public class CircuitBreakerRegistry {
+
+    private final CircuitBreakerConfig config;
+    // key: rpcServiceName, value: (key: serviceAddress, value: circuitBreaker)
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, CircuitBreaker>> serviceCircuitBreakerMap = new ConcurrentHashMap<>();
+
+    public CircuitBreakerRegistry() {
+        this(CircuitBreakerConfig.fromProperties());
+    }
+
+    public CircuitBreakerRegistry(CircuitBreakerConfig config) {
+        this.config = config;
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public CircuitBreaker getCircuitBreaker(String rpcServiceName, String serviceAddress) {
+        return serviceCircuitBreakerMap.computeIfAbsent(rpcServiceName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(serviceAddress, k -> new CircuitBreaker(rpcServiceName + "@" + serviceAddress, config));
+    }
+
+    /**
+     * 节点是否可以被负载均衡选中，只读取熔断器状态，不加锁
+     */
+    public boolean isAvailable(String rpcServiceName, String serviceAddress) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        ConcurrentHashMap<String, CircuitBreaker> addressCircuitBreakerMap = serviceCircuitBreakerMap.get(rpcServiceName);
+        if (addressCircuitBreakerMap == null) {
+            return true;
+        }
+        CircuitBreaker circuitBreaker = addressCircuitBreakerMap.get(serviceAddress);
+        return circuitBreaker == null || circuitBreaker.isAvailable();
+    }
+}
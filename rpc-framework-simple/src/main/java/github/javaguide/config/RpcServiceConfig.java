@@ -22,6 +22,41 @@ public class RpcServiceConfig {
      */
     private String group = "";
 
+    /**
+     * client call timeout in milliseconds, 0 means use the global config
+     */
+    private long timeout;
+
+    /**
+     * whether all methods of the referenced service are idempotent
+     */
+    private boolean idempotent;
+
+    /**
+     * retry times of idempotent methods, 0 means use the global config
+     */
+    private int retries;
+
+    /**
+     * whether all void methods of the referenced service are called one-way
+     */
+    private boolean oneWay;
+
+    /**
+     * threads of the service's own executor on the server, 0 means sharing the server's dispatch pool
+     */
+    private int threads;
+
+    /**
+     * queue size of the service's own executor, 0 means no queue
+     */
+    private int queueSize;
+
+    /**
+     * whether all methods of the service run directly on the server's I/O thread
+     */
+    private boolean direct;
+
     /**
      * target service
      */
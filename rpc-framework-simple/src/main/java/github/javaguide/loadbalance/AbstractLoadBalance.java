@@ -1,8 +1,11 @@
 package github.javaguide.loadbalance;
 
+import github.javaguide.circuitbreaker.CircuitBreakerRegistry;
+import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.utils.CollectionUtil;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -12,12 +15,17 @@ import java.util.List;
  * @createTime 2020年06月21日 07:44:00
  */
 public abstract class AbstractLoadBalance implements LoadBalance {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry = SingletonFactory.getInstance(CircuitBreakerRegistry.class);
+
     @Override
     public String selectServiceAddress(List<String> serviceAddresses, RpcRequest rpcRequest) {
         // 1. 判空
         if (CollectionUtil.isEmpty(serviceAddresses)) {
             return null;
         }
+        // 跳过熔断中的节点
+        serviceAddresses = filterAvailable(serviceAddresses, rpcRequest.getRpcServiceName());
         // 2. 如果只有一个的情况
         if (serviceAddresses.size() == 1) {
             return serviceAddresses.get(0);
@@ -26,6 +34,27 @@ public abstract class AbstractLoadBalance implements LoadBalance {
         return doSelect(serviceAddresses, rpcRequest);
     }
 
+    /**
+     * 过滤掉熔断中的节点，只读取熔断器状态不加锁；没有节点熔断时直接返回原列表
+     * 所有节点都熔断时也返回原列表，由发送请求时的熔断器快速失败
+     */
+    private List<String> filterAvailable(List<String> serviceAddresses, String rpcServiceName) {
+        List<String> availableAddresses = null;
+        for (int i = 0; i < serviceAddresses.size(); i++) {
+            String serviceAddress = serviceAddresses.get(i);
+            boolean available = circuitBreakerRegistry.isAvailable(rpcServiceName, serviceAddress);
+            if (!available && availableAddresses == null) {
+                availableAddresses = new ArrayList<>(serviceAddresses.subList(0, i));
+            } else if (available && availableAddresses != null) {
+                availableAddresses.add(serviceAddress);
+            }
+        }
+        if (availableAddresses == null || availableAddresses.isEmpty()) {
+            return serviceAddresses;
+        }
+        return availableAddresses;
+    }
+
     protected abstract String doSelect(List<String> serviceAddresses, RpcRequest rpcRequest);
 
 }
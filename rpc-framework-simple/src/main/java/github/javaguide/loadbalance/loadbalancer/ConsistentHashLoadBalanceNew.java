@@ -9,6 +9,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -58,8 +59,8 @@ public class ConsistentHashLoadBalanceNew extends AbstractLoadBalance {
             selector = selectors.get(rpcServiceName);
             selector.reBuild(serviceAddresses);
         }
-        // 使用请求的uuid进行hash
-        return selector.selectNode(rpcServiceName + rpcRequest.getRequestId());
+        // 请求不再携带uuid，使用随机数进行hash，保持请求在各结点间均匀分布
+        return selector.selectNode(rpcServiceName + ThreadLocalRandom.current().nextInt());
     }
 
 
@@ -0,0 +1,99 @@
+package github.javaguide.provider;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个服务独占的有界线程池(舱壁)
+ * <p>
+ * 服务通过 {@link github.javaguide.annotation.RpcService#threads()} 声明自己的线程数和队列容量后，
+ * 其请求只在这个线程池中执行，慢服务占满的是自己的线程和队列，不会拖慢同一进程中的其他服务。
+ * 线程和队列都满时立即拒绝，由调用方返回过载响应，而不是让请求排队等待
+ */
+public class ServiceBulkhead {
+    private final String rpcServiceName;
+    private final ThreadPoolExecutor executor;
+    // 线程和队列都满而被拒绝的请求数
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private ServiceBulkhead(String rpcServiceName, ThreadPoolExecutor executor) {
+        this.rpcServiceName = rpcServiceName;
+        this.executor = executor;
+    }
+
+    /**
+     * @return 服务没有声明线程数时返回 null，使用服务端共享的分发线程池
+     */
+    public static ServiceBulkhead of(RpcServiceConfig rpcServiceConfig) {
+        if (rpcServiceConfig.getThreads() <= 0) {
+            return null;
+        }
+        CustomThreadPoolConfig bulkheadPoolConfig = new CustomThreadPoolConfig();
+        bulkheadPoolConfig.setCorePoolSize(rpcServiceConfig.getThreads());
+        bulkheadPoolConfig.setMaximumPoolSize(rpcServiceConfig.getThreads());
+        bulkheadPoolConfig.setKeepAliveTime(1);
+        bulkheadPoolConfig.setUnit(TimeUnit.MINUTES);
+        BlockingQueue<Runnable> workQueue = rpcServiceConfig.getQueueSize() > 0
+                ? new ArrayBlockingQueue<>(rpcServiceConfig.getQueueSize()) : new SynchronousQueue<>();
+        bulkheadPoolConfig.setWorkQueue(workQueue);
+        String rpcServiceName = rpcServiceConfig.getRpcServiceName();
+        return new ServiceBulkhead(rpcServiceName, (ThreadPoolExecutor) ThreadPoolFactoryUtil
+                .createCustomThreadPoolIfAbsent(bulkheadPoolConfig, "service-bulkhead-" + rpcServiceName, true));
+    }
+
+    /**
+     * 提交请求
+     *
+     * @throws RejectedExecutionException 线程和队列都已满
+     */
+    public void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw e;
+        }
+    }
+
+    public String getRpcServiceName() {
+        return rpcServiceName;
+    }
+
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * 正在执行请求的线程数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 在队列中等待的请求数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 队列的剩余容量
+     */
+    public int getQueueRemainingCapacity() {
+        return executor.getQueue().remainingCapacity();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
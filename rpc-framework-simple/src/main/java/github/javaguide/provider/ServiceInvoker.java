@@ -0,0 +1,179 @@
+package github.javaguide.provider;
+
+import github.javaguide.annotation.RpcMethod;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一个服务对象的方法调用器
+ * <p>
+ * 注册服务时一次性解析服务对象的所有 public 方法，为每个方法生成绑定了服务对象的 {@link MethodHandle}，
+ * 处理请求时按方法名和参数类型查找，不再每次调用 {@link Class#getMethod} 和 {@link Method#invoke}。
+ * 创建后只读，可以在多个线程中无锁访问；查找只比较参数类型数组，不分配对象
+ */
+public class ServiceInvoker {
+    private static final Class<?>[] NO_PARAM_TYPES = new Class<?>[0];
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    private final Object service;
+    // 服务独占的线程池，没有声明时为 null
+    private final ServiceBulkhead bulkhead;
+    // key 为方法名，value 为同名的各个重载方法
+    private final Map<String, MethodInvoker[]> methods = new HashMap<>();
+
+    public ServiceInvoker(Object service) {
+        this(service, null, false);
+    }
+
+    public ServiceInvoker(RpcServiceConfig rpcServiceConfig) {
+        this(rpcServiceConfig.getService(), ServiceBulkhead.of(rpcServiceConfig), rpcServiceConfig.isDirect());
+    }
+
+    /**
+     * @param direct 服务的所有方法是否都在 I/O 线程中直接执行
+     */
+    private ServiceInvoker(Object service, ServiceBulkhead bulkhead, boolean direct) {
+        this.service = service;
+        this.bulkhead = bulkhead;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Method method : service.getClass().getMethods()) {
+            MethodInvoker[] overloads = methods.getOrDefault(method.getName(), new MethodInvoker[0]);
+            int index = indexOf(overloads, method.getParameterTypes());
+            if (index >= 0) {
+                // 协变返回值产生的桥接方法与实际方法参数相同，保留实际方法
+                if (!method.isBridge()) {
+                    overloads[index] = new MethodInvoker(lookup, service, method, direct);
+                }
+                continue;
+            }
+            overloads = Arrays.copyOf(overloads, overloads.length + 1);
+            overloads[overloads.length - 1] = new MethodInvoker(lookup, service, method, direct);
+            methods.put(method.getName(), overloads);
+        }
+    }
+
+    public Object getService() {
+        return service;
+    }
+
+    /**
+     * @return 服务独占的线程池，没有声明时返回 null
+     */
+    public ServiceBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * 调用服务方法
+     *
+     * @param paramTypes 参数类型，为 null 时视为没有参数
+     * @param parameters 参数，为 null 时视为没有参数
+     * @return 服务方法的返回值
+     */
+    public Object invoke(String methodName, Class<?>[] paramTypes, Object[] parameters) {
+        MethodInvoker methodInvoker = getMethodInvoker(methodName, paramTypes);
+        try {
+            return methodInvoker.methodHandle.invokeExact(parameters == null ? NO_PARAMETERS : parameters);
+        } catch (Error e) {
+            // OutOfMemoryError 等不属于服务方法的业务异常，不包装
+            throw e;
+        } catch (Throwable e) {
+            throw new RpcException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 方法是否要求同一连接上的调用按到达顺序逐个执行，见 {@link RpcMethod#ordered()}
+     * 没有找到方法时返回 false，由调用时报告错误
+     */
+    public boolean isOrdered(String methodName, Class<?>[] paramTypes) {
+        MethodInvoker methodInvoker = findMethodInvoker(methodName, paramTypes);
+        return methodInvoker != null && methodInvoker.ordered;
+    }
+
+    /**
+     * 方法是否在 I/O 线程中直接执行，见 {@link RpcMethod#direct()}
+     * 没有找到方法时返回 false
+     */
+    public boolean isDirect(String methodName, Class<?>[] paramTypes) {
+        MethodInvoker methodInvoker = findMethodInvoker(methodName, paramTypes);
+        return methodInvoker != null && methodInvoker.direct;
+    }
+
+    private MethodInvoker findMethodInvoker(String methodName, Class<?>[] paramTypes) {
+        MethodInvoker[] overloads = methods.get(methodName);
+        int index = overloads == null ? -1 : indexOf(overloads, paramTypes == null ? NO_PARAM_TYPES : paramTypes);
+        return index < 0 ? null : overloads[index];
+    }
+
+    private MethodInvoker getMethodInvoker(String methodName, Class<?>[] paramTypes) {
+        MethodInvoker methodInvoker = findMethodInvoker(methodName, paramTypes);
+        if (methodInvoker == null) {
+            throw new RpcException(RpcErrorMessageEnum.METHOD_CAN_NOT_BE_FOUND,
+                    service.getClass().getName() + "." + methodName + Arrays.toString(paramTypes));
+        }
+        return methodInvoker;
+    }
+
+    private static int indexOf(MethodInvoker[] overloads, Class<?>[] paramTypes) {
+        for (int i = 0; i < overloads.length; i++) {
+            if (Arrays.equals(overloads[i].paramTypes, paramTypes)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class MethodInvoker {
+        private final Class<?>[] paramTypes;
+        // 类型统一为 (Object[])Object，以便用 invokeExact 调用
+        private final MethodHandle methodHandle;
+        private final boolean ordered;
+        private final boolean direct;
+
+        private MethodInvoker(MethodHandles.Lookup lookup, Object service, Method method, boolean direct) {
+            this.paramTypes = method.getParameterTypes();
+            RpcMethod rpcMethod = findRpcMethod(service.getClass(), method);
+            this.ordered = rpcMethod != null && rpcMethod.ordered();
+            this.direct = direct || rpcMethod != null && rpcMethod.direct();
+            // 服务实现类不一定是 public 的，关闭访问检查，否则其 public 方法也无法调用
+            method.setAccessible(true);
+            try {
+                this.methodHandle = lookup.unreflect(method).bindTo(service)
+                        .asSpreader(Object[].class, paramTypes.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (IllegalAccessException e) {
+                throw new RpcException(e.getMessage(), e);
+            }
+        }
+
+        /**
+         * {@link RpcMethod} 通常标注在服务接口的方法上，实现类的方法上没有时到其实现的接口中查找
+         */
+        private static RpcMethod findRpcMethod(Class<?> serviceClass, Method method) {
+            RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+            for (Class<?> clazz = serviceClass; rpcMethod == null && clazz != null; clazz = clazz.getSuperclass()) {
+                for (Class<?> serviceInterface : clazz.getInterfaces()) {
+                    try {
+                        rpcMethod = serviceInterface.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(RpcMethod.class);
+                    } catch (NoSuchMethodException e) {
+                        continue;
+                    }
+                    if (rpcMethod != null) {
+                        break;
+                    }
+                }
+            }
+            return rpcMethod;
+        }
+    }
+}
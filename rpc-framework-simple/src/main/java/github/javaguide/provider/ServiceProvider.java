@@ -2,6 +2,8 @@ package github.javaguide.provider;
 
 import github.javaguide.config.RpcServiceConfig;
 
+import java.util.List;
+
 /**
  * store and provide service object. 
  *
@@ -21,6 +23,17 @@ public interface ServiceProvider {
      */
     Object getService(String rpcServiceName);
 
+    /**
+     * @param rpcServiceName rpc service name
+     * @return invoker of the service object, resolved when the service is added
+     */
+    ServiceInvoker getServiceInvoker(String rpcServiceName);
+
+    /**
+     * @return executors of the services which declare their own threads
+     */
+    List<ServiceBulkhead> getBulkheads();
+
     /**
      * @param rpcServiceConfig rpc service related attributes
      */
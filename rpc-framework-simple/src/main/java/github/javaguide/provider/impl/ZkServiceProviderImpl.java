@@ -5,6 +5,8 @@ import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.ServiceRegistryEnum;
 import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.provider.ServiceBulkhead;
+import github.javaguide.provider.ServiceInvoker;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.registry.ServiceRegistry;
 import github.javaguide.remoting.transport.netty.server.NettyRpcServer;
@@ -13,9 +15,12 @@ import lombok.extern.slf4j.Slf4j;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * @author shuang.kou
@@ -26,11 +31,11 @@ public class ZkServiceProviderImpl implements ServiceProvider {
 
     /**
      * key: rpc service name(interface name + version + group)
-     * value: service object
+     * value: invoker of the service object
      */
 
-    // 本地缓存服务对象 建立RpcServiceName与服务对象的映射关系
-    private final Map<String, Object> serviceMap;
+    // 本地缓存服务对象 建立RpcServiceName与服务对象(及其方法调用器)的映射关系
+    private final Map<String, ServiceInvoker> serviceMap;
 
     // 已注册的服务名称集合 用于避免重复注册
     private final Set<String> registeredService;
@@ -56,7 +61,8 @@ public class ZkServiceProviderImpl implements ServiceProvider {
             return;
         }
         registeredService.add(rpcServiceName);
-        serviceMap.put(rpcServiceName, rpcServiceConfig.getService());
+        // 注册时解析服务方法，处理请求时不再反射查找
+        serviceMap.put(rpcServiceName, new ServiceInvoker(rpcServiceConfig));
         log.info("Add service: {} and interfaces:{}", rpcServiceName, rpcServiceConfig.getService().getClass().getInterfaces());
     }
 
@@ -68,11 +74,33 @@ public class ZkServiceProviderImpl implements ServiceProvider {
      */
     @Override
     public Object getService(String rpcServiceName) {
-        Object service = serviceMap.get(rpcServiceName);
-        if (null == service) {
+        return getServiceInvoker(rpcServiceName).getService();
+    }
+
+    /**
+     * 获取本地服务的方法调用器
+     *
+     * @param rpcServiceName 服务名称
+     * @return 服务对象的方法调用器
+     */
+    @Override
+    public ServiceInvoker getServiceInvoker(String rpcServiceName) {
+        ServiceInvoker serviceInvoker = serviceMap.get(rpcServiceName);
+        if (null == serviceInvoker) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND);
         }
-        return service;
+        return serviceInvoker;
+    }
+
+    /**
+     * 获取声明了独占线程池的服务的线程池，用于查看各个线程池的队列和活跃线程数
+     *
+     * @return 服务独占的线程池
+     */
+    @Override
+    public List<ServiceBulkhead> getBulkheads() {
+        return serviceMap.values().stream().map(ServiceInvoker::getBulkhead)
+                .filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     /**
@@ -1,5 +1,6 @@
 package github.javaguide.proxy;
 
+import github.javaguide.annotation.RpcMethod;
 import github.javaguide.config.RpcServiceConfig;
 import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.RpcResponseCodeEnum;
@@ -7,13 +8,19 @@ import github.javaguide.exception.RpcException;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.RpcStream;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Dynamic proxy class.
@@ -47,9 +54,18 @@ public class RpcClientProxy implements InvocationHandler {
 
     /**
      * get the proxy object 
+     * 传输层不支持流式调用而接口中有流式方法时直接失败
      */
     @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz) {
+        if (!rpcRequestTransport.isStreamSupported()) {
+            for (Method method : clazz.getMethods()) {
+                if (isStreamMethod(method)) {
+                    throw new RpcException(RpcErrorMessageEnum.STREAM_NOT_SUPPORTED,
+                            clazz.getName() + "#" + method.getName() + " with " + rpcRequestTransport.getClass().getSimpleName());
+                }
+            }
+        }
         return (T) Proxy.newProxyInstance(
             clazz.getClassLoader(), 
             new Class<?>[]{clazz}, this);
@@ -69,26 +85,106 @@ public class RpcClientProxy implements InvocationHandler {
                 .parameters(args)
                 .interfaceName(method.getDeclaringClass().getName())
                 .paramTypes(method.getParameterTypes())
-                .requestId(UUID.randomUUID().toString())
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
+                .timeout(getTimeout(method))
+                .idempotent(isIdempotent(method))
+                .retries(getRetries(method))
                 .build();
-        // 2. 发送RPC请求
+        // 2. 返回值为 Iterator 或 Stream 的方法走服务端流式调用，边接收边消费；参数中同时有 Iterator 或 Stream 时走双向流
+        boolean streamParameter = RpcStream.indexOfStreamParameter(method.getParameterTypes()) >= 0;
+        if (Iterator.class.equals(method.getReturnType())) {
+            return streamParameter ? rpcRequestTransport.sendBidiStreamRequest(rpcRequest)
+                    : rpcRequestTransport.sendStreamRequest(rpcRequest);
+        }
+        if (Stream.class.equals(method.getReturnType())) {
+            RpcStream<Object> rpcStream = streamParameter ? rpcRequestTransport.sendBidiStreamRequest(rpcRequest)
+                    : rpcRequestTransport.sendStreamRequest(rpcRequest);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rpcStream, Spliterator.ORDERED), false)
+                    .onClose(rpcStream::close);
+        }
+        // 3. 参数中有 Iterator 或 Stream 的方法走客户端流式调用，边读取边发送
+        if (streamParameter) {
+            RpcResponse<Object> rpcResponse = rpcRequestTransport.sendUploadRequest(rpcRequest);
+            this.check(rpcResponse, rpcRequest);
+            return rpcResponse.getData();
+        }
+        // 4. 标记为单向的 void 方法只发送请求，不等待响应
+        if (void.class.equals(method.getReturnType()) && isOneWay(method)) {
+            rpcRequestTransport.sendOneWayRequest(rpcRequest);
+            return null;
+        }
+        // 5. 返回值为 CompletableFuture 的方法走异步调用，不阻塞调用线程
+        if (CompletableFuture.class.equals(method.getReturnType())) {
+            return rpcRequestTransport.sendRpcRequestAsync(rpcRequest).thenApply(rpcResponse -> {
+                this.check(rpcResponse, rpcRequest);
+                return rpcResponse.getData();
+            });
+        }
+        // 6. 发送RPC请求
         RpcResponse<Object> rpcResponse =  (RpcResponse<Object>) rpcRequestTransport.sendRpcRequest(rpcRequest);
 
         this.check(rpcResponse, rpcRequest);
         return rpcResponse.getData();
     }
 
+    /**
+     * 返回值或参数中有 Iterator 或 Stream 的方法走流式调用
+     */
+    private static boolean isStreamMethod(Method method) {
+        return Iterator.class.equals(method.getReturnType()) || Stream.class.equals(method.getReturnType())
+                || RpcStream.indexOfStreamParameter(method.getParameterTypes()) >= 0;
+    }
+
+    /**
+     * 超时时间优先取方法上的 @RpcMethod，其次取 @RpcReference，都没有配置时返回 0 交给传输层使用全局配置
+     */
+    private long getTimeout(Method method) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        if (rpcMethod != null && rpcMethod.timeout() > 0) {
+            return rpcMethod.timeout();
+        }
+        return rpcServiceConfig.getTimeout();
+    }
+
+    /**
+     * 方法上的 @RpcMethod 或 @RpcReference 任一标记为幂等即视为幂等
+     */
+    private boolean isIdempotent(Method method) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        return (rpcMethod != null && rpcMethod.idempotent()) || rpcServiceConfig.isIdempotent();
+    }
+
+    /**
+     * 方法上的 @RpcMethod 或 @RpcReference 任一标记为单向即视为单向
+     */
+    private boolean isOneWay(Method method) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        return (rpcMethod != null && rpcMethod.oneWay()) || rpcServiceConfig.isOneWay();
+    }
+
+    /**
+     * 重试次数优先取方法上的 @RpcMethod，其次取 @RpcReference，都没有配置时返回 0 交给传输层使用全局配置
+     */
+    private int getRetries(Method method) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        if (rpcMethod != null && rpcMethod.retries() > 0) {
+            return rpcMethod.retries();
+        }
+        return rpcServiceConfig.getRetries();
+    }
+
     private void check(RpcResponse<Object> rpcResponse, RpcRequest rpcRequest) {
         if (rpcResponse == null) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
 
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
-            throw new RpcException(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        if (rpcResponse.getCode() != null && rpcResponse.getCode().equals(RpcResponseCodeEnum.OVERLOADED.getCode())) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_OVERLOADED, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        }
+        if (rpcResponse.getCode() != null && rpcResponse.getCode().equals(RpcResponseCodeEnum.LIMITED.getCode())) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_LIMITED, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
-
         if (rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
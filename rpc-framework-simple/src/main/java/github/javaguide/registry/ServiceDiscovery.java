@@ -4,6 +4,9 @@ import github.javaguide.extension.SPI;
 import github.javaguide.remoting.dto.RpcRequest;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 /**
  * 服务发现接口
@@ -18,4 +21,27 @@ public interface ServiceDiscovery {
      * @return service address
      */
     InetSocketAddress lookupService(RpcRequest rpcRequest);
+
+    /**
+     * 根据服务名称查找服务地址，跳过已经使用过的地址
+     *
+     * @param rpcRequest Rpc请求
+     * @param excludedAddresses 需要跳过的地址，格式为 host:port
+     * @return service address，没有其它可用地址时返回 null
+     */
+    default InetSocketAddress lookupService(RpcRequest rpcRequest, Set<String> excludedAddresses) {
+        InetSocketAddress inetSocketAddress = lookupService(rpcRequest);
+        String address = inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort();
+        return excludedAddresses.contains(address) ? null : inetSocketAddress;
+    }
+
+    /**
+     * 查找服务的全部地址并订阅其变化，用于启动时预热连接
+     *
+     * @param rpcRequest Rpc请求
+     * @return 服务的全部地址
+     */
+    default List<InetSocketAddress> lookupAllServices(RpcRequest rpcRequest) {
+        return Collections.singletonList(lookupService(rpcRequest));
+    }
 }
@@ -13,7 +13,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 基于Zookeeper的服务发现实现
@@ -29,16 +32,43 @@ public class ZkServiceDiscoveryImpl implements ServiceDiscovery {
 
     @Override
     public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        return lookupService(rpcRequest, Collections.emptySet());
+    }
+
+    @Override
+    public InetSocketAddress lookupService(RpcRequest rpcRequest, Set<String> excludedAddresses) {
         String rpcServiceName = rpcRequest.getRpcServiceName();
         CuratorFramework zkClient = CuratorUtils.getZkClient();
         List<String> serviceUrlList = CuratorUtils.getChildrenNodes(zkClient, rpcServiceName);
         if (CollectionUtil.isEmpty(serviceUrlList)) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
         }
+        if (!excludedAddresses.isEmpty()) {
+            // 跳过已经使用过的地址，由负载均衡在剩余的地址中选择
+            serviceUrlList = serviceUrlList.stream().filter(url -> !excludedAddresses.contains(url)).collect(Collectors.toList());
+            if (serviceUrlList.isEmpty()) {
+                return null;
+            }
+        }
         // load balancing
         String targetServiceUrl = loadBalance.selectServiceAddress(serviceUrlList, rpcRequest);
         log.info("Successfully found the service address:[{}]", targetServiceUrl);
-        String[] socketAddressArray = targetServiceUrl.split(":");
+        return toInetSocketAddress(targetServiceUrl);
+    }
+
+    @Override
+    public List<InetSocketAddress> lookupAllServices(RpcRequest rpcRequest) {
+        String rpcServiceName = rpcRequest.getRpcServiceName();
+        // 首次获取子节点时会注册 PathChildrenCache 监听，之后的请求直接读取本地缓存
+        List<String> serviceUrlList = CuratorUtils.getChildrenNodes(CuratorUtils.getZkClient(), rpcServiceName);
+        if (CollectionUtil.isEmpty(serviceUrlList)) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
+        }
+        return serviceUrlList.stream().map(ZkServiceDiscoveryImpl::toInetSocketAddress).collect(Collectors.toList());
+    }
+
+    private static InetSocketAddress toInetSocketAddress(String serviceUrl) {
+        String[] socketAddressArray = serviceUrl.split(":");
         String host = socketAddressArray[0];
         int port = Integer.parseInt(socketAddressArray[1]);
         return new InetSocketAddress(host, port);
@@ -24,9 +24,32 @@ public class RpcConstants {
     public static final byte HEARTBEAT_REQUEST_TYPE = 3;
     //pong
     public static final byte HEARTBEAT_RESPONSE_TYPE = 4;
+    // 流式调用：头部的 requestId 即流 ID，同一个流两个方向的所有消息都使用发起请求时的 requestId，与普通请求复用同一个连接
+    // 客户端发起流式请求，消息体为 RpcRequest
+    public static final byte STREAM_REQUEST_TYPE = 5;
+    // 发送方的一批数据，消息体为 RpcResponse，data 为本批数据的 List
+    public static final byte STREAM_DATA_TYPE = 6;
+    // 发送方的流结束消息，消息体为 RpcResponse，失败时带有失败的响应码和原因
+    public static final byte STREAM_END_TYPE = 7;
+    // 接收方授予发送方的信用，每个信用允许发送方再发送一批数据，消息体为 RpcResponse，data 为信用数
+    public static final byte STREAM_CREDIT_TYPE = 8;
+    // 客户端取消流，没有消息体
+    public static final byte STREAM_CANCEL_TYPE = 9;
+    // 客户端流式调用，消息体为 RpcRequest，其中流参数为 null，参数的数据随后以 STREAM_DATA 分批发送，
+    // 服务端由 STREAM_CREDIT 控制发送速度，方法返回后以普通的 RESPONSE 响应
+    public static final byte CLIENT_STREAM_REQUEST_TYPE = 10;
+    // 双向流，消息体为 RpcRequest，其中流参数为 null。两个方向各自以 STREAM_DATA 发送数据、以 STREAM_END 结束，
+    // 并各自按对方授予的 STREAM_CREDIT 控制发送速度；STREAM_CANCEL 同时结束两个方向
+    public static final byte BIDI_STREAM_REQUEST_TYPE = 11;
+    // 超过单帧长度的消息拆分出的分片，头部除消息类型外与原消息相同，消息体为 原消息类型(1) + 原消息体总长度(4) + 本片数据，
+    // 同一条消息的分片按顺序发送，接收方收齐后还原为原消息
+    public static final byte FRAGMENT_TYPE = 12;
+    // 单向调用，消息体为 RpcRequest，服务端执行后不响应，requestId 固定为 0
+    public static final byte ONEWAY_REQUEST_TYPE = 13;
     public static final int HEAD_LENGTH = 16;
     public static final String PING = "ping";
     public static final String PONG = "pong";
+    // 单帧的最大长度，更大的消息由 RpcMessageCodec 分片发送，重组后的大小只受重组内存上限的限制
     public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
 
 }
@@ -0,0 +1,22 @@
+package github.javaguide.remoting.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * 只带方法编号和参数的请求，由编解码器在连接上已经定义过编号的方法使用，接收方按编号还原为 {@link RpcRequest}
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Builder
+@ToString
+public class CompactRpcRequest implements Serializable {
+
+    private static final long serialVersionUID = 4186723095530137218L;
+    // 方法编号
+    private int methodId;
+    // 方法参数
+    private Object[] parameters;
+}
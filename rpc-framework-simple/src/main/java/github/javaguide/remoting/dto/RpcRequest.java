@@ -11,14 +11,12 @@ import java.io.Serializable;
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
-@Builder
+@Builder(toBuilder = true)
 @ToString
 public class RpcRequest implements Serializable {
 
     // 序列化ID
     private static final long serialVersionUID = 1905122041950251207L;
-    // 请求ID
-    private String requestId;
     // 接口名称
     private String interfaceName;
     // 方法名称
@@ -31,6 +29,14 @@ public class RpcRequest implements Serializable {
     private String version;
     // 组 用来处理一个接口有多个实现类的情况
     private String group;
+    // 方法编号 由编解码器按连接分配，0 表示未分配；连接上首次调用某方法时携带完整的服务和方法信息，之后只携带编号和参数
+    private int methodId;
+    // 调用超时时间(毫秒)，只在客户端使用，不参与序列化
+    private transient long timeout;
+    // 是否幂等 幂等的请求可以重复发送，只在客户端使用，不参与序列化
+    private transient boolean idempotent;
+    // 幂等请求失败后的重试次数，0 表示使用全局配置，只在客户端使用，不参与序列化
+    private transient int retries;
 
     /**
      * 获取RPC服务名称
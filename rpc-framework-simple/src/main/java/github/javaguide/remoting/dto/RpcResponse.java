@@ -18,8 +18,6 @@ public class RpcResponse<T> implements Serializable {
 
     // 序列化ID
     private static final long serialVersionUID = 715745410605631233L;
-    // 请求ID
-    private String requestId;
     /**
      * response code
      */
@@ -36,15 +34,13 @@ public class RpcResponse<T> implements Serializable {
     /**
      * 成功响应
      * @param data
-     * @param requestId
      * @param <T>
      * @return
      */
-    public static <T> RpcResponse<T> success(T data, String requestId) {
+    public static <T> RpcResponse<T> success(T data) {
         RpcResponse<T> response = new RpcResponse<>();
         response.setCode(RpcResponseCodeEnum.SUCCESS.getCode());
         response.setMessage(RpcResponseCodeEnum.SUCCESS.getMessage());
-        response.setRequestId(requestId);
         if (null != data) {
             response.setData(data);
         }
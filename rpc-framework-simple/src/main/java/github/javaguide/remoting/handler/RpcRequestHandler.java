@@ -2,13 +2,14 @@ package github.javaguide.remoting.handler;
 
 import github.javaguide.exception.RpcException;
 import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.ServiceInvoker;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
 import github.javaguide.remoting.dto.RpcRequest;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * RpcRequest processor
@@ -26,28 +27,56 @@ public class RpcRequestHandler {
 
     /**
      * Processing rpcRequest: call the corresponding method, and then return the method
+     * 接口方法声明为 CompletableFuture 时阻塞等待其完成，用于本来就占用独立线程的流式调用和 socket 传输
      */
     public Object handle(RpcRequest rpcRequest) {
-        Object service = serviceProvider.getService(rpcRequest.getRpcServiceName());
-        return invokeTargetMethod(rpcRequest, service);
+        try {
+            return handleAsync(rpcRequest).join();
+        } catch (CompletionException e) {
+            // ServiceInvoker 抛出的 RpcException 和 Error 原样抛出，与同步调用时一致
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            if (e.getCause() instanceof RpcException) {
+                throw (RpcException) e.getCause();
+            }
+            throw new RpcException(e.getMessage(), e.getCause());
+        }
     }
 
     /**
-     * get method execution results
-     *
-     * @param rpcRequest client request
-     * @param service    service object
-     * @return the result of the target method execution
+     * 调用服务方法，不等待异步结果
+     * 接口方法声明为 CompletableFuture 时直接返回该 future，调用线程立即释放，由 future 完成时写回结果；
+     * 其他方法返回已完成的 future。
+     * 不抛出异常：服务不存在、服务方法同步抛出异常时同样返回异常完成的 future，调用方只需处理一种失败
      */
-    private Object invokeTargetMethod(RpcRequest rpcRequest, Object service) {
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Object> handleAsync(RpcRequest rpcRequest) {
         Object result;
         try {
-            Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            result = method.invoke(service, rpcRequest.getParameters());
-            log.info("service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
-            throw new RpcException(e.getMessage(), e);
+            ServiceInvoker serviceInvoker = serviceProvider.getServiceInvoker(rpcRequest.getRpcServiceName());
+            result = invokeTargetMethod(rpcRequest, serviceInvoker);
+        } catch (Throwable e) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (result instanceof CompletableFuture) {
+            return (CompletableFuture<Object>) result;
         }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    /**
+     * get method execution results
+     *
+     * @param rpcRequest     client request
+     * @param serviceInvoker invoker of the service object
+     * @return the result of the target method execution
+     */
+    private Object invokeTargetMethod(RpcRequest rpcRequest, ServiceInvoker serviceInvoker) {
+        Object result = serviceInvoker.invoke(rpcRequest.getMethodName(), rpcRequest.getParamTypes(), rpcRequest.getParameters());
+        log.info("service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
         return result;
     }
 }
@@ -2,6 +2,9 @@ package github.javaguide.remoting.transport;
 
 import github.javaguide.extension.SPI;
 import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * RPC请求传输接口
@@ -15,4 +18,81 @@ public interface RpcRequestTransport {
      * @return data from server
      */
     Object sendRpcRequest(RpcRequest rpcRequest);
+
+    /**
+     * send rpc request to server without blocking the calling thread
+     * 默认实现退化为在调用线程上同步发送，支持异步的传输层(如 netty)应当覆盖该方法
+     *
+     * @param rpcRequest message body
+     * @return future completed with the response from server
+     */
+    @SuppressWarnings("unchecked")
+    default CompletableFuture<RpcResponse<Object>> sendRpcRequestAsync(RpcRequest rpcRequest) {
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        try {
+            resultFuture.complete((RpcResponse<Object>) sendRpcRequest(rpcRequest));
+        } catch (Exception e) {
+            resultFuture.completeExceptionally(e);
+        }
+        return resultFuture;
+    }
+
+    /**
+     * 单向调用：请求交给连接后立即返回，不等待、也不接收响应，服务端执行后不构建响应
+     * 默认实现退化为同步调用并丢弃响应
+     *
+     * @param rpcRequest message body
+     */
+    default void sendOneWayRequest(RpcRequest rpcRequest) {
+        sendRpcRequest(rpcRequest);
+    }
+
+    /**
+     * 是否支持流式调用，不支持时 {@link github.javaguide.proxy.RpcClientProxy} 在创建含流式方法的代理时即失败，
+     * 而不是等到第一次调用
+     */
+    boolean isStreamSupported();
+
+    /**
+     * 发起服务端流式调用，服务方法返回的 Iterator / Iterable / Stream 分批发送给客户端，
+     * 客户端消费之后服务端才会继续发送，两端的内存占用与批大小成正比，与结果集大小无关
+     * 不支持流式调用的传输层抛出 RpcException
+     *
+     * @param rpcRequest message body
+     * @return 按顺序返回服务端数据的流
+     */
+    RpcStream<Object> sendStreamRequest(RpcRequest rpcRequest);
+
+    /**
+     * 发起客户端流式调用，请求中的 Iterator / Stream 参数在调用线程中分批发送，
+     * 服务方法以 Iterator / Stream 参数逐批读取，服务端消费之后客户端才会继续发送，两端的内存占用与批大小成正比
+     * 不支持流式调用的传输层抛出 RpcException
+     *
+     * @param rpcRequest message body，流参数的下标由 {@link RpcStream#indexOfStreamParameter} 确定
+     * @return 服务方法返回后的响应
+     */
+    RpcResponse<Object> sendUploadRequest(RpcRequest rpcRequest);
+
+    /**
+     * 发起双向流：请求中的 Iterator / Stream 参数持续发往服务端，服务方法返回的 Iterator / Stream 持续发回客户端，
+     * 两个方向在同一个连接上各自按对方授予的信用发送，互不等待，{@link RpcStream#close()} 同时取消两个方向
+     * 不支持流式调用的传输层抛出 RpcException
+     *
+     * @param rpcRequest message body，流参数的下标由 {@link RpcStream#indexOfStreamParameter} 确定
+     * @return 按顺序返回服务端数据的流
+     */
+    RpcStream<Object> sendBidiStreamRequest(RpcRequest rpcRequest);
+
+    /**
+     * 预热服务：订阅服务地址、提前建立连接，使首次调用不再承担这些开销
+     * 默认实现不做任何事情
+     *
+     * @param rpcRequest 只需要接口名、group 和 version
+     * @param connections 最多预热的服务节点数，小于等于 0 表示全部节点
+     * @param ping 是否在每个连接上发送一次心跳请求，走通编解码的完整链路
+     * @return 预热结束时完成的future，单个节点预热失败不会使其异常结束
+     */
+    default CompletableFuture<Void> warmUp(RpcRequest rpcRequest, int connections, boolean ping) {
+        return CompletableFuture.completedFuture(null);
+    }
 }
@@ -0,0 +1,34 @@
+package github.javaguide.remoting.transport;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 服务端流式响应的客户端视图，按服务端发送的顺序逐个返回元素
+ * 提前结束消费时应当调用 {@link #close()}，通知服务端停止发送
+ */
+public interface RpcStream<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * 查找客户端流式调用的流参数，参数类型为 Iterator 或 Stream，目前只支持一个流参数
+     *
+     * @return 流参数的下标，没有流参数时返回 -1
+     */
+    static int indexOfStreamParameter(Class<?>[] paramTypes) {
+        if (paramTypes == null) {
+            return -1;
+        }
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (paramTypes[i] == Iterator.class || paramTypes[i] == Stream.class) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 取消流，已经完成的流调用时不做任何事情
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,115 @@
+package github.javaguide.remoting.transport.netty;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.TransportTypeEnum;
+import github.javaguide.utils.RpcPropertiesUtil;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 客户端和服务端共用的 netty 传输层选择
+ * 由 rpc.transport 配置 nio/epoll/io_uring，默认 nio；配置的传输层在当前平台不可用时自动回退到 nio
+ * epoll 下额外开启 TCP_QUICKACK、边缘触发，服务端开启 SO_REUSEPORT
+ */
+@Slf4j
+@Getter
+public final class NettyTransport {
+
+    private final TransportTypeEnum transportType;
+
+    private NettyTransport(TransportTypeEnum transportType) {
+        this.transportType = transportType;
+    }
+
+    /**
+     * 按配置选择传输层
+     */
+    public static NettyTransport fromConfig() {
+        String name = RpcPropertiesUtil.getString(RpcConfigEnum.TRANSPORT, TransportTypeEnum.NIO.getName());
+        TransportTypeEnum transportType = TransportTypeEnum.getTransportType(name);
+        if (transportType == null) {
+            log.warn("unknown transport [{}], fall back to nio", name);
+            transportType = TransportTypeEnum.NIO;
+        }
+        return of(transportType);
+    }
+
+    /**
+     * 选择传输层，不可用时回退
+     */
+    public static NettyTransport of(TransportTypeEnum transportType) {
+        if (transportType == TransportTypeEnum.IO_URING) {
+            // 当前使用的 netty 版本没有 io_uring 传输层，退回到 epoll
+            log.warn("io_uring transport is not supported by the bundled netty, fall back to epoll");
+            transportType = TransportTypeEnum.EPOLL;
+        }
+        if (transportType == TransportTypeEnum.EPOLL && !Epoll.isAvailable()) {
+            log.warn("epoll transport is not available, fall back to nio", Epoll.unavailabilityCause());
+            transportType = TransportTypeEnum.NIO;
+        }
+        log.info("use [{}] transport", transportType.getName());
+        return new NettyTransport(transportType);
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        return newEventLoopGroup(threads, null);
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        if (transportType == TransportTypeEnum.EPOLL) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public Class<? extends SocketChannel> getSocketChannelClass() {
+        return transportType == TransportTypeEnum.EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    public Class<? extends ServerSocketChannel> getServerSocketChannelClass() {
+        return transportType == TransportTypeEnum.EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * 设置客户端传输层相关的参数
+     */
+    public Bootstrap configure(Bootstrap bootstrap) {
+        bootstrap.channel(getSocketChannelClass());
+        if (transportType == TransportTypeEnum.EPOLL) {
+            // 收到数据后立即回复 ACK，降低请求响应模式下的延迟
+            bootstrap.option(EpollChannelOption.TCP_QUICKACK, true)
+                    .option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        }
+        return bootstrap;
+    }
+
+    /**
+     * 设置服务端传输层相关的参数
+     */
+    public ServerBootstrap configure(ServerBootstrap serverBootstrap) {
+        serverBootstrap.channel(getServerSocketChannelClass());
+        if (transportType == TransportTypeEnum.EPOLL) {
+            // 允许多个进程或多个 channel 绑定同一端口，由内核分发连接
+            serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true)
+                    .childOption(EpollChannelOption.TCP_QUICKACK, true)
+                    .childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        }
+        return serverBootstrap;
+    }
+}
@@ -0,0 +1,110 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单个服务地址的连接池，固定 N 个槽位
+ * 选择连接时优先可写的连接，其次是等待响应请求数最少的连接，选择过程无锁
+ */
+class ChannelPool {
+    // 连接槽位，空槽或已失效的连接等待后台补齐
+    private final AtomicReferenceArray<Channel> channels;
+    // 正在建立中的连接数，避免重复补齐
+    private final AtomicInteger connecting = new AtomicInteger();
+
+    ChannelPool(int size) {
+        this.channels = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * 选择一个可用的连接
+     * @param unprocessedRequests 用于获取每个连接上等待响应的请求数
+     * @return 没有可用连接时返回 null
+     */
+    Channel select(UnprocessedRequests unprocessedRequests) {
+        Channel selected = null;
+        boolean selectedWritable = false;
+        int selectedPending = Integer.MAX_VALUE;
+        for (int i = 0; i < channels.length(); i++) {
+            Channel channel = channels.get(i);
+            if (channel == null) {
+                continue;
+            }
+            if (!channel.isActive()) {
+                // 失效的连接腾出槽位
+                channels.compareAndSet(i, channel, null);
+                continue;
+            }
+            boolean writable = channel.isWritable();
+            int pending = unprocessedRequests.getPendingCount(channel);
+            if (selected == null || (writable && !selectedWritable)
+                    || (writable == selectedWritable && pending < selectedPending)) {
+                selected = channel;
+                selectedWritable = writable;
+                selectedPending = pending;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 将连接放入空槽位
+     * @return 连接池已满时返回 false
+     */
+    boolean add(Channel channel) {
+        for (int i = 0; i < channels.length(); i++) {
+            Channel current = channels.get(i);
+            if ((current == null || !current.isActive()) && channels.compareAndSet(i, current, channel)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 预留需要补齐的连接数，调用方负责在连接建立结束后调用 {@link #connected()}
+     * @return 需要新建的连接数
+     */
+    int reserveVacancies() {
+        while (true) {
+            int current = connecting.get();
+            int vacancies = channels.length() - activeCount() - current;
+            if (vacancies <= 0) {
+                return 0;
+            }
+            if (connecting.compareAndSet(current, current + vacancies)) {
+                return vacancies;
+            }
+        }
+    }
+
+    /**
+     * 一个预留的连接建立结束(成功或失败)
+     */
+    void connected() {
+        connecting.decrementAndGet();
+    }
+
+    int activeCount() {
+        int count = 0;
+        for (int i = 0; i < channels.length(); i++) {
+            Channel channel = channels.get(i);
+            if (channel != null && channel.isActive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void close() {
+        for (int i = 0; i < channels.length(); i++) {
+            Channel channel = channels.getAndSet(i, null);
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
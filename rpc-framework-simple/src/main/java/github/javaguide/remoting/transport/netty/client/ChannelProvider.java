@@ -1,5 +1,8 @@
 package github.javaguide.remoting.transport.netty.client;
 
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.utils.RpcPropertiesUtil;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
 
@@ -9,57 +12,85 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * store and get Channel object
- *
+ * 每个服务地址维护一个包含 N 个连接的连接池，N 由 rpc.client.connections 配置，默认 1
  */
 @Slf4j
 public class ChannelProvider {
-    // channel Map 建立InetSocketAddress与Channel的映射关系
-    private final Map<String, Channel> channelMap;
+    // 未配置 rpc.client.connections 时每个服务地址的连接数
+    private static final int DEFAULT_CONNECTIONS = 1;
+    // channel Map 建立InetSocketAddress与连接池的映射关系
+    private final Map<String, ChannelPool> channelMap;
+    // 每个服务地址的连接数
+    private final int connectionsPerAddress;
+    // 未处理请求 用于按等待响应的请求数选择连接
+    private final UnprocessedRequests unprocessedRequests;
 
     /**
      * 初始化通道Map
      */
     public ChannelProvider() {
+        this(RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_CONNECTIONS, DEFAULT_CONNECTIONS));
+    }
+
+    ChannelProvider(int connectionsPerAddress) {
         channelMap = new ConcurrentHashMap<>();
+        this.connectionsPerAddress = Math.max(1, connectionsPerAddress);
+        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
     }
 
     /**
-     * 获取通道
+     * 获取通道 从连接池中选择可写且等待响应请求数最少的连接
      * @param inetSocketAddress
-     * @return
+     * @return 没有可用连接时返回 null
      */
     public Channel get(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        // determine if there is a connection for the corresponding address
-        if (channelMap.containsKey(key)) {
-            Channel channel = channelMap.get(key);
-            // if so, determine if the connection is available, and if so, get it directly
-            if (channel != null && channel.isActive()) {
-                return channel;
-            } else {
-                channelMap.remove(key);
-            }
+        ChannelPool channelPool = channelMap.get(inetSocketAddress.toString());
+        if (channelPool == null) {
+            return null;
         }
-        return null;
+        return channelPool.select(unprocessedRequests);
     }
 
     /**
-     * 设置通道
+     * 设置通道 放入连接池的空槽位
      * @param inetSocketAddress
      * @param channel
+     * @return 连接池已满时返回 false，由调用方关闭多余的连接
+     */
+    public boolean set(InetSocketAddress inetSocketAddress, Channel channel) {
+        return getChannelPool(inetSocketAddress).add(channel);
+    }
+
+    /**
+     * 预留连接池中需要补齐的连接数，每个预留的连接建立结束后必须调用 {@link #connected(InetSocketAddress)}
+     * @param inetSocketAddress
+     * @return 需要新建的连接数
      */
-    public void set(InetSocketAddress inetSocketAddress, Channel channel) {
-        String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+    public int reserveVacancies(InetSocketAddress inetSocketAddress) {
+        return getChannelPool(inetSocketAddress).reserveVacancies();
     }
 
     /**
-     * 移除通道
+     * 一个预留的连接建立结束(成功或失败)
+     * @param inetSocketAddress
+     */
+    public void connected(InetSocketAddress inetSocketAddress) {
+        getChannelPool(inetSocketAddress).connected();
+    }
+
+    /**
+     * 移除通道 关闭该地址的所有连接
      * @param inetSocketAddress
      */
     public void remove(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        channelMap.remove(key);
+        ChannelPool channelPool = channelMap.remove(inetSocketAddress.toString());
+        if (channelPool != null) {
+            channelPool.close();
+        }
         log.info("Channel map size :[{}]", channelMap.size());
     }
+
+    private ChannelPool getChannelPool(InetSocketAddress inetSocketAddress) {
+        return channelMap.computeIfAbsent(inetSocketAddress.toString(), key -> new ChannelPool(connectionsPerAddress));
+    }
 }
@@ -0,0 +1,82 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 客户端的一个双向流
+ * <p>
+ * 接收方向与 {@link ClientStream} 相同；发送方向在 sender 线程中读取流参数，每个元素单独发送并消耗服务端授予的一个信用。
+ * 流参数通常由调用方持续产生(例如由阻塞队列支撑的 Iterator)，读取时可能阻塞，
+ * 所以不能在调用线程中发送，否则调用方无法同时消费服务端的数据；也不能凑满一批再发送，否则交替收发的双方会互相等待
+ */
+@Slf4j
+class ClientBidiStream extends ClientStream {
+    // 服务端授予的剩余信用
+    private final Semaphore credits = new Semaphore(0);
+
+    ClientBidiStream(Channel channel, UnprocessedRequests unprocessedRequests, int window, long idleTimeoutMillis) {
+        super(channel, unprocessedRequests, window, idleTimeoutMillis);
+        // 流结束或被取消时唤醒等待信用的发送线程
+        whenComplete((response, throwable) -> credits.release());
+    }
+
+    /**
+     * 收到服务端授予的信用，在 I/O 线程中调用
+     */
+    void addCredits(int n) {
+        credits.release(n);
+    }
+
+    /**
+     * 发送双向流请求和初始信用，并在 sender 中开始发送流参数
+     *
+     * @param rpcRequest 流参数已置为 null 的请求
+     * @param source     流参数
+     */
+    void start(RpcRequest rpcRequest, Iterator<?> source, Executor sender) {
+        start(rpcRequest, RpcConstants.BIDI_STREAM_REQUEST_TYPE);
+        try {
+            sender.execute(() -> send(source));
+        } catch (RejectedExecutionException e) {
+            close();
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "bidi stream sender is busy");
+        }
+    }
+
+    private void send(Iterator<?> source) {
+        try {
+            while (!isDone() && source.hasNext()) {
+                credits.acquire();
+                if (isDone()) {
+                    return;
+                }
+                write(RpcConstants.STREAM_DATA_TYPE, RpcResponse.success(Collections.singletonList(source.next())));
+            }
+            if (!isDone()) {
+                write(RpcConstants.STREAM_END_TYPE, RpcResponse.success(null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        } catch (RuntimeException e) {
+            // 流参数读取失败时只结束发送方向，服务方法读取到此处时失败，并通过接收方向告知调用方
+            log.error("bidi stream source failed", e);
+            if (!isDone()) {
+                write(RpcConstants.STREAM_END_TYPE, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+            }
+        }
+    }
+}
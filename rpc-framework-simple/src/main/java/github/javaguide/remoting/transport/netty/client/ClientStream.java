@@ -0,0 +1,181 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.RpcStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端的一个服务端流式调用
+ * <p>
+ * 作为未处理请求登记在 {@link UnprocessedRequests} 中，服务端发送的每批数据放入队列，流结束或连接断开时 future 完成。
+ * 开始时授予服务端 window 个信用，调用方每取走 window / 2 批数据就补充同样数量的信用，
+ * 因此队列中最多有 window 批数据，内存占用与批大小成正比
+ */
+@Slf4j
+class ClientStream extends CompletableFuture<RpcResponse<Object>> implements RpcStream<Object> {
+    // 流结束的标记，在所有数据之后入队
+    private static final Object END = new Object();
+
+    private final Channel channel;
+    private final UnprocessedRequests unprocessedRequests;
+    // 授予服务端的信用数
+    private final int window;
+    // 等待下一批数据的超时时间(毫秒)，小于等于 0 表示不超时
+    private final long idleTimeoutMillis;
+    private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+    private int requestId;
+    // 以下字段只由消费线程访问
+    private Iterator<?> current = Collections.emptyIterator();
+    private int consumedChunks;
+    private boolean ended;
+
+    ClientStream(Channel channel, UnprocessedRequests unprocessedRequests, int window, long idleTimeoutMillis) {
+        this.channel = channel;
+        this.unprocessedRequests = unprocessedRequests;
+        this.window = Math.max(1, window);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        // 流正常结束、失败或被取消时唤醒消费线程
+        whenComplete((response, throwable) -> chunks.offer(END));
+    }
+
+    /**
+     * 发送流式请求和初始信用
+     */
+    void start(RpcRequest rpcRequest) {
+        start(rpcRequest, RpcConstants.STREAM_REQUEST_TYPE);
+    }
+
+    void start(RpcRequest rpcRequest, byte requestType) {
+        requestId = unprocessedRequests.put(channel, this, 0);
+        write(requestType, rpcRequest);
+        write(RpcConstants.STREAM_CREDIT_TYPE, RpcResponse.success(window));
+    }
+
+    /**
+     * 收到一批数据，在 I/O 线程中调用
+     */
+    void onData(List<?> chunk) {
+        chunks.offer(chunk);
+    }
+
+    @Override
+    public boolean hasNext() {
+        // 关闭后丢弃已缓存但尚未取走的数据
+        if (isCancelled()) {
+            return false;
+        }
+        while (!current.hasNext()) {
+            if (ended) {
+                return false;
+            }
+            Object next = poll();
+            if (next == END) {
+                ended = true;
+                checkEnd();
+                return false;
+            }
+            current = ((List<?>) next).iterator();
+            onChunkConsumed();
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        if (isDone()) {
+            return;
+        }
+        unprocessedRequests.remove(channel, requestId);
+        if (cancel(false)) {
+            write(RpcConstants.STREAM_CANCEL_TYPE, null);
+        }
+    }
+
+    private Object poll() {
+        try {
+            if (idleTimeoutMillis <= 0) {
+                return chunks.take();
+            }
+            Object next = chunks.poll(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                close();
+                throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                        channel.remoteAddress() + ", requestId:" + requestId + ", no data in " + idleTimeoutMillis + "ms");
+            }
+            return next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "interrupted");
+        }
+    }
+
+    private void checkEnd() {
+        if (isCancelled()) {
+            return;
+        }
+        RpcResponse<Object> rpcResponse;
+        try {
+            rpcResponse = join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        if (rpcResponse == null || rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE,
+                    rpcResponse == null ? "empty stream end" : rpcResponse.getMessage());
+        }
+    }
+
+    /**
+     * 每取走一半窗口的数据补充一次信用，减少信用消息的数量
+     */
+    private void onChunkConsumed() {
+        if (++consumedChunks >= Math.max(1, window / 2) && !isDone()) {
+            write(RpcConstants.STREAM_CREDIT_TYPE, RpcResponse.success(consumedChunks));
+            consumedChunks = 0;
+        }
+    }
+
+    void write(byte messageType, Object data) {
+        RpcMessage rpcMessage = RpcMessage.builder().data(data)
+                .requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(messageType).build();
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                log.error("Send stream message failed:", future.cause());
+                unprocessedRequests.remove(channel, requestId);
+                completeExceptionally(future.cause());
+            }
+        });
+    }
+}
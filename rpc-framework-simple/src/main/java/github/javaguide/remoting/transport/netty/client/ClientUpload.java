@@ -0,0 +1,147 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 客户端的一个客户端流式调用
+ * <p>
+ * 作为未处理请求登记在 {@link UnprocessedRequests} 中，服务方法返回或连接断开时 future 完成。
+ * 调用线程把流参数按 chunkSize 个元素一批发送，每批消耗服务端授予的一个信用，信用用完时阻塞等待服务端消费，
+ * 因此客户端不会把整个流参数读入内存，服务端最多缓存窗口大小的数据
+ */
+@Slf4j
+class ClientUpload extends CompletableFuture<RpcResponse<Object>> {
+    private final Channel channel;
+    private final UnprocessedRequests unprocessedRequests;
+    private final int chunkSize;
+    // 等待信用和等待响应的超时时间(毫秒)，小于等于 0 表示不超时
+    private final long timeoutMillis;
+    // 服务端授予的剩余信用
+    private final Semaphore credits = new Semaphore(0);
+    private int requestId;
+
+    ClientUpload(Channel channel, UnprocessedRequests unprocessedRequests, int chunkSize, long timeoutMillis) {
+        this.channel = channel;
+        this.unprocessedRequests = unprocessedRequests;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.timeoutMillis = timeoutMillis;
+        // 服务方法提前返回、失败或连接断开时唤醒等待信用的调用线程
+        whenComplete((response, throwable) -> credits.release());
+    }
+
+    /**
+     * 收到服务端授予的信用，在 I/O 线程中调用
+     */
+    void addCredits(int n) {
+        credits.release(n);
+    }
+
+    /**
+     * 发送请求和流参数的全部数据，然后等待服务方法的响应
+     *
+     * @param rpcRequest 流参数已置为 null 的请求
+     * @param source     流参数
+     */
+    RpcResponse<Object> send(RpcRequest rpcRequest, Iterator<?> source) {
+        requestId = unprocessedRequests.put(channel, this, 0);
+        write(RpcConstants.CLIENT_STREAM_REQUEST_TYPE, rpcRequest);
+        try {
+            while (!isDone() && source.hasNext()) {
+                acquireCredit();
+                List<Object> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && source.hasNext()) {
+                    chunk.add(source.next());
+                }
+                write(RpcConstants.STREAM_DATA_TYPE, RpcResponse.success(chunk));
+            }
+        } catch (RuntimeException e) {
+            // 流参数读取失败时服务方法同样以失败结束，不再等待它的响应
+            if (!isDone()) {
+                write(RpcConstants.STREAM_END_TYPE, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+                unprocessedRequests.remove(channel, requestId);
+                cancel(false);
+            }
+            throw e;
+        }
+        if (!isDone()) {
+            write(RpcConstants.STREAM_END_TYPE, RpcResponse.success(null));
+        }
+        return awaitResponse();
+    }
+
+    private void acquireCredit() {
+        try {
+            if (timeoutMillis <= 0) {
+                credits.acquire();
+            } else if (!credits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                abort();
+                throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                        channel.remoteAddress() + ", requestId:" + requestId + ", no credit in " + timeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "interrupted");
+        }
+    }
+
+    private RpcResponse<Object> awaitResponse() {
+        try {
+            return timeoutMillis <= 0 ? get() : get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abort();
+            throw new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, channel.remoteAddress() + ", requestId:" + requestId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RpcException(e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * 放弃调用并通知服务端，服务方法读取流参数时抛出异常
+     */
+    private void abort() {
+        unprocessedRequests.remove(channel, requestId);
+        if (cancel(false)) {
+            write(RpcConstants.STREAM_CANCEL_TYPE, null);
+        }
+    }
+
+    private void write(byte messageType, Object data) {
+        RpcMessage rpcMessage = RpcMessage.builder().data(data)
+                .requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(messageType).build();
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                log.error("Send client stream message failed:", future.cause());
+                unprocessedRequests.remove(channel, requestId);
+                completeExceptionally(future.cause());
+            }
+        });
+    }
+}
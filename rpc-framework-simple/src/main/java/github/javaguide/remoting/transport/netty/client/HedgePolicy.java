@@ -0,0 +1,119 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcPropertiesUtil;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲请求策略
+ * 幂等方法的请求在 rpc.client.hedge.percentile 分位的延迟内还没有响应时，向另一个服务地址再发送一次，先到的响应生效
+ * 对冲请求数不超过普通请求数的 rpc.client.hedge.budget 百分比，避免服务整体变慢时负载翻倍
+ */
+public class HedgePolicy {
+    // 每个方法最近的延迟样本数
+    private static final int WINDOW_SIZE = 512;
+    // 样本不足时不对冲
+    private static final int MIN_SAMPLES = 100;
+    // 每记录多少个样本重新计算一次分位数
+    private static final int RECOMPUTE_INTERVAL = 64;
+    // 预算按 1/100 个请求计数，最多攒够 10 个对冲请求
+    private static final long BUDGET_UNIT = 100;
+    private static final long MAX_BUDGET = 10 * BUDGET_UNIT;
+
+    // 是否开启对冲
+    private final boolean enabled;
+    // 对冲延迟取的延迟分位数
+    private final int percentile;
+    // 对冲请求最多占普通请求的百分比
+    private final int budgetPercent;
+    // 剩余的对冲预算
+    private final AtomicLong budget = new AtomicLong();
+    // 每个方法的延迟窗口
+    private final Map<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+
+    public HedgePolicy() {
+        this(RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_HEDGE_ENABLED, false),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_HEDGE_PERCENTILE, 95),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_HEDGE_BUDGET, 10));
+    }
+
+    HedgePolicy(boolean enabled, int percentile, int budgetPercent) {
+        this.enabled = enabled;
+        this.percentile = Math.min(Math.max(percentile, 1), 99);
+        this.budgetPercent = Math.max(budgetPercent, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次成功调用的延迟
+     * @param key 方法标识
+     */
+    public void record(String key, long latencyMillis) {
+        latencyWindows.computeIfAbsent(key, k -> new LatencyWindow()).record(latencyMillis, percentile);
+    }
+
+    /**
+     * 对冲请求的发送延迟
+     * @param key 方法标识
+     * @return 样本不足时返回 -1，表示不对冲
+     */
+    public long getDelayMillis(String key) {
+        LatencyWindow latencyWindow = latencyWindows.get(key);
+        return latencyWindow == null ? -1 : latencyWindow.percentileMillis;
+    }
+
+    /**
+     * 每个普通请求为对冲预算增加 budgetPercent/100 个请求
+     */
+    public void onRequest() {
+        long current;
+        do {
+            current = budget.get();
+            if (current >= MAX_BUDGET) {
+                return;
+            }
+        } while (!budget.compareAndSet(current, Math.min(MAX_BUDGET, current + budgetPercent)));
+    }
+
+    /**
+     * 占用一个对冲请求的预算
+     * @return 预算不足时返回 false
+     */
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < BUDGET_UNIT) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - BUDGET_UNIT));
+        return true;
+    }
+
+    /**
+     * 最近 WINDOW_SIZE 次调用的延迟，每 RECOMPUTE_INTERVAL 个样本重新计算分位数
+     */
+    private static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private long count;
+        private volatile long percentileMillis = -1;
+
+        synchronized void record(long latencyMillis, int percentile) {
+            samples[(int) (count % WINDOW_SIZE)] = latencyMillis;
+            count++;
+            if (count >= MIN_SAMPLES && count % RECOMPUTE_INTERVAL == 0) {
+                int size = (int) Math.min(count, WINDOW_SIZE);
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                percentileMillis = Math.max(1, sorted[size * percentile / 100]);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.utils.RpcPropertiesUtil;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个 channel 上的发送许可
+ * channel 不可写(出站缓冲超过高水位)或等待响应的请求数达到 rpc.client.max.inflight 时，新请求不再写入 channel：
+ * 默认在队列中等待许可，等待时间计入请求超时；配置 rpc.client.inflight.failfast=true 时立即失败
+ * 许可在 channel 恢复可写或请求结束时按先来后到发放，等待过程不阻塞调用线程
+ */
+@Slf4j
+public class InFlightLimiter {
+    // 每个 channel 上的许可
+    private static final AttributeKey<ChannelPermits> CHANNEL_PERMITS = AttributeKey.valueOf("inFlightPermits");
+    // 每个 channel 上最多等待响应的请求数，小于等于 0 表示不限制
+    private final int maxInFlight;
+    // 没有许可时是否立即失败
+    private final boolean failFast;
+    // 所有 channel 上等待许可的请求数
+    private final AtomicInteger waitingCount = new AtomicInteger();
+
+    public InFlightLimiter() {
+        this(RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_MAX_IN_FLIGHT, 0),
+                RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_IN_FLIGHT_FAIL_FAST, false));
+    }
+
+    InFlightLimiter(int maxInFlight, boolean failFast) {
+        this.maxInFlight = maxInFlight;
+        this.failFast = failFast;
+    }
+
+    /**
+     * 获取发送许可，请求结束后必须调用 {@link #release(Channel)} 归还
+     * @param channel 发送请求的 channel
+     * @param timeoutMillis 最长等待时间(毫秒)，小于等于 0 表示一直等待
+     * @return 获得许可时完成的future，等待超时或立即失败时以异常结束
+     */
+    public CompletableFuture<Void> acquire(Channel channel, long timeoutMillis) {
+        ChannelPermits channelPermits = getChannelPermits(channel);
+        if (channelPermits.tryAcquire(isSendable(channel))) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        if (failFast) {
+            waiter.completeExceptionally(new RpcException(RpcErrorMessageEnum.TOO_MANY_IN_FLIGHT_REQUESTS, String.valueOf(channel.remoteAddress())));
+            return waiter;
+        }
+        waitingCount.incrementAndGet();
+        channelPermits.addWaiter(waiter);
+        if (timeoutMillis > 0) {
+            Timeout timeout = TimeoutTimer.newTimeout(t -> {
+                if (channelPermits.removeWaiter(waiter)) {
+                    waitingCount.decrementAndGet();
+                    waiter.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                            channel.remoteAddress() + ", waiting for send permit, timeout:" + timeoutMillis + "ms"));
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            waiter.whenComplete((v, throwable) -> timeout.cancel());
+        }
+        // 入队前可能刚好有许可被归还，这里再尝试发放一次
+        drain(channel);
+        return waiter;
+    }
+
+    /**
+     * 归还发送许可
+     */
+    public void release(Channel channel) {
+        getChannelPermits(channel).release();
+        drain(channel);
+    }
+
+    /**
+     * 按先来后到向等待的请求发放许可，许可归还或 channel 可写性变化时调用
+     */
+    public void drain(Channel channel) {
+        ChannelPermits channelPermits = getChannelPermits(channel);
+        CompletableFuture<Void> waiter;
+        while ((waiter = channelPermits.pollWaiter(isSendable(channel))) != null) {
+            waitingCount.decrementAndGet();
+            waiter.complete(null);
+        }
+    }
+
+    /**
+     * channel 上已获得许可、尚未结束的请求数
+     */
+    public int getInFlightCount(Channel channel) {
+        return getChannelPermits(channel).inFlight();
+    }
+
+    /**
+     * channel 上等待许可的请求数
+     */
+    public int getWaitingCount(Channel channel) {
+        return getChannelPermits(channel).waiting();
+    }
+
+    /**
+     * 所有 channel 上等待许可的请求数，持续大于 0 说明服务端处理不过来
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    /**
+     * 已关闭的 channel 不再等待可写，放行后由写入失败结束请求
+     */
+    private static boolean isSendable(Channel channel) {
+        return channel.isWritable() || !channel.isActive();
+    }
+
+    private ChannelPermits getChannelPermits(Channel channel) {
+        ChannelPermits channelPermits = channel.attr(CHANNEL_PERMITS).get();
+        if (channelPermits == null) {
+            ChannelPermits newChannelPermits = new ChannelPermits(maxInFlight);
+            channelPermits = channel.attr(CHANNEL_PERMITS).setIfAbsent(newChannelPermits);
+            if (channelPermits == null) {
+                channelPermits = newChannelPermits;
+            }
+        }
+        return channelPermits;
+    }
+
+    private static final class ChannelPermits {
+        private final int maxInFlight;
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private int inFlight;
+
+        ChannelPermits(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        synchronized boolean tryAcquire(boolean sendable) {
+            if (!waiters.isEmpty() || !hasPermit(sendable)) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        synchronized CompletableFuture<Void> pollWaiter(boolean sendable) {
+            if (waiters.isEmpty() || !hasPermit(sendable)) {
+                return null;
+            }
+            inFlight++;
+            return waiters.poll();
+        }
+
+        synchronized void addWaiter(CompletableFuture<Void> waiter) {
+            waiters.add(waiter);
+        }
+
+        synchronized boolean removeWaiter(CompletableFuture<Void> waiter) {
+            return waiters.remove(waiter);
+        }
+
+        synchronized void release() {
+            inFlight--;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int waiting() {
+            return waiters.size();
+        }
+
+        private boolean hasPermit(boolean sendable) {
+            return sendable && (maxInFlight <= 0 || inFlight < maxInFlight);
+        }
+    }
+}
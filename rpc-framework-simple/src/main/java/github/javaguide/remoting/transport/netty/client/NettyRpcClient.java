@@ -1,9 +1,16 @@
 package github.javaguide.remoting.transport.netty.client;
 
 
+import github.javaguide.circuitbreaker.CircuitBreaker;
+import github.javaguide.circuitbreaker.CircuitBreakerRegistry;
+import github.javaguide.compress.Compress;
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.enums.ServiceDiscoveryEnum;
+import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.loadbalance.ActiveRequestsRecorder;
@@ -13,23 +20,43 @@ import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.RpcStream;
+import github.javaguide.remoting.transport.netty.NettyTransport;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcPropertiesUtil;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.Timeout;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * initialize and close Bootstrap object
@@ -37,6 +64,18 @@ import java.util.concurrent.TimeUnit;
  */
 @Slf4j
 public final class NettyRpcClient implements RpcRequestTransport {
+    // 未配置 rpc.client.timeout 时的默认调用超时时间(毫秒)
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    // 开启写合并时，未配置 rpc.client.flush.max.messages 的情况下最多合并的消息数
+    private static final int DEFAULT_FLUSH_MAX_MESSAGES = 256;
+    // 重连退避的基础时间、上限(毫秒)和连续失败的最大重连次数
+    private static final long DEFAULT_RECONNECT_BACKOFF_MILLIS = 100;
+    private static final long DEFAULT_RECONNECT_MAX_BACKOFF_MILLIS = 10_000;
+    private static final int DEFAULT_RECONNECT_MAX_ATTEMPTS = 10;
+    // 未配置 rpc.client.stream.window 时流式调用授予服务端的信用数
+    private static final int DEFAULT_STREAM_WINDOW = 8;
+    // 未配置 rpc.client.stream.chunk.size 时客户端流式调用每批的元素个数
+    private static final int DEFAULT_STREAM_CHUNK_SIZE = 128;
     // 服务发现 用于发现服务
     private final ServiceDiscovery serviceDiscovery;
     // 未处理请求 用于存储未处理请求
@@ -49,27 +88,82 @@ public final class NettyRpcClient implements RpcRequestTransport {
     private final Bootstrap bootstrap;
     // 事件循环组 用于处理事件
     private final EventLoopGroup eventLoopGroup;
+    // 全局默认的调用超时时间(毫秒)
+    private final long defaultTimeoutMillis;
+    // 发送许可 用于出站缓冲和等待响应请求数的背压
+    private final InFlightLimiter inFlightLimiter;
+    // 对冲请求策略
+    private final HedgePolicy hedgePolicy;
+    // 重试策略
+    private final RetryPolicy retryPolicy;
+    // 每个服务节点的熔断器
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    // 断线重连
+    private final ReconnectManager reconnectManager;
+    // 流式调用授予服务端的信用数，即客户端最多缓存的数据批数
+    private final int streamWindow;
+    // 客户端流式调用每批发送的元素个数
+    private final int streamChunkSize;
+    // 双向流读取并发送流参数的线程，流参数可能长时间阻塞，每个流占用一个线程
+    private final ExecutorService bidiStreamSender;
+    // 到期的对冲和重试在这里查找地址并发送，服务发现可能访问注册中心而阻塞，不能占用时间轮线程
+    private final ExecutorService policyExecutor;
+    // 正在建立的首个连接 同一地址的并发请求共用
+    private final Map<String, CompletableFuture<Channel>> connectFutures = new ConcurrentHashMap<>();
 
     /**
      * 初始化资源
      */
     public NettyRpcClient() {
+        this(NettyTransport.fromConfig(), RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_FLUSH_CONSOLIDATION, false),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_FLUSH_MAX_MESSAGES, DEFAULT_FLUSH_MAX_MESSAGES));
+    }
+
+    /**
+     * 初始化资源
+     * @param nettyTransport 传输层实现
+     * @param flushConsolidation 是否开启写合并：多个调用线程的写入在同一轮事件循环中只 flush 一次，
+     *                           最多合并 flushMaxMessages 条消息，额外延迟不超过一轮事件循环
+     * @param flushMaxMessages 写合并时最多合并的消息数
+     */
+    NettyRpcClient(NettyTransport nettyTransport, boolean flushConsolidation, int flushMaxMessages) {
+        this(nettyTransport, flushConsolidation, flushMaxMessages,
+                ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension(ServiceDiscoveryEnum.ZK.getName()));
+    }
+
+    /**
+     * 使用指定的服务发现
+     */
+    NettyRpcClient(ServiceDiscovery serviceDiscovery) {
+        this(NettyTransport.fromConfig(), RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_FLUSH_CONSOLIDATION, false),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_FLUSH_MAX_MESSAGES, DEFAULT_FLUSH_MAX_MESSAGES), serviceDiscovery);
+    }
+
+    private NettyRpcClient(NettyTransport nettyTransport, boolean flushConsolidation, int flushMaxMessages,
+                           ServiceDiscovery serviceDiscovery) {
         // 初始化事件循环组
-        eventLoopGroup = new NioEventLoopGroup();
+        eventLoopGroup = nettyTransport.newEventLoopGroup(0);
         // RPC消息编码器
         RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
         // Bootstrap
-        bootstrap = new Bootstrap();
+        bootstrap = nettyTransport.configure(new Bootstrap());
         bootstrap.group(eventLoopGroup)
-                .channel(NioSocketChannel.class)
                 .handler(new LoggingHandler(LogLevel.INFO))
                 //  The timeout period of the connection.
                 //  If this time is exceeded or the connection cannot be established, the connection fails.
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
+                // 出站缓冲超过高水位时 channel 变为不可写，新请求等待发送许可，低于低水位后恢复
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_WRITE_BUFFER_LOW_WATER_MARK, WriteBufferWaterMark.DEFAULT.low()),
+                        RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_WRITE_BUFFER_HIGH_WATER_MARK, WriteBufferWaterMark.DEFAULT.high())))
                 .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) {
                         ChannelPipeline p = ch.pipeline();
+                        if (flushConsolidation) {
+                            // 写合并 每条请求仍然 writeAndFlush，由该 handler 把 flush 推迟到本轮事件循环结束或累计 flushMaxMessages 条
+                            p.addLast(new FlushConsolidationHandler(flushMaxMessages, true));
+                        }
                         // 当客户端超过5秒没有发送数据时，发送心跳请求
                         p.addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
                         // RPCMessageFrame  解码器
@@ -80,10 +174,25 @@ public final class NettyRpcClient implements RpcRequestTransport {
                         p.addLast(new NettyRpcClientHandler());
                     }
                 });
-        this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension(ServiceDiscoveryEnum.ZK.getName());
+        this.serviceDiscovery = serviceDiscovery;
         this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
         this.activeRequestsRecorder = SingletonFactory.getInstance(ActiveRequestsRecorder.class);
+        this.inFlightLimiter = SingletonFactory.getInstance(InFlightLimiter.class);
+        this.hedgePolicy = SingletonFactory.getInstance(HedgePolicy.class);
+        this.retryPolicy = SingletonFactory.getInstance(RetryPolicy.class);
+        this.circuitBreakerRegistry = SingletonFactory.getInstance(CircuitBreakerRegistry.class);
+        this.defaultTimeoutMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_TIMEOUT, DEFAULT_TIMEOUT_MILLIS);
+        this.streamWindow = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_STREAM_WINDOW, DEFAULT_STREAM_WINDOW);
+        this.streamChunkSize = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_STREAM_CHUNK_SIZE, DEFAULT_STREAM_CHUNK_SIZE);
+        CustomThreadPoolConfig senderPoolConfig = new CustomThreadPoolConfig();
+        senderPoolConfig.setWorkQueue(new SynchronousQueue<>());
+        this.bidiStreamSender = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(senderPoolConfig, "stream-bidi-sender", true);
+        this.policyExecutor = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(new CustomThreadPoolConfig(), "rpc-client-policy", true);
+        this.reconnectManager = new ReconnectManager(channelProvider, this::connectAndPool,
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_BACKOFF, DEFAULT_RECONNECT_BACKOFF_MILLIS),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_MAX_BACKOFF, DEFAULT_RECONNECT_MAX_BACKOFF_MILLIS),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_RECONNECT_MAX_ATTEMPTS, DEFAULT_RECONNECT_MAX_ATTEMPTS));
     }
 
     /**
@@ -94,63 +203,538 @@ public final class NettyRpcClient implements RpcRequestTransport {
      */
     @SneakyThrows
     public Channel doConnect(InetSocketAddress inetSocketAddress) {
+        return connect(inetSocketAddress).get();
+    }
+
+    /**
+     * 异步连接服务器，连接失败时 future 以异常结束
+     *
+     * @param inetSocketAddress server address
+     * @return 连接建立时完成的future
+     */
+    private CompletableFuture<Channel> connect(InetSocketAddress inetSocketAddress) {
         CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
-        bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
+        ChannelFuture connectFuture;
+        try {
+            connectFuture = bootstrap.connect(inetSocketAddress);
+        } catch (RuntimeException e) {
+            // 如事件循环已关闭；同步抛出会使 connectFutures 中共用的 future 永远不会完成
+            completableFuture.completeExceptionally(new RpcException(
+                    RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + inetSocketAddress, e));
+            return completableFuture;
+        }
+        connectFuture.addListener((ChannelFutureListener) future -> {
             if (future.isSuccess()) {
                 log.info("The client has connected [{}] successful!", inetSocketAddress.toString());
                 completableFuture.complete(future.channel());
             } else {
-                throw new IllegalStateException();
+                completableFuture.completeExceptionally(new RpcException(
+                        RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + inetSocketAddress, future.cause()));
             }
         });
-        return completableFuture.get();
+        return completableFuture;
     }
 
     /**
-     * 发送RPC请求
+     * 发送RPC请求，阻塞等待响应
      * @param rpcRequest
      * @return
      */
     @Override
     public Object sendRpcRequest(RpcRequest rpcRequest) {
-        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        try {
+            return sendRpcRequestAsync(rpcRequest).get();
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("rpc请求失败," + e.getMessage());
+        }
+    }
+
+    /**
+     * 异步发送RPC请求，调用线程不会阻塞在响应上
+     * @param rpcRequest
+     * @return 收到响应时完成的future，找不到服务地址等失败同样通过 future 返回，不会抛出
+     */
+    @Override
+    public CompletableFuture<RpcResponse<Object>> sendRpcRequestAsync(RpcRequest rpcRequest) {
         // 1. 获取服务的地址
-        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        InetSocketAddress inetSocketAddress;
+        try {
+            inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        } catch (RuntimeException e) {
+            CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+            resultFuture.completeExceptionally(e);
+            return resultFuture;
+        }
+        long timeoutMillis = getTimeoutMillis(rpcRequest);
+        long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        Set<String> limitedAddresses = ConcurrentHashMap.newKeySet();
+        return failoverIfLimited(rpcRequest, inetSocketAddress, deadline, limitedAddresses,
+                sendWithPolicies(rpcRequest, inetSocketAddress, timeoutMillis));
+    }
+
+    /**
+     * 服务端达到并发上限时请求没有执行，即使不是幂等方法也可以安全地改发到其他地址，
+     * 直到所有地址都拒绝、没有其他地址或超时，此时返回最后一个拒绝响应
+     * @param inetSocketAddress 发送本次尝试的地址
+     * @param limitedAddresses 本次调用中已经拒绝过的地址
+     */
+    private CompletableFuture<RpcResponse<Object>> failoverIfLimited(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress, long deadline,
+                                                                     Set<String> limitedAddresses, CompletableFuture<RpcResponse<Object>> future) {
+        return future.thenCompose(response -> {
+            if (response == null || response.getCode() == null || !response.getCode().equals(RpcResponseCodeEnum.LIMITED.getCode())) {
+                return CompletableFuture.completedFuture(response);
+            }
+            limitedAddresses.add(inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort());
+            InetSocketAddress nextAddress;
+            try {
+                nextAddress = serviceDiscovery.lookupService(rpcRequest, limitedAddresses);
+            } catch (RuntimeException e) {
+                log.warn("lookup failover address failed", e);
+                nextAddress = null;
+            }
+            long now = System.currentTimeMillis();
+            if (nextAddress == null || now >= deadline) {
+                return CompletableFuture.completedFuture(response);
+            }
+            log.warn("[{}] is at its concurrency limit, send [{}#{}] to [{}]", inetSocketAddress,
+                    rpcRequest.getRpcServiceName(), rpcRequest.getMethodName(), nextAddress);
+            long timeoutMillis = deadline == Long.MAX_VALUE ? 0 : deadline - now;
+            return failoverIfLimited(rpcRequest, nextAddress, deadline, limitedAddresses,
+                    sendWithPolicies(rpcRequest, nextAddress, timeoutMillis));
+        });
+    }
+
+    /**
+     * 按方法是否幂等选择重试和对冲，向 inetSocketAddress 发送一次调用
+     */
+    private CompletableFuture<RpcResponse<Object>> sendWithPolicies(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress, long timeoutMillis) {
+        if (!rpcRequest.isIdempotent()) {
+            return sendRpcRequestAsync(rpcRequest, inetSocketAddress, timeoutMillis);
+        }
+        int retries = retryPolicy.getRetries(rpcRequest.getRetries());
+        if (retries <= 0) {
+            return sendIdempotentRequest(rpcRequest, inetSocketAddress, timeoutMillis);
+        }
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        sendWithRetry(rpcRequest, inetSocketAddress, 0, retries, deadline, ConcurrentHashMap.newKeySet(), resultFuture);
+        return resultFuture;
+    }
+
+    /**
+     * 发送幂等方法的请求，并在失败后重试
+     * 每次重试前按抖动的指数退避等待，并由负载均衡在本次调用还没有尝试过的地址中选择；
+     * 所有尝试共用调用的超时时间，每次尝试只分到剩余时间中的一份(剩余时间 / 剩余尝试次数)，
+     * 一次尝试超时后仍有时间重试；剩余时间不足以完成退避时不再重试
+     * @param attempt 当前是第几次尝试，从 0 开始
+     * @param triedAddresses 本次调用已经尝试过的地址
+     */
+    private void sendWithRetry(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress, int attempt, int retries, long deadline,
+                               Set<String> triedAddresses, CompletableFuture<RpcResponse<Object>> resultFuture) {
+        triedAddresses.add(inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort());
+        long timeoutMillis = deadline == Long.MAX_VALUE ? 0
+                : Math.max(1, (deadline - System.currentTimeMillis()) / (retries - attempt + 1));
+        sendIdempotentRequest(rpcRequest, inetSocketAddress, timeoutMillis).whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                resultFuture.complete(response);
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            long backoffMillis = retryPolicy.getBackoffMillis(attempt);
+            if (attempt >= retries || resultFuture.isDone() || System.currentTimeMillis() + backoffMillis >= deadline) {
+                resultFuture.completeExceptionally(cause);
+                return;
+            }
+            // 时间轮线程只负责退避到期，查找地址和发送交给 policyExecutor
+            TimeoutTimer.newTimeout(t -> executePolicy(() -> {
+                InetSocketAddress nextAddress;
+                try {
+                    nextAddress = serviceDiscovery.lookupService(rpcRequest, triedAddresses);
+                } catch (RuntimeException e) {
+                    log.warn("lookup retry address failed", e);
+                    nextAddress = null;
+                }
+                if (nextAddress == null) {
+                    // 没有还未尝试过的地址
+                    resultFuture.completeExceptionally(cause);
+                    return;
+                }
+                log.warn("retry [{}] of [{}#{}] on [{}] after [{}]ms, last failure: [{}]", attempt + 1,
+                        rpcRequest.getRpcServiceName(), rpcRequest.getMethodName(), nextAddress, backoffMillis, cause.getMessage());
+                sendWithRetry(rpcRequest, nextAddress, attempt + 1, retries, deadline, triedAddresses, resultFuture);
+            }, () -> resultFuture.completeExceptionally(cause)), backoffMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * 发送幂等方法的一次尝试，开启对冲时发送对冲请求
+     */
+    private CompletableFuture<RpcResponse<Object>> sendIdempotentRequest(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress, long timeoutMillis) {
+        if (hedgePolicy.isEnabled()) {
+            return sendHedgedRequest(rpcRequest, inetSocketAddress, timeoutMillis);
+        }
+        return sendRpcRequestAsync(rpcRequest, inetSocketAddress, timeoutMillis);
+    }
+
+    /**
+     * 发送对冲请求：先向 primaryAddress 发送，超过该方法的分位延迟还没有响应时再向另一个地址发送一次
+     * 先到的成功响应生效，另一个请求被取消并从未处理请求中移除；所有请求都失败时才失败
+     * @param rpcRequest 幂等方法的请求
+     * @param primaryAddress 负载均衡选出的地址
+     * @return 收到第一个成功响应时完成的future
+     */
+    private CompletableFuture<RpcResponse<Object>> sendHedgedRequest(RpcRequest rpcRequest, InetSocketAddress primaryAddress, long timeoutMillis) {
+        String key = getHedgeKey(rpcRequest);
+        hedgePolicy.onRequest();
+        long delayMillis = hedgePolicy.getDelayMillis(key);
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        AtomicInteger pendingAttempts = new AtomicInteger(1);
+        CompletableFuture<RpcResponse<Object>> primary = sendRpcRequestAsync(rpcRequest, primaryAddress, timeoutMillis);
+        completeFirst(resultFuture, primary, pendingAttempts, key);
+        resultFuture.whenComplete((response, throwable) -> primary.cancel(false));
+        if (delayMillis < 0 || (timeoutMillis > 0 && delayMillis >= timeoutMillis)) {
+            // 延迟样本不足或对冲时已经超时，不对冲
+            return resultFuture;
+        }
+        // 时间轮线程只负责到期，查找地址和发送交给 policyExecutor
+        Timeout timeout = TimeoutTimer.newTimeout(t -> executePolicy(() -> {
+            if (resultFuture.isDone() || !hedgePolicy.tryAcquire()) {
+                return;
+            }
+            InetSocketAddress hedgeAddress;
+            try {
+                hedgeAddress = serviceDiscovery.lookupService(rpcRequest,
+                        Collections.singleton(primaryAddress.getHostString() + ":" + primaryAddress.getPort()));
+            } catch (RuntimeException e) {
+                log.warn("lookup hedge address failed", e);
+                return;
+            }
+            if (hedgeAddress == null) {
+                return;
+            }
+            log.info("send hedged request of [{}] to [{}] after [{}]ms", key, hedgeAddress, delayMillis);
+            pendingAttempts.incrementAndGet();
+            CompletableFuture<RpcResponse<Object>> hedge = sendRpcRequestAsync(rpcRequest, hedgeAddress,
+                    timeoutMillis > 0 ? timeoutMillis - delayMillis : timeoutMillis);
+            completeFirst(resultFuture, hedge, pendingAttempts, key);
+            resultFuture.whenComplete((response, throwable) -> hedge.cancel(false));
+        }, () -> log.warn("policy executor is busy, skip hedged request of [{}]", key)), delayMillis, TimeUnit.MILLISECONDS);
+        resultFuture.whenComplete((response, throwable) -> timeout.cancel());
+        return resultFuture;
+    }
+
+    /**
+     * 在 policyExecutor 中执行到期的对冲或重试，线程池已满时执行 onRejected
+     */
+    private void executePolicy(Runnable task, Runnable onRejected) {
+        try {
+            policyExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            onRejected.run();
+        }
+    }
+
+    /**
+     * 对冲的方法标识，包含参数类型，重载方法的延迟分开统计
+     */
+    private static String getHedgeKey(RpcRequest rpcRequest) {
+        StringJoiner key = new StringJoiner(",", rpcRequest.getRpcServiceName() + "#" + rpcRequest.getMethodName() + "(", ")");
+        if (rpcRequest.getParamTypes() != null) {
+            for (Class<?> paramType : rpcRequest.getParamTypes()) {
+                key.add(paramType.getName());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 第一个成功的请求完成 resultFuture，并记录其延迟用于计算对冲延迟
+     * 失败响应(限流、过载、服务异常)和异常一样只计为一次失败的尝试，所有尝试都失败时以最后一个结果完成
+     */
+    private void completeFirst(CompletableFuture<RpcResponse<Object>> resultFuture, CompletableFuture<RpcResponse<Object>> attempt,
+                               AtomicInteger pendingAttempts, String key) {
+        long start = System.currentTimeMillis();
+        attempt.whenComplete((response, throwable) -> {
+            if (throwable == null && response != null
+                    && Integer.valueOf(RpcResponseCodeEnum.SUCCESS.getCode()).equals(response.getCode())) {
+                hedgePolicy.record(key, System.currentTimeMillis() - start);
+                resultFuture.complete(response);
+            } else if (pendingAttempts.decrementAndGet() == 0) {
+                if (throwable == null) {
+                    resultFuture.complete(response);
+                } else {
+                    resultFuture.completeExceptionally(throwable);
+                }
+            }
+        });
+    }
+
+    /**
+     * 单向调用，不登记未处理请求、不等待响应，调用线程不阻塞
+     * 仍然遵守发送许可，channel 不可写时请求在后台排队；找不到服务地址、等待许可超时或写入失败时只记录日志，不抛出，
+     * 不参与熔断、对冲和重试
+     */
+    @Override
+    public void sendOneWayRequest(RpcRequest rpcRequest) {
+        InetSocketAddress inetSocketAddress;
+        try {
+            inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        } catch (RuntimeException e) {
+            log.warn("one-way request [{}#{}] dropped: [{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(),
+                    e.getMessage());
+            return;
+        }
+        sendOneWayRequest(rpcRequest, inetSocketAddress);
+    }
+
+    void sendOneWayRequest(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress) {
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.ONEWAY_REQUEST_TYPE).build();
+        getChannelAsync(inetSocketAddress)
+                .thenCompose(channel -> inFlightLimiter.acquire(channel, getTimeoutMillis(rpcRequest)).thenApply(permit -> channel))
+                .whenComplete((channel, throwable) -> {
+                    if (throwable != null) {
+                        log.warn("one-way request [{}#{}] dropped: [{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(),
+                                throwable.getMessage());
+                        return;
+                    }
+                    channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+                        inFlightLimiter.release(channel);
+                        if (!future.isSuccess()) {
+                            log.error("Send one-way request failed:", future.cause());
+                        }
+                    });
+                });
+    }
+
+    @Override
+    public boolean isStreamSupported() {
+        return true;
+    }
+
+    /**
+     * 发起服务端流式调用
+     * 调用超时时间用作等待每一批数据的超时时间，而不是整个流的超时时间；流式调用不参与对冲和重试
+     */
+    @Override
+    public RpcStream<Object> sendStreamRequest(RpcRequest rpcRequest) {
+        return sendStreamRequest(rpcRequest, serviceDiscovery.lookupService(rpcRequest));
+    }
+
+    RpcStream<Object> sendStreamRequest(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress) {
+        Channel channel = getChannel(inetSocketAddress);
+        ClientStream clientStream = new ClientStream(channel, unprocessedRequests, streamWindow, getTimeoutMillis(rpcRequest));
+        clientStream.start(rpcRequest);
+        return clientStream;
+    }
+
+    /**
+     * 发起客户端流式调用，在调用线程中发送流参数，发送完毕后等待服务方法返回
+     * 调用超时时间用作等待每个信用和等待最终响应的超时时间；客户端流式调用同样不参与对冲和重试
+     */
+    @Override
+    public RpcResponse<Object> sendUploadRequest(RpcRequest rpcRequest) {
+        return sendUploadRequest(rpcRequest, serviceDiscovery.lookupService(rpcRequest));
+    }
+
+    RpcResponse<Object> sendUploadRequest(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress) {
+        int index = indexOfStreamParameter(rpcRequest);
+        Iterator<?> source = getStreamParameter(rpcRequest, index);
+        Channel channel = getChannel(inetSocketAddress);
+        ClientUpload clientUpload = new ClientUpload(channel, unprocessedRequests, streamChunkSize, getTimeoutMillis(rpcRequest));
+        return clientUpload.send(withoutStreamParameter(rpcRequest, index), source);
+    }
+
+    /**
+     * 发起双向流，流参数在独立的线程中发送，调用方可以同时消费服务端返回的流
+     * 调用超时时间用作等待服务端每一批数据的超时时间；双向流同样不参与对冲和重试
+     */
+    @Override
+    public RpcStream<Object> sendBidiStreamRequest(RpcRequest rpcRequest) {
+        return sendBidiStreamRequest(rpcRequest, serviceDiscovery.lookupService(rpcRequest));
+    }
+
+    RpcStream<Object> sendBidiStreamRequest(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress) {
+        int index = indexOfStreamParameter(rpcRequest);
+        Iterator<?> source = getStreamParameter(rpcRequest, index);
+        Channel channel = getChannel(inetSocketAddress);
+        ClientBidiStream clientBidiStream = new ClientBidiStream(channel, unprocessedRequests, streamWindow,
+                getTimeoutMillis(rpcRequest));
+        clientBidiStream.start(withoutStreamParameter(rpcRequest, index), source, bidiStreamSender);
+        return clientBidiStream;
+    }
+
+    private static int indexOfStreamParameter(RpcRequest rpcRequest) {
+        int index = RpcStream.indexOfStreamParameter(rpcRequest.getParamTypes());
+        if (index < 0) {
+            throw new IllegalArgumentException(rpcRequest.getMethodName() + " has no Iterator or Stream parameter");
+        }
+        return index;
+    }
+
+    private static Iterator<?> getStreamParameter(RpcRequest rpcRequest, int index) {
+        Object source = rpcRequest.getParameters()[index];
+        if (source == null) {
+            return Collections.emptyIterator();
+        }
+        return source instanceof Stream ? ((Stream<?>) source).iterator() : (Iterator<?>) source;
+    }
+
+    /**
+     * 流参数单独发送，请求中置为 null，不修改调用方传入的参数数组
+     */
+    private static RpcRequest withoutStreamParameter(RpcRequest rpcRequest, int index) {
+        Object[] parameters = rpcRequest.getParameters().clone();
+        parameters[index] = null;
+        return rpcRequest.toBuilder().parameters(parameters).build();
+    }
+
+    /**
+     * 预热服务：订阅服务地址，并行连接全部或部分服务节点，可选地在每个连接上发送一次心跳请求
+     * 单个节点预热失败只记录日志，首次调用时仍会按正常流程重新连接
+     */
+    @Override
+    public CompletableFuture<Void> warmUp(RpcRequest rpcRequest, int connections, boolean ping) {
+        // 1. 订阅服务地址
+        List<InetSocketAddress> serviceAddresses = new ArrayList<>(serviceDiscovery.lookupAllServices(rpcRequest));
+        if (connections > 0 && connections < serviceAddresses.size()) {
+            // 只预热部分节点时随机选择，避免所有客户端都连向同一批节点
+            Collections.shuffle(serviceAddresses);
+            serviceAddresses = serviceAddresses.subList(0, connections);
+        }
+        // 2. 预热请求使用的序列化和压缩实现
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(SerializationTypeEnum.HESSIAN.getName());
+        ExtensionLoader.getExtensionLoader(Compress.class).getExtension(CompressTypeEnum.GZIP.getName())
+                .compress(serializer.serialize(rpcRequest));
+        // 3. 并行连接各个节点
+        long timeoutMillis = getTimeoutMillis(rpcRequest);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[serviceAddresses.size()];
+        for (int i = 0; i < futures.length; i++) {
+            InetSocketAddress inetSocketAddress = serviceAddresses.get(i);
+            CompletableFuture<?> future = getChannelAsync(inetSocketAddress);
+            if (ping) {
+                future = future.thenCompose(channel -> NettyRpcClientHandler.ping((Channel) channel, unprocessedRequests, timeoutMillis));
+            }
+            futures[i] = future.handle((result, throwable) -> {
+                if (throwable != null) {
+                    log.warn("warm up [{}] on [{}] failed: [{}]", rpcRequest.getRpcServiceName(), inetSocketAddress, throwable.getMessage());
+                }
+                return null;
+            });
+        }
+        log.info("warming up [{}] on [{}]", rpcRequest.getRpcServiceName(), serviceAddresses);
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * 向指定地址发送请求
+     * @param rpcRequest
+     * @param inetSocketAddress
+     * @param timeoutMillis 超时时间(毫秒)，小于等于 0 表示不超时
+     * @return 收到响应时完成的future
+     */
+    private CompletableFuture<RpcResponse<Object>> sendRpcRequestAsync(RpcRequest rpcRequest, InetSocketAddress inetSocketAddress, long timeoutMillis) {
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
         String rpcServiceName = rpcRequest.getRpcServiceName();
         String serviceAddress = inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort();
-        // 2. 获取channel
-        Channel channel = getChannel(inetSocketAddress);
-        if (channel.isActive()) {
-            // 3.发送请求
-            activeRequestsRecorder.increment(rpcServiceName, serviceAddress);
-            resultFuture.whenComplete((response, throwable) -> activeRequestsRecorder.decrement(rpcServiceName, serviceAddress));
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
-            RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
-                    .codec(SerializationTypeEnum.HESSIAN.getCode())
-                    .compress(CompressTypeEnum.GZIP.getCode())
-                    .messageType(RpcConstants.REQUEST_TYPE).build();
-            channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
-                if (future.isSuccess()) {
-                    log.info("client send message: [{}]", rpcMessage);
+        // 1. 节点熔断中时快速失败，幂等方法会由重试换到其他节点
+        if (circuitBreakerRegistry.isEnabled()) {
+            CircuitBreaker.Permission permission = circuitBreakerRegistry.getCircuitBreaker(rpcServiceName, serviceAddress)
+                    .tryAcquirePermission();
+            if (permission == null) {
+                resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CIRCUIT_BREAKER_OPEN, serviceAddress));
+                return resultFuture;
+            }
+            long startMillis = System.currentTimeMillis();
+            resultFuture.whenComplete((response, throwable) -> {
+                long durationMillis = System.currentTimeMillis() - startMillis;
+                if (resultFuture.isCancelled()) {
+                    // 对冲请求中被取消的一方不计入统计
+                    permission.onIgnored();
+                } else if (throwable != null) {
+                    permission.onError(durationMillis);
                 } else {
-                    future.channel().close();
-                    unprocessedRequests.remove(rpcRequest.getRequestId());
-                    resultFuture.completeExceptionally(future.cause());
-                    log.error("Send failed:", future.cause());
+                    permission.onSuccess(durationMillis);
                 }
             });
-        } else {
-            throw new IllegalStateException();
         }
-        // 4. 得到响应的结果
-        try {
-            return resultFuture.get();
-        } catch (InterruptedException | ExecutionException e) {
-            if (e instanceof InterruptedException) {
-                Thread.currentThread().interrupt();
+        activeRequestsRecorder.increment(rpcServiceName, serviceAddress);
+        resultFuture.whenComplete((response, throwable) -> activeRequestsRecorder.decrement(rpcServiceName, serviceAddress));
+        // 2. 获取channel 连接尚未建立时在连接完成的回调中发送，调用线程不等待
+        getChannelAsync(inetSocketAddress).whenComplete((channel, throwable) -> {
+            if (throwable != null) {
+                resultFuture.completeExceptionally(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            } else if (!channel.isActive()) {
+                resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE, serviceAddress));
+            } else if (!resultFuture.isDone()) {
+                // 3.发送请求
+                send(channel, rpcRequest, resultFuture, timeoutMillis);
             }
-            throw new RuntimeException("rpc请求失败," + e.getMessage());
-        }
+        });
+        // 4. 响应到达时由 NettyRpcClientHandler 完成 future
+        return resultFuture;
+    }
+
+    /**
+     * 在channel上发送请求
+     * @param channel
+     * @param rpcRequest
+     * @param resultFuture 收到响应时完成的future
+     */
+    void send(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture) {
+        send(channel, rpcRequest, resultFuture, getTimeoutMillis(rpcRequest));
+    }
+
+    private void send(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture, long timeoutMillis) {
+        long start = System.currentTimeMillis();
+        // channel 不可写或等待响应的请求过多时先等待发送许可，等待时间计入请求超时
+        inFlightLimiter.acquire(channel, timeoutMillis).whenComplete((permit, throwable) -> {
+            if (throwable != null) {
+                resultFuture.completeExceptionally(throwable);
+                return;
+            }
+            resultFuture.whenComplete((response, e) -> inFlightLimiter.release(channel));
+            if (resultFuture.isDone()) {
+                // 等待许可期间请求已被取消
+                return;
+            }
+            long remainingMillis = timeoutMillis > 0 ? Math.max(1, timeoutMillis - (System.currentTimeMillis() - start)) : timeoutMillis;
+            write(channel, rpcRequest, resultFuture, remainingMillis);
+        });
+    }
+
+    private void write(Channel channel, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture, long timeoutMillis) {
+        int requestId = unprocessedRequests.put(channel, resultFuture, timeoutMillis);
+        // 被取消的请求(如对冲中输掉的请求)从未处理请求中移除，之后到达的响应直接丢弃
+        resultFuture.whenComplete((response, throwable) -> {
+            if (resultFuture.isCancelled()) {
+                unprocessedRequests.remove(channel, requestId);
+            }
+        });
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                .requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.info("client send message: [{}]", rpcMessage);
+            } else {
+                future.channel().close();
+                unprocessedRequests.remove(channel, requestId);
+                resultFuture.completeExceptionally(future.cause());
+                log.error("Send failed:", future.cause());
+            }
+        });
+    }
+
+    private long getTimeoutMillis(RpcRequest rpcRequest) {
+        return rpcRequest.getTimeout() > 0 ? rpcRequest.getTimeout() : defaultTimeoutMillis;
     }
 
     /**
@@ -158,16 +742,114 @@ public final class NettyRpcClient implements RpcRequestTransport {
      * @param inetSocketAddress
      * @return
      */
+    @SneakyThrows
     public Channel getChannel(InetSocketAddress inetSocketAddress) {
+        try {
+            return getChannelAsync(inetSocketAddress).join();
+        } catch (CompletionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 异步获取通道 同一地址上并发的首次连接共用一个连接 future，连接失败时所有等待者立即失败
+     * @param inetSocketAddress
+     * @return 获得可用通道时完成的future
+     */
+    public CompletableFuture<Channel> getChannelAsync(InetSocketAddress inetSocketAddress) {
         Channel channel = channelProvider.get(inetSocketAddress);
-        if (channel == null) {
-            channel = doConnect(inetSocketAddress);
-            channelProvider.set(inetSocketAddress, channel);
+        if (channel != null) {
+            replenish(inetSocketAddress);
+            return CompletableFuture.completedFuture(channel);
+        }
+        if (reconnectManager.isReconnecting(inetSocketAddress)) {
+            // 重连期间没有可用连接，立即失败，幂等请求由重试换到其他节点
+            CompletableFuture<Channel> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.SERVER_RECONNECTING, inetSocketAddress.toString()));
+            return failedFuture;
+        }
+        String key = inetSocketAddress.toString();
+        CompletableFuture<Channel> connectFuture = new CompletableFuture<>();
+        CompletableFuture<Channel> existing = connectFutures.putIfAbsent(key, connectFuture);
+        if (existing != null) {
+            return existing;
         }
-        return channel;
+        connect(inetSocketAddress).whenComplete((connected, throwable) -> {
+            connectFutures.remove(key, connectFuture);
+            if (throwable != null) {
+                connectFuture.completeExceptionally(throwable);
+                return;
+            }
+            Channel selected = connected;
+            if (!pool(inetSocketAddress, connected)) {
+                // 后台补齐的连接已经占满连接池，改用池中的连接并关闭多余的连接
+                Channel pooled = channelProvider.get(inetSocketAddress);
+                if (pooled != null) {
+                    connected.close();
+                    selected = pooled;
+                }
+            }
+            connectFuture.complete(selected);
+            replenish(inetSocketAddress);
+        });
+        return connectFuture;
+    }
+
+    /**
+     * 在后台补齐连接池中缺少或已失效的连接，调用线程不等待连接建立
+     * 已预留的连接还在建立时不重复补齐；补齐失败后交给 {@link ReconnectManager} 按退避重试，重连期间不再按需补齐
+     * @param inetSocketAddress
+     */
+    private void replenish(InetSocketAddress inetSocketAddress) {
+        if (reconnectManager.isReconnecting(inetSocketAddress)) {
+            return;
+        }
+        int vacancies = channelProvider.reserveVacancies(inetSocketAddress);
+        for (int i = 0; i < vacancies; i++) {
+            connectAndPool(inetSocketAddress).whenComplete((channel, throwable) -> {
+                channelProvider.connected(inetSocketAddress);
+                if (throwable != null) {
+                    log.warn("The client failed to replenish connection to [{}]", inetSocketAddress, throwable);
+                    reconnectManager.onConnectFailed(inetSocketAddress);
+                }
+            });
+        }
+    }
+
+    /**
+     * 建立连接并放入连接池，连接池已满时关闭新建的连接
+     * @return 连接建立时完成的future
+     */
+    private CompletableFuture<Channel> connectAndPool(InetSocketAddress inetSocketAddress) {
+        return connect(inetSocketAddress).thenApply(channel -> {
+            if (!pool(inetSocketAddress, channel)) {
+                channel.close();
+            }
+            return channel;
+        });
+    }
+
+    /**
+     * 放入连接池，连接断开时由 {@link ReconnectManager} 在后台重连
+     * @return 连接池已满时返回 false
+     */
+    private boolean pool(InetSocketAddress inetSocketAddress, Channel channel) {
+        if (!channelProvider.set(inetSocketAddress, channel)) {
+            return false;
+        }
+        channel.closeFuture().addListener(future -> reconnectManager.onChannelClosed(inetSocketAddress));
+        return true;
+    }
+
+    /**
+     * 所有连接上等待发送许可的请求数，持续大于 0 说明服务端处理不过来
+     */
+    public int getWaitingRequestCount() {
+        return inFlightLimiter.getWaitingCount();
     }
 
     public void close() {
+        reconnectManager.close();
         eventLoopGroup.shutdownGracefully();
     }
 }
@@ -1,7 +1,9 @@
 package github.javaguide.remoting.transport.netty.client;
 
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.RpcException;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
@@ -12,7 +14,8 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Customize the client ChannelHandler to process the data sent by the server
@@ -26,17 +29,20 @@ import java.net.InetSocketAddress;
  */
 @Slf4j
 public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
-    
+    // 空闲心跳等待 pong 的时间(毫秒)，超时后只是从未处理请求中移除
+    private static final long HEARTBEAT_TIMEOUT_MILLIS = 5000;
+
+
     //未得到响应的请求
     private final UnprocessedRequests unprocessedRequests;
 
-    // 客户端
-    private final NettyRpcClient nettyRpcClient;
+    // 发送许可
+    private final InFlightLimiter inFlightLimiter;
 
-    // 单例工厂实例化UnprocessedRequests和NettyRpcClient
+    // 单例工厂实例化UnprocessedRequests和InFlightLimiter
     public NettyRpcClientHandler() {
         this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nettyRpcClient = SingletonFactory.getInstance(NettyRpcClient.class);
+        this.inFlightLimiter = SingletonFactory.getInstance(InFlightLimiter.class);
     }
 
     /**
@@ -51,9 +57,24 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
                 byte messageType = tmp.getMessageType();
                 if (messageType == RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
                     log.info("heart [{}]", tmp.getData());
-                } else if (messageType == RpcConstants.RESPONSE_TYPE) {
+                    unprocessedRequests.complete(ctx.channel(), tmp.getRequestId(), RpcResponse.success(tmp.getData()));
+                } else if (messageType == RpcConstants.RESPONSE_TYPE || messageType == RpcConstants.STREAM_END_TYPE) {
                     RpcResponse<Object> rpcResponse = (RpcResponse<Object>) tmp.getData();
-                    unprocessedRequests.complete(rpcResponse);
+                    unprocessedRequests.complete(ctx.channel(), tmp.getRequestId(), rpcResponse);
+                } else if (messageType == RpcConstants.STREAM_DATA_TYPE) {
+                    CompletableFuture<RpcResponse<Object>> future = unprocessedRequests.get(ctx.channel(), tmp.getRequestId());
+                    // 已取消的流之后到达的数据直接丢弃
+                    if (future instanceof ClientStream) {
+                        ((ClientStream) future).onData((List<?>) ((RpcResponse<?>) tmp.getData()).getData());
+                    }
+                } else if (messageType == RpcConstants.STREAM_CREDIT_TYPE) {
+                    CompletableFuture<RpcResponse<Object>> future = unprocessedRequests.get(ctx.channel(), tmp.getRequestId());
+                    int credits = (Integer) ((RpcResponse<?>) tmp.getData()).getData();
+                    if (future instanceof ClientUpload) {
+                        ((ClientUpload) future).addCredits(credits);
+                    } else if (future instanceof ClientBidiStream) {
+                        ((ClientBidiStream) future).addCredits(credits);
+                    }
                 }
             }
         } finally {
@@ -61,6 +82,30 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * channel 恢复可写或关闭时，向等待的请求发放发送许可
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        inFlightLimiter.drain(ctx.channel());
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * channel 断开时其上等待响应的请求立即失败，重连由 {@link ReconnectManager} 在后台完成
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Channel channel = ctx.channel();
+        int failed = unprocessedRequests.failAll(channel,
+                new RpcException(RpcErrorMessageEnum.CHANNEL_CLOSED, String.valueOf(channel.remoteAddress())));
+        if (failed > 0) {
+            log.warn("channel [{}] closed, failed [{}] pending requests", channel.remoteAddress(), failed);
+        }
+        inFlightLimiter.drain(channel);
+        super.channelInactive(ctx);
+    }
+
     /**
      * 处理写空闲事件
      */
@@ -70,19 +115,38 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.WRITER_IDLE) {
                 log.info("write idle happen [{}]", ctx.channel().remoteAddress());
-                Channel channel = nettyRpcClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
-                RpcMessage rpcMessage = new RpcMessage();
-                rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
-                rpcMessage.setMessageType(RpcConstants.HEARTBEAT_REQUEST_TYPE);
-                rpcMessage.setData(RpcConstants.PING);
-                channel.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                // 连接池中的每个连接各自发送心跳，避免空闲的连接被服务端关闭
+                ping(ctx.channel(), unprocessedRequests, HEARTBEAT_TIMEOUT_MILLIS);
             }
         } else {
             super.userEventTriggered(ctx, evt);
         }
     }
 
+    /**
+     * 发送心跳请求，心跳和普通请求一样分配 channel 内唯一的请求 id，服务端原样带回，收到 pong 时完成 future
+     * @param timeoutMillis 等待 pong 的超时时间(毫秒)
+     * @return 收到 pong 时完成的future
+     */
+    static CompletableFuture<RpcResponse<Object>> ping(Channel channel, UnprocessedRequests unprocessedRequests, long timeoutMillis) {
+        CompletableFuture<RpcResponse<Object>> pongFuture = new CompletableFuture<>();
+        int requestId = unprocessedRequests.put(channel, pongFuture, timeoutMillis);
+        RpcMessage rpcMessage = new RpcMessage();
+        rpcMessage.setRequestId(requestId);
+        rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
+        rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
+        rpcMessage.setMessageType(RpcConstants.HEARTBEAT_REQUEST_TYPE);
+        rpcMessage.setData(RpcConstants.PING);
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                future.channel().close();
+                unprocessedRequests.remove(channel, requestId);
+                pongFuture.completeExceptionally(future.cause());
+            }
+        });
+        return pongFuture;
+    }
+
     /**
      * 处理异常
      */
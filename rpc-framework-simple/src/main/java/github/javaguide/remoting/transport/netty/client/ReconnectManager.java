@@ -0,0 +1,131 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 连接池中的连接断开后在后台重连
+ * 第 n 次重连前等待 [0, min(maxBackoffMillis, backoffMillis * 2^n)] 毫秒，连续失败 maxAttempts 次后放弃，
+ * 之后的调用会按需重新建立连接。重连期间该地址没有可用连接时，调用立即失败而不是等待连接建立
+ */
+@Slf4j
+class ReconnectManager {
+    private final ChannelProvider channelProvider;
+    // 建立连接并放入连接池
+    private final Function<InetSocketAddress, CompletableFuture<Channel>> connector;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    // 正在重连的地址，value 为已经失败的重连次数
+    private final Map<String, AtomicInteger> reconnecting = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param maxAttempts 连续失败的最大重连次数，小于等于 0 表示不限制
+     */
+    ReconnectManager(ChannelProvider channelProvider, Function<InetSocketAddress, CompletableFuture<Channel>> connector,
+                     long backoffMillis, long maxBackoffMillis, int maxAttempts) {
+        this.channelProvider = channelProvider;
+        this.connector = connector;
+        this.backoffMillis = Math.max(backoffMillis, 1);
+        this.maxBackoffMillis = Math.max(maxBackoffMillis, this.backoffMillis);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 连接池中的连接断开
+     */
+    void onChannelClosed(InetSocketAddress inetSocketAddress) {
+        if (closed) {
+            return;
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        // 同一地址同时只有一个重连任务
+        if (reconnecting.putIfAbsent(inetSocketAddress.toString(), attempts) == null) {
+            schedule(inetSocketAddress, attempts);
+        }
+    }
+
+    /**
+     * 按需补齐连接失败，之后由后台按退避补齐，期间调用不再触发补齐
+     */
+    void onConnectFailed(InetSocketAddress inetSocketAddress) {
+        onChannelClosed(inetSocketAddress);
+    }
+
+    /**
+     * 地址是否正在重连
+     */
+    boolean isReconnecting(InetSocketAddress inetSocketAddress) {
+        return reconnecting.containsKey(inetSocketAddress.toString());
+    }
+
+    void close() {
+        closed = true;
+        reconnecting.clear();
+    }
+
+    private void schedule(InetSocketAddress inetSocketAddress, AtomicInteger attempts) {
+        long delayMillis = getBackoffMillis(attempts.get());
+        TimeoutTimer.newTimeout(t -> reconnect(inetSocketAddress, attempts), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect(InetSocketAddress inetSocketAddress, AtomicInteger attempts) {
+        String key = inetSocketAddress.toString();
+        if (closed) {
+            return;
+        }
+        int vacancies = channelProvider.reserveVacancies(inetSocketAddress);
+        if (vacancies == 0) {
+            // 连接池已被按需建立的连接补满
+            reconnecting.remove(key, attempts);
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(vacancies);
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < vacancies; i++) {
+            connector.apply(inetSocketAddress).whenComplete((channel, throwable) -> {
+                channelProvider.connected(inetSocketAddress);
+                if (throwable != null) {
+                    failed.incrementAndGet();
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    onAttemptFinished(inetSocketAddress, attempts, failed.get() == 0);
+                }
+            });
+        }
+    }
+
+    private void onAttemptFinished(InetSocketAddress inetSocketAddress, AtomicInteger attempts, boolean succeeded) {
+        String key = inetSocketAddress.toString();
+        if (succeeded) {
+            reconnecting.remove(key, attempts);
+            log.info("reconnected to [{}] after [{}] failed attempts", inetSocketAddress, attempts.get());
+            return;
+        }
+        int failedAttempts = attempts.incrementAndGet();
+        if (closed || (maxAttempts > 0 && failedAttempts >= maxAttempts)) {
+            reconnecting.remove(key, attempts);
+            log.warn("give up reconnecting to [{}] after [{}] failed attempts", inetSocketAddress, failedAttempts);
+            return;
+        }
+        schedule(inetSocketAddress, attempts);
+    }
+
+    private long getBackoffMillis(int attempt) {
+        long ceiling = backoffMillis << Math.min(attempt, 20);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,56 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcPropertiesUtil;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 幂等方法的重试策略
+ * 重试次数默认取 rpc.client.retries，两次尝试之间按指数退避并加入随机抖动：
+ * 第 n 次重试前等待 [0, min(rpc.client.retry.backoff.max, rpc.client.retry.backoff * 2^n)) 毫秒
+ */
+public class RetryPolicy {
+    // 未配置时不重试
+    private static final int DEFAULT_RETRIES = 0;
+    private static final long DEFAULT_BACKOFF_MILLIS = 50;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 1000;
+
+    // 全局重试次数
+    private final int retries;
+    // 退避的基础时间(毫秒)
+    private final long backoffMillis;
+    // 退避的上限(毫秒)
+    private final long maxBackoffMillis;
+
+    public RetryPolicy() {
+        this(RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_RETRIES, DEFAULT_RETRIES),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RETRY_BACKOFF, DEFAULT_BACKOFF_MILLIS),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RETRY_MAX_BACKOFF, DEFAULT_MAX_BACKOFF_MILLIS));
+    }
+
+    RetryPolicy(int retries, long backoffMillis, long maxBackoffMillis) {
+        this.retries = Math.max(retries, 0);
+        this.backoffMillis = Math.max(backoffMillis, 1);
+        this.maxBackoffMillis = Math.max(maxBackoffMillis, this.backoffMillis);
+    }
+
+    /**
+     * 请求的重试次数
+     * @param requestRetries 请求上配置的重试次数，0 表示使用全局配置
+     */
+    public int getRetries(int requestRetries) {
+        return requestRetries > 0 ? requestRetries : retries;
+    }
+
+    /**
+     * 第 attempt 次失败后的退避时间(毫秒)，attempt 从 0 开始
+     */
+    public long getBackoffMillis(int attempt) {
+        long ceiling = backoffMillis << Math.min(attempt, 20);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
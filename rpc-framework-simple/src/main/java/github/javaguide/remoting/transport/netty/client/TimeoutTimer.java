@@ -0,0 +1,31 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端共用的时间轮，请求超时、排队超时等定时任务都放在这里，避免每个任务一个定时器
+ */
+final class TimeoutTimer {
+    // tick 为 10ms
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(
+            ThreadPoolFactoryUtil.createThreadFactory("rpc-request-timeout", true), 10, TimeUnit.MILLISECONDS);
+
+    private TimeoutTimer() {
+    }
+
+    static Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        return TIMER.newTimeout(task, delay, unit);
+    }
+
+    /**
+     * 时间轮中尚未到期也未取消的定时任务数
+     */
+    static long pendingTimeouts() {
+        return TIMER.pendingTimeouts();
+    }
+}
@@ -1,44 +1,179 @@
 package github.javaguide.remoting.transport.netty.client;
 
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
 import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timeout;
+import io.netty.util.collection.IntObjectHashMap;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 存储还未到达的请求
  * 使用CompletableFuture存储未处理请求，当请求到达时，CompletableFuture完成
+ * 未处理请求按 channel 存放，请求 id 由每个 channel 各自递增分配，并写入协议头的 requestId 字段用于匹配响应
+ * 所有请求的超时共用一个时间轮，超时后从未处理请求中移除并以超时异常结束 future
  */
+@Slf4j
 public class UnprocessedRequests {
-    // 未处理请求 用于存储未处理请求
-    private static final Map<String, CompletableFuture<RpcResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES = new ConcurrentHashMap<>();
+    // 每个 channel 上的未处理请求
+    private static final AttributeKey<ChannelRequests> CHANNEL_REQUESTS = AttributeKey.valueOf("unprocessedRequests");
 
     /**
-     * 存储还未到达请求
-     * @param requestId
+     * 存储还未到达请求，并为其分配 channel 内唯一的请求 id
+     * @param channel 发送请求的 channel
      * @param future
+     * @param timeoutMillis 超时时间(毫秒)，小于等于 0 表示不超时
+     * @return 请求 id
      */
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future) {
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+    public int put(Channel channel, CompletableFuture<RpcResponse<Object>> future, long timeoutMillis) {
+        ChannelRequests channelRequests = getChannelRequests(channel);
+        int requestId = channelRequests.put(future);
+        if (timeoutMillis <= 0) {
+            return requestId;
+        }
+        Timeout timeout = TimeoutTimer.newTimeout(t -> {
+            // 只有仍在等待的请求才会超时，已经完成或被移除的请求直接忽略
+            if (channelRequests.remove(requestId, future)) {
+                future.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                        channel.remoteAddress() + ", requestId:" + requestId + ", timeout:" + timeoutMillis + "ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        // 请求先于超时完成时取消定时任务，使其尽快从时间轮中移除
+        future.whenComplete((response, throwable) -> timeout.cancel());
+        return requestId;
     }
 
     /**
      * 移除未处理请求，发送失败等场景使用
-     */ 
-    public void remove(String requestId) {
-        UNPROCESSED_RESPONSE_FUTURES.remove(requestId);
+     */
+    public void remove(Channel channel, int requestId) {
+        getChannelRequests(channel).remove(requestId);
+    }
+
+    /**
+     * 获取未处理请求但不移除，流式调用在结束前会收到多条消息
+     * @return 请求已完成或不存在时返回 null
+     */
+    public CompletableFuture<RpcResponse<Object>> get(Channel channel, int requestId) {
+        return getChannelRequests(channel).get(requestId);
     }
 
     /**
      * 完成请求 将请求从未处理请求中移除
      */
-    public void complete(RpcResponse<Object> rpcResponse) {
-        CompletableFuture<RpcResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
+    public void complete(Channel channel, int requestId, RpcResponse<Object> rpcResponse) {
+        CompletableFuture<RpcResponse<Object>> future = getChannelRequests(channel).remove(requestId);
         if (null != future) {
             future.complete(rpcResponse);
         } else {
-            throw new IllegalStateException();
+            // 请求已超时被移除，迟到的响应直接丢弃
+            log.warn("discard response of unknown or timed out request: [{}] from [{}]", requestId, channel.remoteAddress());
+        }
+    }
+
+    /**
+     * channel 断开时让其上所有等待响应的请求立即失败，而不是等到超时
+     * 幂等请求随后由重试换到其他节点
+     * @return 失败的请求数
+     */
+    public int failAll(Channel channel, Throwable cause) {
+        List<CompletableFuture<RpcResponse<Object>>> futures = getChannelRequests(channel).removeAll();
+        // 在锁外完成 future，避免回调中再次访问 ChannelRequests
+        for (CompletableFuture<RpcResponse<Object>> future : futures) {
+            future.completeExceptionally(cause);
+        }
+        return futures.size();
+    }
+
+    /**
+     * channel 上等待响应的请求数，不加锁，连接池选择连接时对每个连接调用
+     */
+    public int getPendingCount(Channel channel) {
+        return getChannelRequests(channel).size();
+    }
+
+    /**
+     * 时间轮中尚未到期也未取消的超时任务数
+     */
+    public long getPendingTimeoutCount() {
+        return TimeoutTimer.pendingTimeouts();
+    }
+
+    private static ChannelRequests getChannelRequests(Channel channel) {
+        ChannelRequests channelRequests = channel.attr(CHANNEL_REQUESTS).get();
+        if (channelRequests == null) {
+            ChannelRequests newChannelRequests = new ChannelRequests();
+            channelRequests = channel.attr(CHANNEL_REQUESTS).setIfAbsent(newChannelRequests);
+            if (channelRequests == null) {
+                channelRequests = newChannelRequests;
+            }
+        }
+        return channelRequests;
+    }
+
+    /**
+     * 单个 channel 上的未处理请求，以 int 请求 id 为 key，避免装箱和字符串 id
+     * 写入来自调用线程，完成来自 I/O 线程，超时来自时间轮线程，因此所有修改加锁；
+     * 请求数在锁内更新，选择连接时无锁读取
+     */
+    private static final class ChannelRequests {
+        // IntObjectHashMap 直接用 key 的低位定位槽位，连续的请求 id 会连成一整段探测链，删除时退化为线性扫描，
+        // 因此先乘以一个奇数常量打散(乘奇数在 int 上是双射，不会产生冲突)
+        private static final int KEY_MIXER = 0x9E3779B9;
+        private final IntObjectHashMap<CompletableFuture<RpcResponse<Object>>> futures = new IntObjectHashMap<>();
+        private int nextRequestId;
+        private volatile int size;
+
+        synchronized int put(CompletableFuture<RpcResponse<Object>> future) {
+            int requestId = nextRequestId++;
+            // id 回绕后跳过仍在等待响应的 id
+            while (futures.containsKey(key(requestId))) {
+                requestId = nextRequestId++;
+            }
+            futures.put(key(requestId), future);
+            size = futures.size();
+            return requestId;
+        }
+
+        synchronized CompletableFuture<RpcResponse<Object>> get(int requestId) {
+            return futures.get(key(requestId));
+        }
+
+        synchronized CompletableFuture<RpcResponse<Object>> remove(int requestId) {
+            CompletableFuture<RpcResponse<Object>> future = futures.remove(key(requestId));
+            size = futures.size();
+            return future;
+        }
+
+        synchronized boolean remove(int requestId, CompletableFuture<RpcResponse<Object>> future) {
+            if (futures.get(key(requestId)) != future) {
+                return false;
+            }
+            futures.remove(key(requestId));
+            size = futures.size();
+            return true;
+        }
+
+        synchronized List<CompletableFuture<RpcResponse<Object>>> removeAll() {
+            List<CompletableFuture<RpcResponse<Object>>> removed = new ArrayList<>(futures.values());
+            futures.clear();
+            size = 0;
+            return removed;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static int key(int requestId) {
+            return requestId * KEY_MIXER;
         }
     }
 }
@@ -0,0 +1,146 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个连接上的分片重组器，只在该连接的 I/O 线程中访问
+ * <p>
+ * 每条被分片的消息在收到第一个分片时按消息体总长度一次性预留内存，预留失败时直接拒绝，而不是收到一半才发现超限。
+ * 预留同时计入本连接和整个进程的重组内存，分别不超过 maxConnectionBytes 和 maxTotalBytes，
+ * 消息重组完成、失败或连接断开时归还。
+ * 消息按原消息类型和 requestId 区分，分片的单向请求由发送方在本连接上单独编号，与普通请求的 requestId 互不干扰。
+ * 超过上限只拒绝这一条消息，其后续分片按总长度计数后直接丢弃，不会以同一 requestId 开始新的重组
+ */
+class MessageReassembler {
+    // 整个进程正在重组的字节数
+    private static final AtomicLong TOTAL_BYTES = new AtomicLong();
+
+    private final long maxConnectionBytes;
+    private final long maxTotalBytes;
+    // key 由原消息类型和 requestId 组成，见 key 方法
+    private final Map<Long, Body> pending = new HashMap<>();
+    // 被拒绝的消息还未收到的字节数，key 同 pending
+    private final Map<Long, Integer> discarded = new HashMap<>();
+    // 本连接正在重组的字节数
+    private long connectionBytes;
+
+    MessageReassembler(long maxConnectionBytes, long maxTotalBytes) {
+        this.maxConnectionBytes = maxConnectionBytes;
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    static long getTotalBytes() {
+        return TOTAL_BYTES.get();
+    }
+
+    long getConnectionBytes() {
+        return connectionBytes;
+    }
+
+    /**
+     * 追加一个分片
+     *
+     * @param totalLength 消息体总长度，每个分片都带有
+     * @return 重组完成的消息体；尚未收齐或消息已被拒绝时返回 null
+     * @throws TooLongFrameException 消息超过重组内存上限被拒绝，其后续分片会被丢弃
+     */
+    byte[] append(byte messageType, int requestId, int totalLength, ByteBuf fragment) {
+        long key = key(messageType, requestId);
+        Integer remaining = discarded.remove(key);
+        if (remaining != null) {
+            skip(key, remaining, fragment);
+            return null;
+        }
+        Body body = pending.get(key);
+        if (body == null) {
+            try {
+                reserve(requestId, totalLength);
+            } catch (TooLongFrameException e) {
+                skip(key, totalLength, fragment);
+                throw e;
+            }
+            body = new Body(totalLength);
+            pending.put(key, body);
+        } else if (body.bytes.length != totalLength) {
+            discard(key);
+            throw new CorruptedFrameException("fragment of request " + requestId + " has inconsistent length " + totalLength);
+        }
+        int length = fragment.readableBytes();
+        if (length > totalLength - body.written) {
+            discard(key);
+            throw new CorruptedFrameException("fragments of request " + requestId + " exceed length " + totalLength);
+        }
+        fragment.readBytes(body.bytes, body.written, length);
+        body.written += length;
+        if (body.written < totalLength) {
+            return null;
+        }
+        pending.remove(key);
+        unreserve(totalLength);
+        return body.bytes;
+    }
+
+    /**
+     * 连接断开时丢弃所有未重组完成的消息
+     */
+    void releaseAll() {
+        for (Body body : pending.values()) {
+            unreserve(body.bytes.length);
+        }
+        pending.clear();
+        discarded.clear();
+    }
+
+    /**
+     * 丢弃被拒绝的消息的一个分片，记录还未收到的字节数
+     */
+    private void skip(long key, int remaining, ByteBuf fragment) {
+        int left = remaining - fragment.readableBytes();
+        fragment.skipBytes(fragment.readableBytes());
+        if (left > 0) {
+            discarded.put(key, left);
+        }
+    }
+
+    private static long key(byte messageType, int requestId) {
+        return (long) messageType << 32 | requestId & 0xFFFFFFFFL;
+    }
+
+    private void reserve(int requestId, int totalLength) {
+        if (totalLength <= 0 || connectionBytes + totalLength > maxConnectionBytes) {
+            throw new TooLongFrameException("message of request " + requestId + " with length " + totalLength
+                    + " exceeds reassembly limit of connection: " + maxConnectionBytes + ", in use: " + connectionBytes);
+        }
+        long total = TOTAL_BYTES.addAndGet(totalLength);
+        if (total > maxTotalBytes) {
+            TOTAL_BYTES.addAndGet(-totalLength);
+            throw new TooLongFrameException("message of request " + requestId + " with length " + totalLength
+                    + " exceeds reassembly limit of process: " + maxTotalBytes);
+        }
+        connectionBytes += totalLength;
+    }
+
+    private void unreserve(int totalLength) {
+        connectionBytes -= totalLength;
+        TOTAL_BYTES.addAndGet(-totalLength);
+    }
+
+    private void discard(long key) {
+        unreserve(pending.remove(key).bytes.length);
+    }
+
+    private static class Body {
+        private final byte[] bytes;
+        private int written;
+
+        private Body(int totalLength) {
+            this.bytes = new byte[totalLength];
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.remoting.dto.CompactRpcRequest;
+import github.javaguide.remoting.dto.RpcRequest;
+import io.netty.handler.codec.CorruptedFrameException;
+import lombok.EqualsAndHashCode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一个连接上的方法编号字典，只在该连接的 I/O 线程中访问
+ * <p>
+ * 发送方在连接上首次发送某个方法的请求时为其分配编号，请求中同时携带完整的服务和方法信息与编号；
+ * 之后同一方法的请求序列化为 {@link CompactRpcRequest}，省去接口名、方法名、组、版本、参数类型。
+ * 消息体的第一个字节标明其类型({@link #FULL_REQUEST} 或 {@link #COMPACT_REQUEST})，接收方据此按具体的类反序列化，
+ * Kryo、Protostuff 这类不写出类型信息的序列化方式同样适用。
+ * 接收方收到带完整信息的请求时记录编号，收到只有编号的请求时据此还原。
+ * 编码和解码都在连接的 I/O 线程中按顺序进行，同一连接上定义编号的请求一定先于使用编号的请求到达，
+ * 所以不需要额外的握手；字典随连接一起销毁，重连后重新分配
+ */
+class MethodDictionary {
+    // 每个连接最多分配的方法编号数，发送方超过后直接发送完整请求，接收方超过时视为协议错误
+    static final int MAX_METHODS = 4096;
+    // 消息体类型：完整请求 {@link RpcRequest}
+    static final byte FULL_REQUEST = 0;
+    // 消息体类型：只有编号和参数的请求 {@link CompactRpcRequest}
+    static final byte COMPACT_REQUEST = 1;
+
+    // 发送方向 key 为方法，value 为编号
+    private final Map<MethodKey, Integer> outbound = new HashMap<>();
+    // 接收方向 key 为编号，value 为不含参数的完整请求
+    private final Map<Integer, RpcRequest> inbound = new HashMap<>();
+    private int nextMethodId = 1;
+
+    /**
+     * 发送前压缩请求，不修改原请求，重试和对冲时原请求还会发往其他连接
+     *
+     * @return 要序列化的消息体：已分配编号时为 {@link CompactRpcRequest}；首次发送时为带编号的完整请求；编号用尽时为原请求
+     */
+    Object compact(RpcRequest rpcRequest) {
+        MethodKey methodKey = new MethodKey(rpcRequest);
+        Integer methodId = outbound.get(methodKey);
+        if (methodId != null) {
+            return new CompactRpcRequest(methodId, rpcRequest.getParameters());
+        }
+        if (outbound.size() >= MAX_METHODS) {
+            return rpcRequest;
+        }
+        methodId = nextMethodId++;
+        outbound.put(methodKey, methodId);
+        return rpcRequest.toBuilder().methodId(methodId).build();
+    }
+
+    /**
+     * 定义编号的请求没有发送出去(如参数序列化失败)时撤销编号，之后的请求重新定义
+     */
+    void forget(Object body) {
+        if (body instanceof RpcRequest && ((RpcRequest) body).getMethodId() != 0) {
+            outbound.remove(new MethodKey((RpcRequest) body));
+        }
+    }
+
+    /**
+     * 接收后还原请求
+     *
+     * @param body 反序列化得到的消息体，{@link #compact} 的返回值之一
+     */
+    RpcRequest expand(Object body) {
+        if (body instanceof RpcRequest) {
+            RpcRequest rpcRequest = (RpcRequest) body;
+            int methodId = rpcRequest.getMethodId();
+            if (methodId != 0) {
+                if (inbound.size() >= MAX_METHODS && !inbound.containsKey(methodId)) {
+                    throw new CorruptedFrameException("too many method ids on connection, max: " + MAX_METHODS);
+                }
+                // 只保留方法信息，不持有参数
+                inbound.put(methodId, rpcRequest.toBuilder().parameters(null).build());
+            }
+            return rpcRequest;
+        }
+        if (!(body instanceof CompactRpcRequest)) {
+            throw new CorruptedFrameException("malformed request body: " + body);
+        }
+        CompactRpcRequest compacted = (CompactRpcRequest) body;
+        RpcRequest definition = inbound.get(compacted.getMethodId());
+        if (definition == null) {
+            throw new CorruptedFrameException("unknown method id: " + compacted.getMethodId());
+        }
+        return definition.toBuilder().parameters(compacted.getParameters()).build();
+    }
+
+    /**
+     * @return 消息体的类型，写在序列化结果之前
+     */
+    static byte bodyType(Object body) {
+        return body instanceof CompactRpcRequest ? COMPACT_REQUEST : FULL_REQUEST;
+    }
+
+    /**
+     * @return 按消息体类型反序列化时使用的类
+     */
+    static Class<?> bodyClass(byte bodyType) {
+        if (bodyType == FULL_REQUEST) {
+            return RpcRequest.class;
+        }
+        if (bodyType == COMPACT_REQUEST) {
+            return CompactRpcRequest.class;
+        }
+        throw new CorruptedFrameException("unknown request body type: " + bodyType);
+    }
+
+    @EqualsAndHashCode
+    private static class MethodKey {
+        private final String interfaceName;
+        private final String methodName;
+        private final String group;
+        private final String version;
+        private final Class<?>[] paramTypes;
+
+        private MethodKey(RpcRequest rpcRequest) {
+            this.interfaceName = rpcRequest.getInterfaceName();
+            this.methodName = rpcRequest.getMethodName();
+            this.group = rpcRequest.getGroup();
+            this.version = rpcRequest.getVersion();
+            this.paramTypes = rpcRequest.getParamTypes();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package github.javaguide.remoting.transport.netty.codec;
 
 import github.javaguide.compress.Compress;
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.remoting.constants.RpcConstants;
@@ -9,10 +11,15 @@ import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcPropertiesUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Arrays;
@@ -32,57 +39,122 @@ import static github.javaguide.remoting.constants.RpcConstants.HEARTBEAT_RESPONS
 @Slf4j
 @ChannelHandler.Sharable
 public class RpcMessageCodec extends MessageToMessageCodec<ByteBuf, RpcMessage> {
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+    // 分片帧的消息体头：原消息类型 1 byte + 原消息体总长度 4 byte
+    private static final int FRAGMENT_HEAD_LENGTH = 5;
+    // 未配置时重组内存的上限：每个连接 64MB，整个进程 256MB
+    private static final long DEFAULT_REASSEMBLY_MAX_CONNECTION_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_REASSEMBLY_MAX_TOTAL_BYTES = 256L * 1024 * 1024;
+    private static final AttributeKey<MessageReassembler> REASSEMBLER = AttributeKey.valueOf("messageReassembler");
+    private static final AttributeKey<MethodDictionary> METHOD_DICTIONARY = AttributeKey.valueOf("methodDictionary");
+    // 分片的单向请求在本连接上的编号，单向请求没有 requestId，分片时用它区分各条消息
+    private static final AttributeKey<AtomicInteger> ONEWAY_FRAGMENT_IDS = AttributeKey.valueOf("onewayFragmentIds");
+
+    // 单帧的最大长度，超过时消息体拆分为多个分片帧
+    private final int fragmentSize;
+    private final long reassemblyMaxConnectionBytes;
+    private final long reassemblyMaxTotalBytes;
+
+    public RpcMessageCodec() {
+        this(RpcPropertiesUtil.getInt(RpcConfigEnum.CODEC_FRAGMENT_SIZE, RpcConstants.MAX_FRAME_LENGTH),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CODEC_REASSEMBLY_MAX_CONNECTION_BYTES, DEFAULT_REASSEMBLY_MAX_CONNECTION_BYTES),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CODEC_REASSEMBLY_MAX_TOTAL_BYTES, DEFAULT_REASSEMBLY_MAX_TOTAL_BYTES));
+    }
+
+    RpcMessageCodec(int fragmentSize, long reassemblyMaxConnectionBytes, long reassemblyMaxTotalBytes) {
+        // 分片帧同样要通过 RpcMessageFrameDecoder 的长度检查
+        this.fragmentSize = Math.max(RpcConstants.HEAD_LENGTH + FRAGMENT_HEAD_LENGTH + 1,
+                Math.min(fragmentSize, RpcConstants.MAX_FRAME_LENGTH));
+        this.reassemblyMaxConnectionBytes = reassemblyMaxConnectionBytes;
+        this.reassemblyMaxTotalBytes = reassemblyMaxTotalBytes;
+    }
+
     /**
      * RPC Message -> ByteBuf
+     * 消息体超过单帧长度时拆分为多个分片帧，每帧都不超过 fragmentSize，接收方收齐后还原为原消息
+     * 请求按连接上的方法编号字典压缩，同一方法的后续请求只携带编号和参数
      */
     @Override
     protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, List<Object> list) throws Exception {
-        /**
-         * request header 16bytes
-         */
-        ByteBuf out = ctx.alloc().buffer();
-        // magic number 4 byte
-        out.writeBytes(RpcConstants.MAGIC_NUMBER);
-        // version 1 byte
-        out.writeByte(RpcConstants.VERSION);
-        // full length 占位
-        out.writeInt(0);
-        // message type 1byte
-        out.writeByte(rpcMessage.getMessageType());
-        // serialize 1 byte
-        out.writeByte(rpcMessage.getCodec());
-        // compress 1byte
-        out.writeByte(CompressTypeEnum.GZIP.getCode());
-        // requestId 4 byte
-        out.writeInt(ATOMIC_INTEGER.getAndIncrement());
+        byte messageType = rpcMessage.getMessageType();
         /**
          * request body
          */
         byte[] bodyBytes = null;
-        int fullLength = RpcConstants.HEAD_LENGTH;
-        if(rpcMessage.getMessageType() != HEARTBEAT_REQUEST_TYPE && rpcMessage.getMessageType() != HEARTBEAT_RESPONSE_TYPE) {
+        if (hasBody(messageType)) {
             String serialize = SerializationTypeEnum.getName(rpcMessage.getCodec());
             Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(serialize);
-            bodyBytes = serializer.serialize(rpcMessage.getData());
+            Object data = rpcMessage.getData();
+            MethodDictionary methodDictionary = null;
+            if (data instanceof RpcRequest) {
+                methodDictionary = getMethodDictionary(ctx);
+                data = methodDictionary.compact((RpcRequest) data);
+            }
+            try {
+                bodyBytes = serializer.serialize(data);
+            } catch (RuntimeException e) {
+                if (methodDictionary != null) {
+                    methodDictionary.forget(data);
+                }
+                throw e;
+            }
+            if (methodDictionary != null) {
+                // 请求体前加一个字节标明其类型，接收方按具体的类反序列化
+                byte[] typedBytes = new byte[bodyBytes.length + 1];
+                typedBytes[0] = MethodDictionary.bodyType(data);
+                System.arraycopy(bodyBytes, 0, typedBytes, 1, bodyBytes.length);
+                bodyBytes = typedBytes;
+            }
             Compress compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(CompressTypeEnum.getName(rpcMessage.getCompress()));
             log.debug("before compress request body size: [{}]", bodyBytes.length);
             bodyBytes = compress.compress(bodyBytes);
             log.debug("after compress request body size: [{}]", bodyBytes.length);
-            // 加上请求体长度
-            fullLength += bodyBytes.length;
         }
-        if(bodyBytes != null) {
-            out.writeBytes(bodyBytes);
+        int bodyLength = bodyBytes == null ? 0 : bodyBytes.length;
+        if (RpcConstants.HEAD_LENGTH + bodyLength <= fragmentSize) {
+            ByteBuf out = ctx.alloc().buffer(RpcConstants.HEAD_LENGTH + bodyLength);
+            writeHeader(out, messageType, rpcMessage.getCodec(), rpcMessage.getRequestId(), RpcConstants.HEAD_LENGTH + bodyLength);
+            if (bodyBytes != null) {
+                out.writeBytes(bodyBytes);
+            }
+            list.add(out);
+            return;
         }
-        // 写入包的长度字段
-        int writeIndex = out.writerIndex();
-        out.writerIndex(RpcConstants.MAGIC_NUMBER.length + 1);
-        out.writeInt(fullLength);
-        out.writerIndex(writeIndex);
+        int payloadSize = fragmentSize - RpcConstants.HEAD_LENGTH - FRAGMENT_HEAD_LENGTH;
+        int requestId = messageType == RpcConstants.ONEWAY_REQUEST_TYPE
+                ? getOneWayFragmentIds(ctx).getAndIncrement() : rpcMessage.getRequestId();
+        log.debug("split body of [{}] bytes into [{}] fragments", bodyLength, (bodyLength + payloadSize - 1) / payloadSize);
+        for (int offset = 0; offset < bodyLength; offset += payloadSize) {
+            int length = Math.min(payloadSize, bodyLength - offset);
+            int fullLength = RpcConstants.HEAD_LENGTH + FRAGMENT_HEAD_LENGTH + length;
+            ByteBuf out = ctx.alloc().buffer(fullLength);
+            writeHeader(out, RpcConstants.FRAGMENT_TYPE, rpcMessage.getCodec(), requestId, fullLength);
+            out.writeByte(messageType);
+            out.writeInt(bodyLength);
+            out.writeBytes(bodyBytes, offset, length);
+            list.add(out);
+        }
+    }
 
-        list.add(out);
+    /**
+     * request header 16bytes
+     */
+    private static void writeHeader(ByteBuf out, byte messageType, byte codec, int requestId, int fullLength) {
+        // magic number 4 byte
+        out.writeBytes(RpcConstants.MAGIC_NUMBER);
+        // version 1 byte
+        out.writeByte(RpcConstants.VERSION);
+        // full length 4 byte
+        out.writeInt(fullLength);
+        // message type 1byte
+        out.writeByte(messageType);
+        // serialize 1 byte
+        out.writeByte(codec);
+        // compress 1byte
+        out.writeByte(CompressTypeEnum.GZIP.getCode());
+        // requestId 4 byte 由客户端按 channel 分配，响应原样带回
+        out.writeInt(requestId);
     }
+
     /**
      * ByteBuf -> RPC Message
      */
@@ -119,6 +191,29 @@ public class RpcMessageCodec extends MessageToMessageCodec<ByteBuf, RpcMessage>
             list.add(rpcMessage);
             return;
         }
+        if (messageType == RpcConstants.FRAGMENT_TYPE) {
+            byte originalType = in.readByte();
+            int totalLength = in.readInt();
+            rpcMessage.setMessageType(originalType);
+            byte[] bodyBytes;
+            try {
+                bodyBytes = getReassembler(ctx).append(originalType, requestId, totalLength, in);
+            } catch (TooLongFrameException e) {
+                log.warn("reject message [{}] of type [{}]: [{}]", requestId, originalType, e.getMessage());
+                reject(ctx, rpcMessage, list);
+                return;
+            }
+            if (bodyBytes == null) {
+                return;
+            }
+            rpcMessage.setData(decodeBody(ctx, originalType, codecType, compressType, bodyBytes));
+            list.add(rpcMessage);
+            return;
+        }
+        if (!hasBody(messageType)) {
+            list.add(rpcMessage);
+            return;
+        }
         /**
          * rpcMessage data
          */
@@ -126,27 +221,105 @@ public class RpcMessageCodec extends MessageToMessageCodec<ByteBuf, RpcMessage>
         if (bodyLength > 0) {
             byte[] bodyBytes = new byte[bodyLength];
             in.readBytes(bodyBytes);
-            // decompress the bytes
-            String compressName = CompressTypeEnum.getName(compressType);
-            Compress compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
-            log.debug("before decompress request body size: [{}]", bodyBytes.length);
-            bodyBytes = compress.decompress(bodyBytes);
-            log.debug("after decompress request body size: [{}]", bodyBytes.length);
-            // deserialize
-            String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-            log.debug("codec name: [{}] ", codecName);
-            Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(codecName);
-            if (messageType == RpcConstants.REQUEST_TYPE) {
-                RpcRequest rpcRequest = serializer.deserialize(bodyBytes, RpcRequest.class);
-                rpcMessage.setData(rpcRequest);
-            } else {
-                RpcResponse rpcRequest = serializer.deserialize(bodyBytes, RpcResponse.class);
-                rpcMessage.setData(rpcRequest);
-            }
+            rpcMessage.setData(decodeBody(ctx, messageType, codecType, compressType, bodyBytes));
         }
         list.add(rpcMessage);
     }
 
+    /**
+     * 连接断开时丢弃未重组完成的消息，归还预留的重组内存
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        MessageReassembler reassembler = ctx.channel().attr(REASSEMBLER).getAndSet(null);
+        if (reassembler != null) {
+            reassembler.releaseAll();
+        }
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * 消息超过重组内存上限时只拒绝这一条消息，不关闭连接，连接上的其他调用不受影响：
+     * 普通请求立即响应失败，响应交给上层按失败处理，其他消息直接丢弃
+     */
+    private static void reject(ChannelHandlerContext ctx, RpcMessage rpcMessage, List<Object> list) {
+        byte messageType = rpcMessage.getMessageType();
+        if (messageType != RpcConstants.REQUEST_TYPE && messageType != RpcConstants.RESPONSE_TYPE) {
+            return;
+        }
+        RpcMessage fail = RpcMessage.builder().requestId(rpcMessage.getRequestId())
+                .codec(rpcMessage.getCodec())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .data(RpcResponse.fail(RpcResponseCodeEnum.FAIL)).build();
+        if (messageType == RpcConstants.REQUEST_TYPE) {
+            // 从 pipeline 尾部写出，经过本编解码器编码
+            ctx.channel().writeAndFlush(fail).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        } else {
+            list.add(fail);
+        }
+    }
+
+    private MessageReassembler getReassembler(ChannelHandlerContext ctx) {
+        MessageReassembler reassembler = ctx.channel().attr(REASSEMBLER).get();
+        if (reassembler == null) {
+            reassembler = new MessageReassembler(reassemblyMaxConnectionBytes, reassemblyMaxTotalBytes);
+            ctx.channel().attr(REASSEMBLER).set(reassembler);
+        }
+        return reassembler;
+    }
+
+    private static AtomicInteger getOneWayFragmentIds(ChannelHandlerContext ctx) {
+        AtomicInteger ids = ctx.channel().attr(ONEWAY_FRAGMENT_IDS).get();
+        if (ids == null) {
+            ids = new AtomicInteger();
+            ctx.channel().attr(ONEWAY_FRAGMENT_IDS).set(ids);
+        }
+        return ids;
+    }
+
+    private MethodDictionary getMethodDictionary(ChannelHandlerContext ctx) {
+        MethodDictionary methodDictionary = ctx.channel().attr(METHOD_DICTIONARY).get();
+        if (methodDictionary == null) {
+            methodDictionary = new MethodDictionary();
+            ctx.channel().attr(METHOD_DICTIONARY).set(methodDictionary);
+        }
+        return methodDictionary;
+    }
+
+    private Object decodeBody(ChannelHandlerContext ctx, byte messageType, byte codecType, byte compressType, byte[] bodyBytes) {
+        // decompress the bytes
+        String compressName = CompressTypeEnum.getName(compressType);
+        Compress compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
+        log.debug("before decompress request body size: [{}]", bodyBytes.length);
+        bodyBytes = compress.decompress(bodyBytes);
+        log.debug("after decompress request body size: [{}]", bodyBytes.length);
+        // deserialize
+        String codecName = SerializationTypeEnum.getName(codecType);
+        log.debug("codec name: [{}] ", codecName);
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(codecName);
+        if (messageType == RpcConstants.REQUEST_TYPE || messageType == RpcConstants.ONEWAY_REQUEST_TYPE
+                || messageType == RpcConstants.STREAM_REQUEST_TYPE
+                || messageType == RpcConstants.CLIENT_STREAM_REQUEST_TYPE
+                || messageType == RpcConstants.BIDI_STREAM_REQUEST_TYPE) {
+            // 请求体可能只有方法编号和参数，按连接上的方法编号字典还原
+            if (bodyBytes.length == 0) {
+                throw new CorruptedFrameException("empty request body");
+            }
+            Class<?> bodyClass = MethodDictionary.bodyClass(bodyBytes[0]);
+            return getMethodDictionary(ctx).expand(serializer.deserialize(Arrays.copyOfRange(bodyBytes, 1, bodyBytes.length), bodyClass));
+        }
+        return serializer.deserialize(bodyBytes, RpcResponse.class);
+    }
+
+    /**
+     * 心跳和取消流的消息只有消息头
+     */
+    private static boolean hasBody(byte messageType) {
+        return messageType != HEARTBEAT_REQUEST_TYPE && messageType != HEARTBEAT_RESPONSE_TYPE
+                && messageType != RpcConstants.STREAM_CANCEL_TYPE;
+    }
+
     private void checkVersion(ByteBuf in) {
         byte version = in.readByte();
         if (version != RpcConstants.VERSION) {
@@ -0,0 +1,131 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按观测到的延迟自动调整的并发上限(TCP Vegas 风格)
+ * <p>
+ * 每 WINDOW_SAMPLES 个完成的请求为一个窗口，用窗口的平均延迟 rtt 与历史最小的窗口延迟 minRtt 估算排队的请求数
+ * queue = limit * (1 - minRtt / rtt)：排队少于 3 * step 时上限加大 step，多于 6 * step 时减小 step，step 为 log10(limit) 且至少为 1，
+ * 上限因此停在服务端实际能并行处理的请求数附近，超出的请求立即被拒绝，而不是在队列中等到超时。
+ * 服务变慢后 minRtt 会偏小，过载时测得的 minRtt 又会偏大，所以每完成 PROBE_MULTIPLIER * limit 个请求重新测量一次：
+ * 先把上限降到 3/4 让排队的请求减少，丢弃降低上限前已在进行中的请求的延迟，再用下一个窗口的延迟作为 minRtt。
+ * 进行中的请求不到上限一半时延迟不反映上限是否合适，只更新 minRtt，不调整上限
+ */
+class AdaptiveConcurrencyLimiter {
+    private static final int WINDOW_SAMPLES = 10;
+    private static final int PROBE_MULTIPLIER = 30;
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 当前上限，tryAcquire 不加锁读取
+    private volatile int limit;
+
+    // 以下字段只在持有 this 锁时访问
+    private long windowRttSum;
+    private int windowSamples;
+    // 窗口内同时进行的最多请求数
+    private int windowMaxInFlight;
+    // 历史最小的窗口平均延迟(纳秒)，0 表示需要重新测量
+    private long minRtt;
+    // 距离上次重新测量 minRtt 完成的请求数
+    private long probeSamples;
+    // 重新测量 minRtt 前还需丢弃的请求数
+    private int drainSamples;
+
+    /**
+     * @param initialLimit 初始上限
+     * @param maxLimit     上限的最大值
+     */
+    AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(maxLimit, MIN_LIMIT);
+        this.limit = Math.min(Math.max(initialLimit, MIN_LIMIT), this.maxLimit);
+    }
+
+    /**
+     * 获取一个并发名额，成功后必须调用 {@link #release(long)} 或 {@link #cancel()} 归还
+     *
+     * @return 进行中的请求已达到上限时返回 false
+     */
+    boolean tryAcquire() {
+        for (; ; ) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求完成，归还名额并记录其延迟
+     *
+     * @param rttNanos 从获得名额到请求完成的时间(纳秒)，包括排队时间
+     */
+    void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            windowRttSum += Math.max(rttNanos, 1);
+            windowSamples++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, current);
+            if (windowSamples >= WINDOW_SAMPLES) {
+                long rtt = windowRttSum / windowSamples;
+                int maxInFlight = windowMaxInFlight;
+                windowRttSum = 0;
+                windowSamples = 0;
+                windowMaxInFlight = 0;
+                update(rtt, maxInFlight);
+            }
+        }
+    }
+
+    /**
+     * 请求没有执行，只归还名额，不记录延迟
+     */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    private void update(long rtt, int maxInFlight) {
+        int currentLimit = limit;
+        probeSamples += WINDOW_SAMPLES;
+        if (probeSamples >= (long) PROBE_MULTIPLIER * currentLimit) {
+            probeSamples = 0;
+            minRtt = 0;
+            drainSamples = currentLimit;
+            limit = Math.max(currentLimit * 3 / 4, MIN_LIMIT);
+            return;
+        }
+        if (drainSamples > 0) {
+            drainSamples -= WINDOW_SAMPLES;
+            return;
+        }
+        if (minRtt == 0 || rtt < minRtt) {
+            minRtt = rtt;
+            return;
+        }
+        if (maxInFlight * 2 < currentLimit) {
+            return;
+        }
+        double queue = currentLimit * (1 - (double) minRtt / rtt);
+        int step = Math.max(1, (int) Math.log10(currentLimit));
+        int newLimit = currentLimit;
+        if (queue < 3 * step) {
+            newLimit = currentLimit + step;
+        } else if (queue > 6 * step) {
+            newLimit = currentLimit - step;
+        }
+        limit = Math.min(Math.max(newLimit, MIN_LIMIT), maxLimit);
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
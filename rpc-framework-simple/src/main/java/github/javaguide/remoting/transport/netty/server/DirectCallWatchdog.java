@@ -0,0 +1,119 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监视在 I/O 线程中直接执行的服务方法
+ * <p>
+ * 直接执行的方法阻塞时，同一 I/O 线程上的所有连接都无法读写。每个 I/O 线程有一个槽位记录当前调用的开始时间，
+ * 后台线程定期检查，调用超过阈值仍未结束时打印告警和 I/O 线程的堆栈，方法一直阻塞时也能发现；
+ * 调用结束时再检查一次耗时，补上两次检查之间开始并结束的慢调用。
+ * 调用线程只写自己的槽位，不加锁也不分配对象
+ */
+@Slf4j
+class DirectCallWatchdog {
+    private final long thresholdNanos;
+    // key 为 I/O 线程
+    private final Map<Thread, Slot> slots = new ConcurrentHashMap<>();
+    private final ThreadLocal<Slot> currentSlot = ThreadLocal.withInitial(this::newSlot);
+    // 第一次直接调用时才启动的检查线程，随服务端关闭
+    private ScheduledExecutorService scheduler;
+    private boolean closed;
+
+    DirectCallWatchdog(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * 在 I/O 线程中开始一次直接调用
+     */
+    void enter(RpcRequest rpcRequest) {
+        Slot slot = currentSlot.get();
+        slot.rpcRequest = rpcRequest;
+        slot.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 在 I/O 线程中结束一次直接调用
+     */
+    void exit() {
+        Slot slot = currentSlot.get();
+        long startNanos = slot.startNanos;
+        slot.startNanos = 0;
+        long elapsed = System.nanoTime() - startNanos;
+        if (elapsed > thresholdNanos && slot.reportedStartNanos != startNanos) {
+            log.warn("direct call [{}#{}] blocked I/O thread [{}] for [{}]ms", slot.rpcRequest.getInterfaceName(),
+                    slot.rpcRequest.getMethodName(), slot.thread.getName(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+        slot.rpcRequest = null;
+    }
+
+    /**
+     * 停止检查线程，服务端关闭时调用
+     */
+    synchronized void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private synchronized void start() {
+        if (scheduler != null || closed) {
+            return;
+        }
+        long periodNanos = Math.max(thresholdNanos / 2, TimeUnit.MILLISECONDS.toNanos(1));
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadPoolFactoryUtil.createThreadFactory("direct-call-watchdog", true));
+        scheduler.scheduleAtFixedRate(this::check, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Slot newSlot() {
+        // 每个 I/O 线程只调用一次
+        start();
+        Slot slot = new Slot(Thread.currentThread());
+        slots.put(slot.thread, slot);
+        return slot;
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        for (Slot slot : slots.values()) {
+            long startNanos = slot.startNanos;
+            RpcRequest rpcRequest = slot.rpcRequest;
+            if (startNanos == 0 || rpcRequest == null || now - startNanos <= thresholdNanos
+                    || slot.reportedStartNanos == startNanos) {
+                continue;
+            }
+            // 每次调用只告警一次
+            slot.reportedStartNanos = startNanos;
+            log.warn("direct call [{}#{}] has blocked I/O thread [{}] for [{}]ms, stack: {}", rpcRequest.getInterfaceName(),
+                    rpcRequest.getMethodName(), slot.thread.getName(), TimeUnit.NANOSECONDS.toMillis(now - startNanos),
+                    Arrays.toString(slot.thread.getStackTrace()));
+        }
+        // 已结束的 I/O 线程不再检查
+        slots.keySet().removeIf(thread -> !thread.isAlive());
+    }
+
+    private static class Slot {
+        private final Thread thread;
+        // 当前调用的开始时间，0 表示没有进行中的调用
+        private volatile long startNanos;
+        private volatile RpcRequest rpcRequest;
+        // 已告警的调用的开始时间
+        private volatile long reportedStartNanos;
+
+        private Slot(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -5,15 +5,14 @@ import github.javaguide.config.RpcServiceConfig;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.transport.netty.NettyTransport;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
 import github.javaguide.utils.RuntimeUtil;
 import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
@@ -55,19 +54,20 @@ public class NettyRpcServer {
     public void start() {
         CustomShutdownHook.getCustomShutdownHook().clearAll();
         String host = InetAddress.getLocalHost().getHostAddress();
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1); // 1个线程处理连接事件
-        EventLoopGroup workerGroup = new NioEventLoopGroup(); // 多个线程处理读写事件
-        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup( // 多个线程处理业务逻辑
+        NettyTransport nettyTransport = NettyTransport.fromConfig();
+        EventLoopGroup bossGroup = nettyTransport.newEventLoopGroup(1); // 1个线程处理连接事件
+        EventLoopGroup workerGroup = nettyTransport.newEventLoopGroup(0); // 多个线程处理读写事件
+        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup( // 多个线程处理流式调用、按顺序执行的调用等，每个连接固定一个线程
                 RuntimeUtil.cpus() * 2,
                 ThreadPoolFactoryUtil.createThreadFactory("service-handler-group", false)
         );
+        // channel间可以共享的handler
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        RpcRequestDispatcher rpcRequestDispatcher = new RpcRequestDispatcher(nettyRpcServerHandler);
         try {
-            ServerBootstrap b = new ServerBootstrap();
-            // channel间可以共享的handler
-            RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
-            NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+            ServerBootstrap b = nettyTransport.configure(new ServerBootstrap());
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
                     // TCP默认开启了 Nagle 算法，该算法的作用是尽可能的发送大数据快，减少网络传输。TCP_NODELAY 参数的作用就是控制是否启用 Nagle 算法。
                     .childOption(ChannelOption.TCP_NODELAY, true)
                     // 是否开启 TCP 底层心跳机制
@@ -86,6 +86,8 @@ public class NettyRpcServer {
                             p.addLast(new RpcMessageFrameDecoder());
                             // RPCMessage       编解码器
                             p.addLast(rpcMessageCodec);
+                            // 在 I/O 线程中把普通请求逐个提交到共享的分发线程池或服务独占的线程池
+                            p.addLast(rpcRequestDispatcher);
                             // 可共享的 serverHandler
                             p.addLast(serviceHandlerGroup, nettyRpcServerHandler);
                         }
@@ -102,6 +104,7 @@ public class NettyRpcServer {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
             serviceHandlerGroup.shutdownGracefully();
+            rpcRequestDispatcher.close();
         }
     }
 
@@ -1,23 +1,46 @@
 package github.javaguide.remoting.transport.netty.server;
 
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.ServiceBulkhead;
+import github.javaguide.provider.ServiceProvider;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.handler.RpcRequestHandler;
+import github.javaguide.remoting.transport.RpcStream;
+import github.javaguide.utils.RpcPropertiesUtil;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.AttributeKey;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Customize the ChannelHandler of the server to process the data sent by the client.
  * <p>
@@ -28,12 +51,41 @@ import lombok.extern.slf4j.Slf4j;
  * @createTime 2020年05月25日 20:44:00
  */
 @Slf4j
+@ChannelHandler.Sharable
 public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
+    // 未配置 rpc.server.stream.chunk.size 时流式响应每批的元素个数
+    private static final int DEFAULT_STREAM_CHUNK_SIZE = 128;
+    // 每个 channel 上进行中的流，key 为 requestId，只在 handler 所在的 executor 中访问
+    private static final AttributeKey<Map<Integer, ServerStream>> SERVER_STREAMS = AttributeKey.valueOf("serverStreams");
+    // 未配置 rpc.server.stream.window 时授予客户端流的信用数
+    private static final int DEFAULT_STREAM_WINDOW = 8;
+    // 每个 channel 上进行中的客户端流，key 为 requestId，只在 handler 所在的 executor 中访问
+    private static final AttributeKey<Map<Integer, ServerUpload>> SERVER_UPLOADS = AttributeKey.valueOf("serverUploads");
+    // 每个 channel 上进行中的双向流，key 为 requestId，其接收方向同时登记在 SERVER_UPLOADS 中
+    private static final AttributeKey<Map<Integer, ServerBidiStream>> SERVER_BIDI_STREAMS = AttributeKey.valueOf("serverBidiStreams");
 
     private final RpcRequestHandler rpcRequestHandler;
 
+    // 流式响应每批的元素个数
+    private final int streamChunkSize;
+    // 客户端流式调用授予客户端的信用数
+    private final int streamWindow;
+    // 客户端流和双向流的服务方法会阻塞等待数据，不能占用 handler 所在的 executor，否则数据无法被读取
+    private final ExecutorService uploadExecutor;
+    private final ServiceProvider serviceProvider;
+    // 未声明独占线程池的服务执行流式调用的线程池，与 RpcRequestDispatcher 共用分发线程池
+    private final ExecutorService streamExecutor;
+
     public NettyRpcServerHandler() {
         this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.streamChunkSize = RpcPropertiesUtil.getInt(RpcConfigEnum.SERVER_STREAM_CHUNK_SIZE, DEFAULT_STREAM_CHUNK_SIZE);
+        this.streamWindow = RpcPropertiesUtil.getInt(RpcConfigEnum.SERVER_STREAM_WINDOW, DEFAULT_STREAM_WINDOW);
+        // 流的生命周期可能很长，排队等待线程的流会一直收不到数据，所以不使用任务队列，线程用完时直接拒绝
+        CustomThreadPoolConfig uploadPoolConfig = new CustomThreadPoolConfig();
+        uploadPoolConfig.setWorkQueue(new SynchronousQueue<>());
+        this.uploadExecutor = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(uploadPoolConfig, "stream-upload", true);
+        this.serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        this.streamExecutor = RpcRequestDispatcher.createDispatchExecutor();
     }
 
     /**
@@ -45,28 +97,29 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
             if (msg instanceof RpcMessage) {
                 log.info("server receive msg: [{}] ", msg);
                 byte messageType = ((RpcMessage) msg).getMessageType();
-                RpcMessage rpcMessage = new RpcMessage();
-                rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
+                if (isBidiStreamMessage(ctx, (RpcMessage) msg)) {
+                    handleBidiStreamMessage(ctx, (RpcMessage) msg);
+                    return;
+                }
+                if (isUploadMessage(ctx, (RpcMessage) msg)) {
+                    handleUploadMessage(ctx, (RpcMessage) msg);
+                    return;
+                }
+                if (isStreamMessage(messageType)) {
+                    handleStreamMessage(ctx, (RpcMessage) msg);
+                    return;
+                }
                 if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
+                    RpcMessage rpcMessage = new RpcMessage();
+                    rpcMessage.setRequestId(((RpcMessage) msg).getRequestId());
+                    rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+                    rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
                     rpcMessage.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
                     rpcMessage.setData(RpcConstants.PONG);
-                } else {
-                    RpcRequest rpcRequest = (RpcRequest) ((RpcMessage) msg).getData();
-                    // Execute the target method (the method the client needs to execute) and return the method result
-                    Object result = rpcRequestHandler.handle(rpcRequest);
-                    log.info(String.format("server get result: %s", result.toString()));
-                    rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
-                        rpcMessage.setData(rpcResponse);
-                    } else {
-                        RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
-                        rpcMessage.setData(rpcResponse);
-                        log.error("not writable now, message dropped");
-                    }
+                    ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                    return;
                 }
-                ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                handleRequest(ctx, (RpcMessage) msg, null);
             }
         } finally {
             //Ensure that ByteBuf is released, otherwise there may be memory leaks
@@ -75,6 +128,352 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
     }
 
 
+    /**
+     * 处理普通请求和单向请求：执行服务方法，普通请求把结果写回客户端
+     * 按请求分发时由 {@link RpcRequestDispatcher} 在分发线程池中调用，否则在 handler 所在的 executor 中调用。
+     * 服务方法返回 CompletableFuture 时不等待其完成，当前线程立即返回，在 future 完成的线程中写回响应，
+     * 等待下游 I/O 的调用不占用线程。
+     * 不抛出异常，服务方法失败时普通请求响应 {@link RpcResponseCodeEnum#FAIL}
+     *
+     * @param onComplete 调用结束时、写出响应之前执行，客户端收到响应时它已执行完毕；可以为 null
+     */
+    void handleRequest(ChannelHandlerContext ctx, RpcMessage msg, Runnable onComplete) {
+        RpcRequest rpcRequest = (RpcRequest) msg.getData();
+        rpcRequestHandler.handleAsync(rpcRequest).whenComplete((result, e) -> {
+            if (onComplete != null) {
+                onComplete.run();
+            }
+            if (msg.getMessageType() == RpcConstants.ONEWAY_REQUEST_TYPE) {
+                // 单向调用不响应，执行失败时只能记录日志
+                if (e != null) {
+                    log.error("one-way call of [{}#{}] failed", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), e);
+                }
+                return;
+            }
+            if (e != null) {
+                log.error("async call of [{}#{}] failed", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), e);
+            }
+            writeResponse(ctx, msg, result, e);
+        });
+    }
+
+    /**
+     * 写回普通请求的响应，服务方法返回的 future 异常完成时响应失败
+     */
+    private static void writeResponse(ChannelHandlerContext ctx, RpcMessage msg, Object result, Throwable cause) {
+        log.info("server get result: [{}]", result);
+        RpcMessage rpcMessage = new RpcMessage();
+        // 响应沿用请求头中的 requestId，客户端据此匹配请求
+        rpcMessage.setRequestId(msg.getRequestId());
+        rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
+        rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
+        rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+        if (cause == null && ctx.channel().isActive() && ctx.channel().isWritable()) {
+            RpcResponse<Object> rpcResponse = RpcResponse.success(result);
+            rpcMessage.setData(rpcResponse);
+        } else {
+            RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
+            rpcMessage.setData(rpcResponse);
+            if (cause == null) {
+                log.error("not writable now, message dropped");
+            }
+        }
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    /**
+     * 连接重新可写时继续发送因不可写而暂停的流
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        Map<Integer, ServerStream> streams = ctx.channel().attr(SERVER_STREAMS).get();
+        if (streams != null && ctx.channel().isWritable()) {
+            // 流结束时会把自己从 streams 中注销
+            new ArrayList<>(streams.values()).forEach(ServerStream::resume);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 连接断开时关闭其上所有进行中的流
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Map<Integer, ServerStream> streams = ctx.channel().attr(SERVER_STREAMS).getAndSet(null);
+        if (streams != null) {
+            streams.values().forEach(ServerStream::close);
+        }
+        Map<Integer, ServerUpload> uploads = ctx.channel().attr(SERVER_UPLOADS).getAndSet(null);
+        if (uploads != null) {
+            uploads.values().forEach(upload -> upload.fail("channel closed"));
+        }
+        Map<Integer, ServerBidiStream> bidiStreams = ctx.channel().attr(SERVER_BIDI_STREAMS).getAndSet(null);
+        if (bidiStreams != null) {
+            bidiStreams.values().forEach(bidiStream -> bidiStream.close("channel closed"));
+        }
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * 双向流请求，以及发往进行中的双向流的信用和取消消息；双向流的数据和结束消息按客户端流处理
+     */
+    private static boolean isBidiStreamMessage(ChannelHandlerContext ctx, RpcMessage msg) {
+        byte messageType = msg.getMessageType();
+        if (messageType == RpcConstants.BIDI_STREAM_REQUEST_TYPE) {
+            return true;
+        }
+        if (messageType != RpcConstants.STREAM_CREDIT_TYPE && messageType != RpcConstants.STREAM_CANCEL_TYPE) {
+            return false;
+        }
+        Map<Integer, ServerBidiStream> bidiStreams = ctx.channel().attr(SERVER_BIDI_STREAMS).get();
+        return bidiStreams != null && bidiStreams.containsKey(msg.getRequestId());
+    }
+
+    /**
+     * 处理双向流的消息：发起流、补充信用、取消流
+     */
+    private void handleBidiStreamMessage(ChannelHandlerContext ctx, RpcMessage msg) {
+        Map<Integer, ServerBidiStream> bidiStreams = getBidiStreams(ctx);
+        Map<Integer, ServerUpload> uploads = getUploads(ctx);
+        int requestId = msg.getRequestId();
+        byte messageType = msg.getMessageType();
+        if (messageType == RpcConstants.BIDI_STREAM_REQUEST_TYPE) {
+            RpcRequest rpcRequest = (RpcRequest) msg.getData();
+            ServerUpload input = new ServerUpload(ctx, requestId, msg.getCodec(), streamWindow);
+            ServerBidiStream bidiStream = new ServerBidiStream(ctx, requestId, msg.getCodec(), input);
+            int index = RpcStream.indexOfStreamParameter(rpcRequest.getParamTypes());
+            if (index < 0) {
+                log.error("[{}#{}] has no stream parameter", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+                bidiStream.fail(RpcResponseCodeEnum.FAIL);
+                return;
+            }
+            rpcRequest.getParameters()[index] = toParameter(input, rpcRequest.getParamTypes()[index]);
+            uploads.put(requestId, input);
+            bidiStreams.put(requestId, bidiStream);
+            try {
+                uploadExecutor.execute(() -> invokeBidiStream(ctx, requestId, rpcRequest, bidiStream));
+            } catch (RejectedExecutionException e) {
+                log.error("upload executor is busy, reject [{}#{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+                uploads.remove(requestId);
+                bidiStreams.remove(requestId);
+                bidiStream.fail(RpcResponseCodeEnum.FAIL);
+                return;
+            }
+            input.start();
+        } else if (messageType == RpcConstants.STREAM_CREDIT_TYPE) {
+            // 双向流可能已结束并注销，之后到达的信用直接丢弃
+            ServerBidiStream bidiStream = bidiStreams.get(requestId);
+            if (bidiStream != null) {
+                bidiStream.addCredits((Integer) ((RpcResponse<?>) msg.getData()).getData());
+            }
+        } else {
+            log.info("bidi stream [{}] cancelled by client", requestId);
+            uploads.remove(requestId);
+            ServerBidiStream bidiStream = bidiStreams.remove(requestId);
+            if (bidiStream != null) {
+                bidiStream.close("cancelled");
+            }
+        }
+    }
+
+    /**
+     * 在 uploadExecutor 中执行服务方法并发送其返回的流，结束后注销双向流
+     */
+    private void invokeBidiStream(ChannelHandlerContext ctx, int requestId, RpcRequest rpcRequest, ServerBidiStream bidiStream) {
+        try {
+            bidiStream.send(rpcRequestHandler.handle(rpcRequest));
+        } catch (RuntimeException e) {
+            log.error("bidi stream of [{}#{}] failed", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), e);
+            bidiStream.fail(RpcResponseCodeEnum.FAIL);
+        }
+        ctx.executor().execute(() -> {
+            Map<Integer, ServerUpload> uploads = ctx.channel().attr(SERVER_UPLOADS).get();
+            if (uploads != null) {
+                uploads.remove(requestId);
+            }
+            Map<Integer, ServerBidiStream> bidiStreams = ctx.channel().attr(SERVER_BIDI_STREAMS).get();
+            if (bidiStreams != null) {
+                bidiStreams.remove(requestId);
+            }
+        });
+    }
+
+    private static Map<Integer, ServerBidiStream> getBidiStreams(ChannelHandlerContext ctx) {
+        Map<Integer, ServerBidiStream> bidiStreams = ctx.channel().attr(SERVER_BIDI_STREAMS).get();
+        if (bidiStreams == null) {
+            bidiStreams = new HashMap<>();
+            ctx.channel().attr(SERVER_BIDI_STREAMS).set(bidiStreams);
+        }
+        return bidiStreams;
+    }
+
+    /**
+     * 按服务方法声明的参数类型把接收到的数据包装为 Iterator 或 Stream
+     */
+    private static Object toParameter(ServerUpload upload, Class<?> paramType) {
+        return paramType == Stream.class
+                ? StreamSupport.stream(Spliterators.spliteratorUnknownSize(upload, Spliterator.ORDERED), false)
+                : upload;
+    }
+
+    /**
+     * 客户端流式请求，以及发往进行中的客户端流的数据、结束和取消消息
+     */
+    private static boolean isUploadMessage(ChannelHandlerContext ctx, RpcMessage msg) {
+        byte messageType = msg.getMessageType();
+        if (messageType == RpcConstants.CLIENT_STREAM_REQUEST_TYPE) {
+            return true;
+        }
+        if (messageType != RpcConstants.STREAM_DATA_TYPE && messageType != RpcConstants.STREAM_END_TYPE
+                && messageType != RpcConstants.STREAM_CANCEL_TYPE) {
+            return false;
+        }
+        Map<Integer, ServerUpload> uploads = ctx.channel().attr(SERVER_UPLOADS).get();
+        // 服务方法已经返回的客户端流不再登记，之后到达的数据直接丢弃
+        return messageType != RpcConstants.STREAM_CANCEL_TYPE
+                || uploads != null && uploads.containsKey(msg.getRequestId());
+    }
+
+    /**
+     * 处理客户端流式调用的消息：发起调用、接收数据、结束或取消
+     */
+    private void handleUploadMessage(ChannelHandlerContext ctx, RpcMessage msg) {
+        Map<Integer, ServerUpload> uploads = getUploads(ctx);
+        int requestId = msg.getRequestId();
+        byte messageType = msg.getMessageType();
+        if (messageType == RpcConstants.CLIENT_STREAM_REQUEST_TYPE) {
+            RpcRequest rpcRequest = (RpcRequest) msg.getData();
+            int index = RpcStream.indexOfStreamParameter(rpcRequest.getParamTypes());
+            if (index < 0) {
+                log.error("[{}#{}] has no stream parameter", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+                writeUploadResponse(ctx, msg, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+                return;
+            }
+            ServerUpload upload = new ServerUpload(ctx, requestId, msg.getCodec(), streamWindow);
+            rpcRequest.getParameters()[index] = toParameter(upload, rpcRequest.getParamTypes()[index]);
+            uploads.put(requestId, upload);
+            try {
+                uploadExecutor.execute(() -> invokeUpload(ctx, msg, rpcRequest));
+            } catch (RejectedExecutionException e) {
+                log.error("upload executor is busy, reject [{}#{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+                uploads.remove(requestId);
+                writeUploadResponse(ctx, msg, RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+                return;
+            }
+            upload.start();
+        } else if (messageType == RpcConstants.STREAM_DATA_TYPE) {
+            ServerUpload upload = uploads.get(requestId);
+            if (upload != null) {
+                upload.onData((List<?>) ((RpcResponse<?>) msg.getData()).getData());
+            }
+        } else if (messageType == RpcConstants.STREAM_END_TYPE) {
+            ServerUpload upload = uploads.get(requestId);
+            if (upload != null) {
+                upload.onEnd((RpcResponse<?>) msg.getData());
+            }
+        } else {
+            ServerUpload upload = uploads.remove(requestId);
+            log.info("client stream [{}] cancelled by client", requestId);
+            upload.fail("cancelled");
+        }
+    }
+
+    /**
+     * 在 uploadExecutor 中执行服务方法，返回后响应客户端并注销客户端流
+     */
+    private void invokeUpload(ChannelHandlerContext ctx, RpcMessage msg, RpcRequest rpcRequest) {
+        RpcResponse<Object> rpcResponse;
+        try {
+            Object result = rpcRequestHandler.handle(rpcRequest);
+            rpcResponse = RpcResponse.success(result);
+        } catch (RuntimeException e) {
+            log.error("client stream of [{}#{}] failed", rpcRequest.getInterfaceName(), rpcRequest.getMethodName(), e);
+            rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
+        }
+        writeUploadResponse(ctx, msg, rpcResponse);
+        ctx.executor().execute(() -> {
+            Map<Integer, ServerUpload> uploads = ctx.channel().attr(SERVER_UPLOADS).get();
+            if (uploads != null) {
+                uploads.remove(msg.getRequestId());
+            }
+        });
+    }
+
+    private static void writeUploadResponse(ChannelHandlerContext ctx, RpcMessage msg, RpcResponse<Object> rpcResponse) {
+        RpcMessage rpcMessage = RpcMessage.builder().requestId(msg.getRequestId())
+                .codec(msg.getCodec())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .data(rpcResponse).build();
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    private static Map<Integer, ServerUpload> getUploads(ChannelHandlerContext ctx) {
+        Map<Integer, ServerUpload> uploads = ctx.channel().attr(SERVER_UPLOADS).get();
+        if (uploads == null) {
+            uploads = new HashMap<>();
+            ctx.channel().attr(SERVER_UPLOADS).set(uploads);
+        }
+        return uploads;
+    }
+
+    private static boolean isStreamMessage(byte messageType) {
+        return messageType == RpcConstants.STREAM_REQUEST_TYPE || messageType == RpcConstants.STREAM_CREDIT_TYPE
+                || messageType == RpcConstants.STREAM_CANCEL_TYPE;
+    }
+
+    /**
+     * 处理流式调用的消息：发起流、补充信用、取消流
+     */
+    private void handleStreamMessage(ChannelHandlerContext ctx, RpcMessage msg) {
+        Map<Integer, ServerStream> streams = getStreams(ctx);
+        int requestId = msg.getRequestId();
+        byte messageType = msg.getMessageType();
+        if (messageType == RpcConstants.STREAM_REQUEST_TYPE) {
+            RpcRequest rpcRequest = (RpcRequest) msg.getData();
+            ServerStream stream = new ServerStream(ctx, requestId, msg.getCodec(), streamChunkSize,
+                    getStreamExecutor(rpcRequest), () -> streams.remove(requestId));
+            // 客户端紧接着流式请求发送初始信用，在此之前不发送数据
+            streams.put(requestId, stream);
+            stream.open(() -> rpcRequestHandler.handle(rpcRequest));
+        } else if (messageType == RpcConstants.STREAM_CREDIT_TYPE) {
+            ServerStream stream = streams.get(requestId);
+            if (stream != null) {
+                stream.addCredits((Integer) ((RpcResponse<?>) msg.getData()).getData());
+            }
+        } else {
+            ServerStream stream = streams.remove(requestId);
+            if (stream != null) {
+                log.info("stream [{}] cancelled by client", requestId);
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * 服务声明了独占线程池时在其中执行流式调用，否则使用共享的分发线程池
+     */
+    private Executor getStreamExecutor(RpcRequest rpcRequest) {
+        try {
+            ServiceBulkhead bulkhead = serviceProvider.getServiceInvoker(rpcRequest.getRpcServiceName()).getBulkhead();
+            if (bulkhead != null) {
+                return bulkhead::execute;
+            }
+        } catch (RuntimeException e) {
+            // 服务不存在时同样提交，由执行时报告错误
+        }
+        return streamExecutor;
+    }
+
+    private static Map<Integer, ServerStream> getStreams(ChannelHandlerContext ctx) {
+        Map<Integer, ServerStream> streams = ctx.channel().attr(SERVER_STREAMS).get();
+        if (streams == null) {
+            streams = new HashMap<>();
+            ctx.channel().attr(SERVER_STREAMS).set(streams);
+        }
+        return streams;
+    }
+
     /**
      * 处理读空闲事件
      */
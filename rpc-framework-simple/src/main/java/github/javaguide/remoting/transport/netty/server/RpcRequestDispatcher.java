@@ -0,0 +1,320 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.ServiceBulkhead;
+import github.javaguide.provider.ServiceInvoker;
+import github.javaguide.provider.ServiceProvider;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.utils.RpcPropertiesUtil;
+import github.javaguide.utils.RuntimeUtil;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按请求分发普通请求和单向请求
+ * <p>
+ * 放在编解码器之后、{@link NettyRpcServerHandler} 之前，运行在连接的 I/O 线程中。
+ * {@link NettyRpcServerHandler} 所在的 DefaultEventExecutorGroup 把每个连接固定在一个线程上，
+ * 客户端在一个连接上并发的调用只能逐个执行，一个慢调用会阻塞其后的所有调用。
+ * 这里把每个请求单独提交到共享的分发线程池，同一连接上的调用可以并行执行，连接数很少时吞吐量也能随 CPU 核数增长；
+ * 声明了独占线程池({@link ServiceBulkhead})的服务提交到自己的线程池，线程池满时立即返回过载响应。
+ * 声明为非阻塞({@link github.javaguide.annotation.RpcMethod#direct()})的方法直接在 I/O 线程中执行，省去两次线程切换，
+ * 由 {@link DirectCallWatchdog} 在其阻塞过久时告警。
+ * 标注了 {@link github.javaguide.annotation.RpcMethod#ordered()} 的方法不分发，在连接固定的线程上按到达顺序执行；
+ * 流式调用、心跳等其他消息仍交给 {@link NettyRpcServerHandler} 处理。
+ * <p>
+ * 开启 rpc.server.limit.enabled 后，请求在进入任何线程池之前先经过 {@link AdaptiveConcurrencyLimiter}，
+ * 进行中的请求达到按延迟调整的上限时立即返回 {@link RpcResponseCodeEnum#LIMITED}，客户端可以改发到其他节点；
+ * 默认整个服务端共用一个上限，rpc.server.limit.per.method=true 时每个方法单独计算。
+ * 名额在调用结束时归还，调用超过 rpc.server.limit.timeout 仍未结束(如服务方法返回的 future 永远不完成)时也归还，
+ * 此时客户端早已超时，继续占用名额只会让上限被耗尽。
+ * 为了让所有请求都经过限流，开启后有序方法和关闭按请求分发时的请求改为提交到 {@link NettyRpcServerHandler} 所在的线程
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class RpcRequestDispatcher extends ChannelInboundHandlerAdapter {
+    // 未配置 rpc.server.dispatch.queue.size 时分发线程池的队列容量
+    private static final int DEFAULT_QUEUE_SIZE = 10_000;
+    // 未配置 rpc.server.direct.warn.millis 时直接执行的方法的告警阈值
+    private static final long DEFAULT_DIRECT_WARN_MILLIS = 10;
+    // 标记直接在 I/O 线程中执行的请求
+    private static final Executor DIRECT = Runnable::run;
+    // 未配置 rpc.server.limit.initial 和 rpc.server.limit.max 时并发上限的初始值和最大值
+    private static final int DEFAULT_LIMIT_INITIAL = 20;
+    private static final int DEFAULT_LIMIT_MAX = 1000;
+    // 未配置 rpc.server.limit.timeout 时调用最多占用名额的时间(毫秒)，与客户端默认的调用超时时间一致
+    private static final long DEFAULT_LIMIT_TIMEOUT_MILLIS = 5000;
+
+    private final NettyRpcServerHandler nettyRpcServerHandler;
+    private final ServiceProvider serviceProvider;
+    // 共享的分发线程池，关闭按请求分发时为 null，只分发声明了独占线程池的服务
+    private final ExecutorService dispatchExecutor;
+    private final DirectCallWatchdog directCallWatchdog;
+    // 整个服务端共用的并发上限，未开启限流或按方法限流时为 null
+    private final AdaptiveConcurrencyLimiter serverLimiter;
+    // 按方法限流时每个方法的并发上限，key 为 rpcServiceName#methodName，未按方法限流时为 null
+    private final Map<String, AdaptiveConcurrencyLimiter> methodLimiters;
+    private final int limitInitial;
+    private final int limitMax;
+    // 调用最多占用名额的时间(毫秒)
+    private final long limitTimeoutMillis;
+    // 到期归还名额的时间轮，未开启限流时为 null
+    private final HashedWheelTimer limitTimer;
+
+    public RpcRequestDispatcher(NettyRpcServerHandler nettyRpcServerHandler) {
+        this(nettyRpcServerHandler, isDispatchPerRequest() ? createDispatchExecutor() : null);
+    }
+
+    RpcRequestDispatcher(NettyRpcServerHandler nettyRpcServerHandler, ExecutorService dispatchExecutor) {
+        this(nettyRpcServerHandler, dispatchExecutor,
+                RpcPropertiesUtil.getBoolean(RpcConfigEnum.SERVER_LIMIT_ENABLED, false),
+                RpcPropertiesUtil.getBoolean(RpcConfigEnum.SERVER_LIMIT_PER_METHOD, false),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.SERVER_LIMIT_INITIAL, DEFAULT_LIMIT_INITIAL),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.SERVER_LIMIT_MAX, DEFAULT_LIMIT_MAX),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.SERVER_LIMIT_TIMEOUT, DEFAULT_LIMIT_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * 按请求分发并开启整个服务端共用的并发上限，上限固定为 limit
+     */
+    RpcRequestDispatcher(NettyRpcServerHandler nettyRpcServerHandler, int limit, long limitTimeoutMillis) {
+        this(nettyRpcServerHandler, createDispatchExecutor(), true, false, limit, limit, limitTimeoutMillis);
+    }
+
+    private RpcRequestDispatcher(NettyRpcServerHandler nettyRpcServerHandler, ExecutorService dispatchExecutor,
+                                 boolean limitEnabled, boolean limitPerMethod, int limitInitial, int limitMax, long limitTimeoutMillis) {
+        this.nettyRpcServerHandler = nettyRpcServerHandler;
+        this.serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        this.dispatchExecutor = dispatchExecutor;
+        this.directCallWatchdog = new DirectCallWatchdog(
+                RpcPropertiesUtil.getLong(RpcConfigEnum.SERVER_DIRECT_WARN_MILLIS, DEFAULT_DIRECT_WARN_MILLIS));
+        this.limitInitial = limitInitial;
+        this.limitMax = limitMax;
+        this.limitTimeoutMillis = limitTimeoutMillis;
+        this.serverLimiter = limitEnabled && !limitPerMethod ? new AdaptiveConcurrencyLimiter(limitInitial, limitMax) : null;
+        this.methodLimiters = limitEnabled && limitPerMethod ? new ConcurrentHashMap<>() : null;
+        this.limitTimer = limitEnabled ? new HashedWheelTimer(
+                ThreadPoolFactoryUtil.createThreadFactory("rpc-limit-timeout", true), 10, TimeUnit.MILLISECONDS) : null;
+    }
+
+    /**
+     * 停止直接调用的监视线程和限流的时间轮，服务端关闭时调用；分发线程池按名字共享，由关闭钩子统一关闭
+     */
+    public void close() {
+        directCallWatchdog.close();
+        if (limitTimer != null) {
+            limitTimer.stop();
+        }
+    }
+
+    /**
+     * 是否按请求分发，rpc.server.dispatch.per.request=false 时回到每个连接固定一个线程的方式
+     */
+    private static boolean isDispatchPerRequest() {
+        return RpcPropertiesUtil.getBoolean(RpcConfigEnum.SERVER_DISPATCH_PER_REQUEST, true);
+    }
+
+    /**
+     * 分发线程池的线程数和队列容量分别由 rpc.server.dispatch.threads 和 rpc.server.dispatch.queue.size 配置，
+     * 队列满时拒绝请求，而不是让请求在队列中无限堆积；按名称共享，多次调用返回同一个线程池
+     */
+    static ExecutorService createDispatchExecutor() {
+        int threads = RpcPropertiesUtil.getInt(RpcConfigEnum.SERVER_DISPATCH_THREADS, RuntimeUtil.cpus() * 2);
+        CustomThreadPoolConfig dispatchPoolConfig = new CustomThreadPoolConfig();
+        dispatchPoolConfig.setCorePoolSize(threads);
+        dispatchPoolConfig.setMaximumPoolSize(threads);
+        dispatchPoolConfig.setKeepAliveTime(1);
+        dispatchPoolConfig.setUnit(TimeUnit.MINUTES);
+        dispatchPoolConfig.setWorkQueue(new ArrayBlockingQueue<>(
+                RpcPropertiesUtil.getInt(RpcConfigEnum.SERVER_DISPATCH_QUEUE_SIZE, DEFAULT_QUEUE_SIZE)));
+        return ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(dispatchPoolConfig, "service-dispatch", true);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        Executor executor = msg instanceof RpcMessage ? getExecutor(ctx, (RpcMessage) msg) : null;
+        if (executor == null) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        RpcMessage rpcMessage = (RpcMessage) msg;
+        RpcRequest rpcRequest = (RpcRequest) rpcMessage.getData();
+        log.info("server receive msg: [{}] ", rpcMessage);
+        AdaptiveConcurrencyLimiter limiter = getLimiter(rpcRequest);
+        Permit permit = null;
+        if (limiter != null) {
+            if (!limiter.tryAcquire()) {
+                log.warn("concurrency limit [{}] reached, reject [{}#{}]", limiter.getLimit(),
+                        rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+                reject(ctx, rpcMessage, RpcResponseCodeEnum.LIMITED);
+                return;
+            }
+            permit = new Permit(limiter, rpcRequest);
+        }
+        if (executor == DIRECT) {
+            directCallWatchdog.enter(rpcRequest);
+            try {
+                invoke(ctx, rpcMessage, permit);
+            } finally {
+                directCallWatchdog.exit();
+            }
+            return;
+        }
+        Permit acquired = permit;
+        try {
+            executor.execute(() -> invoke(ctx, rpcMessage, acquired));
+        } catch (RejectedExecutionException e) {
+            if (permit != null) {
+                permit.cancel();
+            }
+            log.warn("executor of [{}] is full, reject [{}#{}]", rpcRequest.getRpcServiceName(),
+                    rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+            reject(ctx, rpcMessage, RpcResponseCodeEnum.OVERLOADED);
+        }
+    }
+
+    /**
+     * 执行请求，调用结束时归还并发名额
+     *
+     * @param permit 未开启限流时为 null
+     */
+    private void invoke(ChannelHandlerContext ctx, RpcMessage rpcMessage, Permit permit) {
+        // 服务方法的异常都通过 future 报告并响应失败，不会关闭连接上其他进行中的调用；
+        // 写出响应前归还名额，客户端收到响应后立即发出的下一个请求不会因名额未归还而被拒绝
+        nettyRpcServerHandler.handleRequest(ctx, rpcMessage, permit == null ? null : permit::release);
+    }
+
+    /**
+     * 请求没有执行，普通请求立即告知客户端原因，而不是让其等到超时；单向请求直接丢弃
+     */
+    private static void reject(ChannelHandlerContext ctx, RpcMessage rpcMessage, RpcResponseCodeEnum rpcResponseCodeEnum) {
+        if (rpcMessage.getMessageType() != RpcConstants.REQUEST_TYPE) {
+            return;
+        }
+        RpcMessage response = RpcMessage.builder().requestId(rpcMessage.getRequestId())
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .data(RpcResponse.fail(rpcResponseCodeEnum)).build();
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    /**
+     * @return 未开启限流时返回 null
+     */
+    private AdaptiveConcurrencyLimiter getLimiter(RpcRequest rpcRequest) {
+        if (methodLimiters == null) {
+            return serverLimiter;
+        }
+        return methodLimiters.computeIfAbsent(rpcRequest.getRpcServiceName() + "#" + rpcRequest.getMethodName(),
+                key -> new AdaptiveConcurrencyLimiter(limitInitial, limitMax));
+    }
+
+    /**
+     * 选择执行请求的线程池：只分发普通请求和单向请求，声明为非阻塞的方法在 I/O 线程中执行，
+     * 要求按顺序执行的方法或关闭按请求分发时不分发，开启限流时改为提交到 {@link NettyRpcServerHandler} 所在的线程；
+     * 服务声明了独占线程池时使用它，否则使用共享的分发线程池
+     *
+     * @return 不分发时返回 null，交给 {@link NettyRpcServerHandler} 处理；在 I/O 线程中执行时返回 {@link #DIRECT}
+     */
+    private Executor getExecutor(ChannelHandlerContext ctx, RpcMessage rpcMessage) {
+        byte messageType = rpcMessage.getMessageType();
+        if (messageType != RpcConstants.REQUEST_TYPE && messageType != RpcConstants.ONEWAY_REQUEST_TYPE) {
+            return null;
+        }
+        Executor pinnedExecutor = serverLimiter == null && methodLimiters == null ? null : getPinnedExecutor(ctx);
+        RpcRequest rpcRequest = (RpcRequest) rpcMessage.getData();
+        ServiceInvoker serviceInvoker;
+        try {
+            serviceInvoker = serviceProvider.getServiceInvoker(rpcRequest.getRpcServiceName());
+        } catch (RuntimeException e) {
+            // 服务不存在时同样分发，由执行时报告错误
+            return dispatchExecutor != null ? dispatchExecutor : pinnedExecutor;
+        }
+        if (serviceInvoker.isDirect(rpcRequest.getMethodName(), rpcRequest.getParamTypes())) {
+            return DIRECT;
+        }
+        if (serviceInvoker.isOrdered(rpcRequest.getMethodName(), rpcRequest.getParamTypes())) {
+            return pinnedExecutor;
+        }
+        ServiceBulkhead bulkhead = serviceInvoker.getBulkhead();
+        if (bulkhead != null) {
+            return bulkhead::execute;
+        }
+        return dispatchExecutor != null ? dispatchExecutor : pinnedExecutor;
+    }
+
+    /**
+     * @return 连接固定的 {@link NettyRpcServerHandler} 所在的线程，handler 不在 pipeline 中时返回 null
+     */
+    private Executor getPinnedExecutor(ChannelHandlerContext ctx) {
+        ChannelHandlerContext handlerContext = ctx.pipeline().context(nettyRpcServerHandler);
+        return handlerContext == null ? null : handlerContext.executor();
+    }
+
+    /**
+     * 一个请求占用的并发名额，调用结束、请求被拒绝或超过 limitTimeoutMillis 时归还，只归还一次
+     */
+    private final class Permit {
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private final Timeout timeout;
+
+        private Permit(AdaptiveConcurrencyLimiter limiter, RpcRequest rpcRequest) {
+            this.limiter = limiter;
+            this.timeout = limitTimer.newTimeout(t -> {
+                if (returned.compareAndSet(false, true)) {
+                    log.warn("[{}#{}] not completed in [{}]ms, release its permit", rpcRequest.getInterfaceName(),
+                            rpcRequest.getMethodName(), limitTimeoutMillis);
+                    // 按实际占用的时间记录，上限随之收缩
+                    limiter.release(System.nanoTime() - startNanos);
+                }
+            }, limitTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 调用结束，记录其延迟
+         */
+        private void release() {
+            if (returned.compareAndSet(false, true)) {
+                timeout.cancel();
+                limiter.release(System.nanoTime() - startNanos);
+            }
+        }
+
+        /**
+         * 请求没有执行，不记录延迟
+         */
+        private void cancel() {
+            if (returned.compareAndSet(false, true)) {
+                timeout.cancel();
+                limiter.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.stream.BaseStream;
+
+/**
+ * 服务端的一个双向流
+ * <p>
+ * 客户端发来的数据由 {@link ServerUpload} 接收并作为流参数传给服务方法，服务方法返回的 Iterator / Stream
+ * 逐个发回客户端，两个方向各自按对方授予的信用发送，互不等待。
+ * 服务方法返回的迭代器通常依赖客户端的数据，读取时可能阻塞，所以与 {@link ServerStream} 不同：
+ * 发送在独立的线程中进行，而不是在 handler 所在的 executor 中进行；每个元素单独发送，不凑满一批，
+ * 否则交替收发的双方会互相等待
+ */
+@Slf4j
+class ServerBidiStream {
+    private final ChannelHandlerContext ctx;
+    private final int requestId;
+    private final byte codec;
+    private final ServerUpload input;
+    // 客户端授予的剩余信用，每发送一个元素消耗一个
+    private final Semaphore credits = new Semaphore(0);
+    private volatile boolean closed;
+
+    ServerBidiStream(ChannelHandlerContext ctx, int requestId, byte codec, ServerUpload input) {
+        this.ctx = ctx;
+        this.requestId = requestId;
+        this.codec = codec;
+        this.input = input;
+    }
+
+    /**
+     * 收到客户端授予的信用，在 handler 所在的 executor 中调用
+     */
+    void addCredits(int n) {
+        credits.release(n);
+    }
+
+    /**
+     * 客户端取消或连接断开，两个方向都停止，服务方法读取流参数时抛出异常
+     */
+    void close(String reason) {
+        closed = true;
+        input.fail(reason);
+        // 唤醒等待信用的发送线程
+        credits.release();
+    }
+
+    /**
+     * 服务方法执行失败，直接结束流
+     */
+    void fail(RpcResponseCodeEnum rpcResponseCodeEnum) {
+        if (!closed) {
+            write(RpcConstants.STREAM_END_TYPE, RpcResponse.fail(rpcResponseCodeEnum));
+        }
+    }
+
+    /**
+     * 把服务方法的返回值发给客户端，在发送线程中调用，直到发送完毕、失败或流被关闭才返回
+     */
+    void send(Object result) {
+        Iterator<?> iterator = ServerStream.toIterator(result);
+        try {
+            while (!closed && iterator.hasNext()) {
+                credits.acquire();
+                if (closed) {
+                    break;
+                }
+                write(RpcConstants.STREAM_DATA_TYPE, RpcResponse.success(Collections.singletonList(iterator.next())));
+            }
+            if (!closed) {
+                write(RpcConstants.STREAM_END_TYPE, RpcResponse.success(null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(RpcResponseCodeEnum.FAIL);
+        } catch (RuntimeException e) {
+            if (!closed) {
+                log.error("bidi stream [{}] failed", requestId, e);
+            }
+            fail(RpcResponseCodeEnum.FAIL);
+        } finally {
+            if (result instanceof BaseStream) {
+                ((BaseStream<?, ?>) result).close();
+            }
+        }
+    }
+
+    private void write(byte messageType, RpcResponse<?> rpcResponse) {
+        RpcMessage rpcMessage = RpcMessage.builder().requestId(requestId)
+                .codec(codec)
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(messageType)
+                .data(rpcResponse).build();
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+}
@@ -0,0 +1,240 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.BaseStream;
+
+/**
+ * 服务端的一个流式响应
+ * 服务方法返回的 Iterator / Iterable / Stream 按 chunkSize 个元素一批发送，每批消耗客户端授予的一个信用，
+ * 信用用完时暂停，直到客户端消费后补充信用，服务端同时在途的数据不超过客户端的窗口大小。
+ * 连接不可写时同样暂停，避免客户端读得慢时数据堆积在发送缓冲区，重新可写后由 handler 调用 {@link #resume()} 继续发送。
+ * <p>
+ * 服务方法和迭代器的读取可能很慢甚至阻塞，在 worker 线程池(服务的独占线程池或共享的分发线程池)中执行，
+ * 不占用连接固定的 handler 线程，同一连接上的其他流和调用不受影响；每次只有一个读取任务，读到的数据回到 handler 线程写出。
+ * 除读取任务外，所有方法和状态都在 handler 所在的 executor 中访问，不需要加锁
+ */
+@Slf4j
+class ServerStream {
+    private final ChannelHandlerContext ctx;
+    private final int requestId;
+    private final byte codec;
+    private final int chunkSize;
+    // 执行服务方法和读取迭代器的线程池
+    private final Executor worker;
+    // 流正常结束或失败时执行，用于注销流
+    private final Runnable onEnd;
+    // 服务方法返回前为 null
+    private Iterator<?> iterator;
+    // Stream 结束时需要关闭
+    private AutoCloseable resource;
+    // 剩余信用，每发送一批数据消耗一个
+    private int credits;
+    // worker 中正在执行服务方法或读取下一批数据
+    private boolean busy;
+    private boolean closed;
+
+    ServerStream(ChannelHandlerContext ctx, int requestId, byte codec, int chunkSize, Executor worker, Runnable onEnd) {
+        this.ctx = ctx;
+        this.requestId = requestId;
+        this.codec = codec;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.worker = worker;
+        this.onEnd = onEnd;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 在 worker 中执行服务方法，返回后开始发送
+     *
+     * @param invocation 执行服务方法，返回 Iterator / Iterable / Stream
+     */
+    void open(Supplier<Object> invocation) {
+        submit(() -> {
+            Object result;
+            Iterator<?> opened;
+            try {
+                result = invocation.get();
+                opened = toIterator(result);
+            } catch (RuntimeException e) {
+                log.error("open stream [{}] failed", requestId, e);
+                ctx.executor().execute(() -> {
+                    busy = false;
+                    fail(RpcResponseCodeEnum.FAIL);
+                });
+                return;
+            }
+            ctx.executor().execute(() -> onOpened(opened, result instanceof BaseStream ? (BaseStream<?, ?>) result : null));
+        });
+    }
+
+    /**
+     * 收到客户端授予的信用，继续发送数据
+     */
+    void addCredits(int n) {
+        credits += n;
+        pump();
+    }
+
+    /**
+     * 连接重新可写，继续发送数据
+     */
+    void resume() {
+        pump();
+    }
+
+    /**
+     * 服务方法执行失败，直接结束流
+     */
+    void fail(RpcResponseCodeEnum rpcResponseCodeEnum) {
+        end(RpcResponse.fail(rpcResponseCodeEnum));
+    }
+
+    /**
+     * 客户端取消或连接断开，不再发送任何消息
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Stream 不能被并发访问，worker 正在读取时由读取任务返回后关闭
+        if (!busy) {
+            closeResource();
+        }
+    }
+
+    private void onOpened(Iterator<?> opened, AutoCloseable openedResource) {
+        busy = false;
+        iterator = opened;
+        resource = openedResource;
+        if (closed) {
+            closeResource();
+            return;
+        }
+        pump();
+    }
+
+    private void pump() {
+        if (closed || busy || iterator == null || credits <= 0 || !ctx.channel().isWritable()) {
+            return;
+        }
+        submit(this::pull);
+    }
+
+    /**
+     * 在 worker 中读取下一批数据
+     */
+    private void pull() {
+        List<Object> chunk = new ArrayList<>(chunkSize);
+        boolean hasNext;
+        try {
+            while (chunk.size() < chunkSize && iterator.hasNext()) {
+                chunk.add(iterator.next());
+            }
+            hasNext = iterator.hasNext();
+        } catch (RuntimeException e) {
+            log.error("stream [{}] failed", requestId, e);
+            ctx.executor().execute(() -> onChunk(null, false));
+            return;
+        }
+        ctx.executor().execute(() -> onChunk(chunk, hasNext));
+    }
+
+    /**
+     * @param chunk 读取失败时为 null
+     */
+    private void onChunk(List<Object> chunk, boolean hasNext) {
+        busy = false;
+        if (closed) {
+            closeResource();
+            return;
+        }
+        if (chunk == null) {
+            fail(RpcResponseCodeEnum.FAIL);
+            return;
+        }
+        if (!chunk.isEmpty()) {
+            credits--;
+            write(RpcConstants.STREAM_DATA_TYPE, RpcResponse.success(chunk));
+        }
+        if (!hasNext) {
+            end(RpcResponse.success(null));
+            return;
+        }
+        pump();
+    }
+
+    private void submit(Runnable task) {
+        busy = true;
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) {
+            busy = false;
+            log.warn("executor is full, stream [{}] failed", requestId);
+            fail(RpcResponseCodeEnum.OVERLOADED);
+        }
+    }
+
+    private void closeResource() {
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("close stream [{}] failed", requestId, e);
+            }
+        }
+    }
+
+    private void end(RpcResponse<Object> rpcResponse) {
+        if (closed) {
+            return;
+        }
+        write(RpcConstants.STREAM_END_TYPE, rpcResponse);
+        close();
+        onEnd.run();
+    }
+
+    private void write(byte messageType, RpcResponse<?> rpcResponse) {
+        RpcMessage rpcMessage = RpcMessage.builder().requestId(requestId)
+                .codec(codec)
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(messageType)
+                .data(rpcResponse).build();
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    static Iterator<?> toIterator(Object result) {
+        if (result == null) {
+            return Collections.emptyIterator();
+        }
+        if (result instanceof Iterator) {
+            return (Iterator<?>) result;
+        }
+        if (result instanceof Iterable) {
+            return ((Iterable<?>) result).iterator();
+        }
+        if (result instanceof BaseStream) {
+            return ((BaseStream<?, ?>) result).iterator();
+        }
+        // 普通返回值作为只有一个元素的流
+        return Collections.singletonList(result).iterator();
+    }
+}
@@ -0,0 +1,129 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 服务端的一个客户端流式调用，作为流参数传给服务方法
+ * <p>
+ * 客户端发送的每批数据放入队列，服务方法在业务线程中按顺序消费。开始时授予客户端 window 个信用，
+ * 服务方法每取走 window / 2 批数据就补充同样数量的信用，因此队列中最多有 window 批数据，
+ * 服务端内存占用与批大小成正比，与上传的数据量无关
+ */
+class ServerUpload implements Iterator<Object> {
+    // 流正常结束的标记
+    private static final Object END = new Object();
+
+    private final ChannelHandlerContext ctx;
+    private final int requestId;
+    private final byte codec;
+    private final int window;
+    private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+    // 以下字段只由服务方法所在的线程访问
+    private Iterator<?> current = Collections.emptyIterator();
+    private int consumedChunks;
+    private boolean ended;
+
+    ServerUpload(ChannelHandlerContext ctx, int requestId, byte codec, int window) {
+        this.ctx = ctx;
+        this.requestId = requestId;
+        this.codec = codec;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * 授予客户端初始信用
+     */
+    void start() {
+        writeCredits(window);
+    }
+
+    /**
+     * 收到一批数据
+     */
+    void onData(List<?> chunk) {
+        chunks.offer(chunk);
+    }
+
+    /**
+     * 客户端发送完毕，失败时服务方法在读取到此处时抛出异常
+     */
+    void onEnd(RpcResponse<?> rpcResponse) {
+        if (rpcResponse != null && Integer.valueOf(RpcResponseCodeEnum.SUCCESS.getCode()).equals(rpcResponse.getCode())) {
+            chunks.offer(END);
+        } else {
+            fail(rpcResponse == null ? "empty stream end" : rpcResponse.getMessage());
+        }
+    }
+
+    /**
+     * 客户端取消或连接断开
+     */
+    void fail(String reason) {
+        chunks.offer(new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "client stream " + requestId + " " + reason));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (ended) {
+                return false;
+            }
+            Object next = take();
+            if (next == END) {
+                ended = true;
+                return false;
+            }
+            if (next instanceof RpcException) {
+                ended = true;
+                throw (RpcException) next;
+            }
+            current = ((List<?>) next).iterator();
+            if (++consumedChunks >= Math.max(1, window / 2)) {
+                writeCredits(consumedChunks);
+                consumedChunks = 0;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    private Object take() {
+        try {
+            return chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, "interrupted");
+        }
+    }
+
+    private void writeCredits(int credits) {
+        RpcMessage rpcMessage = RpcMessage.builder().requestId(requestId)
+                .codec(codec)
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.STREAM_CREDIT_TYPE)
+                .data(RpcResponse.success(credits)).build();
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+}
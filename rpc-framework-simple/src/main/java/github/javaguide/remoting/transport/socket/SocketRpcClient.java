@@ -1,11 +1,14 @@
 package github.javaguide.remoting.transport.socket;
 
+import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.ServiceDiscoveryEnum;
 import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.registry.ServiceDiscovery;
 import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.RpcStream;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -51,4 +54,27 @@ public class SocketRpcClient implements RpcRequestTransport {
             throw new RpcException("调用服务失败:", e);
         }
     }
+
+    /**
+     * 一次请求对应一次连接上的一问一答，无法分批收发，不支持流式调用
+     */
+    @Override
+    public boolean isStreamSupported() {
+        return false;
+    }
+
+    @Override
+    public RpcStream<Object> sendStreamRequest(RpcRequest rpcRequest) {
+        throw new RpcException(RpcErrorMessageEnum.STREAM_NOT_SUPPORTED, getClass().getSimpleName());
+    }
+
+    @Override
+    public RpcResponse<Object> sendUploadRequest(RpcRequest rpcRequest) {
+        throw new RpcException(RpcErrorMessageEnum.STREAM_NOT_SUPPORTED, getClass().getSimpleName());
+    }
+
+    @Override
+    public RpcStream<Object> sendBidiStreamRequest(RpcRequest rpcRequest) {
+        throw new RpcException(RpcErrorMessageEnum.STREAM_NOT_SUPPORTED, getClass().getSimpleName());
+    }
 }
@@ -41,7 +41,7 @@ public class SocketRpcRequestHandlerRunnable implements Runnable {
              ObjectOutputStream objectOutputStream = new ObjectOutputStream(socket.getOutputStream())) {
             RpcRequest rpcRequest = (RpcRequest) objectInputStream.readObject();
             Object result = rpcRequestHandler.handle(rpcRequest);
-            objectOutputStream.writeObject(RpcResponse.success(result, rpcRequest.getRequestId()));
+            objectOutputStream.writeObject(RpcResponse.success(result));
             objectOutputStream.flush();
         } catch (IOException | ClassNotFoundException e) {
             log.error("occur exception:", e);
@@ -3,6 +3,7 @@ package github.javaguide.serialize.kyro;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import github.javaguide.remoting.dto.CompactRpcRequest;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
@@ -27,6 +28,7 @@ public class KryoSerializer implements Serializer {
         Kryo kryo = new Kryo();
         kryo.register(RpcResponse.class);
         kryo.register(RpcRequest.class);
+        kryo.register(CompactRpcRequest.class);
         return kryo;
     });
 
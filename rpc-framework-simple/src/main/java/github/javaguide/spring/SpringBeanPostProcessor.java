@@ -3,13 +3,16 @@ package github.javaguide.spring;
 import github.javaguide.annotation.RpcReference;
 import github.javaguide.annotation.RpcService;
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.RpcRequestTransportEnum;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
 import github.javaguide.proxy.RpcClientProxy;
+import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.utils.RpcPropertiesUtil;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
@@ -17,6 +20,9 @@ import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * call this method before creating the bean to see if the class is annotated
@@ -25,7 +31,9 @@ import java.lang.reflect.Field;
 @Slf4j
 @Component
 public class SpringBeanPostProcessor implements BeanPostProcessor {
-    
+    // 预热默认等待 3 秒
+    private static final long DEFAULT_WARMUP_TIMEOUT_MILLIS = 3000;
+
     /**
      * 服务提供者
      */
@@ -36,6 +44,11 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
      */
     private final RpcRequestTransport rpcClient;
 
+    /**
+     * 是否为所有服务引用开启预热
+     */
+    private final boolean warmUpEnabled;
+
     /**
      * 初始化服务提供者和客户端
      * 
@@ -47,6 +60,7 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
     public SpringBeanPostProcessor() {
         this.serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
         this.rpcClient = ExtensionLoader.getExtensionLoader(RpcRequestTransport.class).getExtension(RpcRequestTransportEnum.NETTY.getName());
+        this.warmUpEnabled = RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_WARMUP_ENABLED, false);
     }
 
     /**
@@ -67,6 +81,9 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
             RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                     .group(rpcService.group())
                     .version(rpcService.version())
+                    .threads(rpcService.threads())
+                    .queueSize(rpcService.queueSize())
+                    .direct(rpcService.direct())
                     .service(bean).build();
             // 4. 发布服务
             serviceProvider.publishService(rpcServiceConfig);
@@ -99,7 +116,11 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
                 // 3.3 构建RpcServiceConfig
                 RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                         .group(rpcReference.group())
-                        .version(rpcReference.version()).build();
+                        .version(rpcReference.version())
+                        .timeout(rpcReference.timeout())
+                        .idempotent(rpcReference.idempotent())
+                        .retries(rpcReference.retries())
+                        .oneWay(rpcReference.oneWay()).build();
                 // 3.4 创建代理对象
                 RpcClientProxy rpcClientProxy = new RpcClientProxy(rpcClient, rpcServiceConfig);
                 // 3.5 获取代理对象
@@ -112,9 +133,36 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
                 } catch (IllegalAccessException e) {
                     e.printStackTrace();
                 }
+                // 3.8 预热 在应用就绪之前完成服务订阅和连接建立
+                if (warmUpEnabled || rpcReference.warmUp()) {
+                    warmUp(declaredField.getType(), rpcServiceConfig);
+                }
             }
         }
         // 4. 返回bean
         return bean; 
     }
+
+    /**
+     * 预热服务引用，最多等待 rpc.client.warmup.timeout 毫秒，预热失败不影响 bean 的创建
+     */
+    private void warmUp(Class<?> interfaceClass, RpcServiceConfig rpcServiceConfig) {
+        RpcRequest rpcRequest = RpcRequest.builder()
+                .interfaceName(interfaceClass.getName())
+                .group(rpcServiceConfig.getGroup())
+                .version(rpcServiceConfig.getVersion())
+                .timeout(rpcServiceConfig.getTimeout()).build();
+        int connections = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_WARMUP_CONNECTIONS, 0);
+        boolean ping = RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_WARMUP_PING, true);
+        long timeoutMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_WARMUP_TIMEOUT, DEFAULT_WARMUP_TIMEOUT_MILLIS);
+        long start = System.currentTimeMillis();
+        try {
+            rpcClient.warmUp(rpcRequest, connections, ping).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            log.info("warmed up [{}] in [{}]ms", rpcRequest.getRpcServiceName(), System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            log.warn("warm up [{}] failed: [{}]", rpcRequest.getRpcServiceName(), e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,187 @@
+package github.javaguide.circuitbreaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private CircuitBreaker newCircuitBreaker(long slowCallMillis) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.builder()
+                .enabled(true)
+                .windowSeconds(10)
+                .minRequests(10)
+                .errorRatePercent(50)
+                .slowCallMillis(slowCallMillis)
+                .slowCallRatePercent(50)
+                .openMillis(5000)
+                .halfOpenProbes(2)
+                .build();
+        return new CircuitBreaker("hello@127.0.0.1:9998", config, clock::get);
+    }
+
+    private static void success(CircuitBreaker circuitBreaker, long durationMillis) {
+        circuitBreaker.tryAcquirePermission().onSuccess(durationMillis);
+    }
+
+    private static void error(CircuitBreaker circuitBreaker) {
+        circuitBreaker.tryAcquirePermission().onError(1);
+    }
+
+    private CircuitBreaker newOpenCircuitBreaker() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(0);
+        for (int i = 0; i < 10; i++) {
+            error(circuitBreaker);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        return circuitBreaker;
+    }
+
+    @Test
+    void should_not_trip_before_min_requests() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(0);
+        for (int i = 0; i < 9; i++) {
+            error(circuitBreaker);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void should_trip_on_error_rate() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(0);
+        for (int i = 0; i < 10; i++) {
+            success(circuitBreaker, 1);
+        }
+        for (int i = 0; i < 9; i++) {
+            error(circuitBreaker);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        error(circuitBreaker);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.isAvailable());
+    }
+
+    @Test
+    void should_trip_on_slow_call_rate() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(100);
+        for (int i = 0; i < 5; i++) {
+            success(circuitBreaker, 10);
+        }
+        for (int i = 0; i < 5; i++) {
+            success(circuitBreaker, 200);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void should_forget_results_outside_window() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(0);
+        for (int i = 0; i < 9; i++) {
+            error(circuitBreaker);
+        }
+        // 窗口 10 秒，旧的失败滑出窗口
+        clock.addAndGet(11_000);
+        error(circuitBreaker);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void should_half_open_after_open_millis_and_limit_probes() {
+        CircuitBreaker circuitBreaker = newOpenCircuitBreaker();
+        clock.addAndGet(4999);
+        assertFalse(circuitBreaker.isAvailable());
+        assertNull(circuitBreaker.tryAcquirePermission());
+        clock.addAndGet(1);
+        // isAvailable 不改变状态
+        assertTrue(circuitBreaker.isAvailable());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        CircuitBreaker.Permission probe = circuitBreaker.tryAcquirePermission();
+        assertNotNull(probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.isAvailable());
+        // 取消的探测请求归还名额
+        probe.onIgnored();
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void should_close_after_successful_probes() {
+        CircuitBreaker circuitBreaker = newOpenCircuitBreaker();
+        clock.addAndGet(5000);
+        CircuitBreaker.Permission first = circuitBreaker.tryAcquirePermission();
+        CircuitBreaker.Permission second = circuitBreaker.tryAcquirePermission();
+        first.onSuccess(1);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        second.onSuccess(1);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        // 关闭后窗口重新统计
+        error(circuitBreaker);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void should_open_again_when_probe_fails() {
+        CircuitBreaker circuitBreaker = newOpenCircuitBreaker();
+        clock.addAndGet(5000);
+        circuitBreaker.tryAcquirePermission().onError(1);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertNull(circuitBreaker.tryAcquirePermission());
+        clock.addAndGet(5000);
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void should_release_probe_only_to_the_half_open_it_was_taken_from() {
+        CircuitBreaker circuitBreaker = newOpenCircuitBreaker();
+        clock.addAndGet(5000);
+        CircuitBreaker.Permission stale = circuitBreaker.tryAcquirePermission();
+        circuitBreaker.tryAcquirePermission().onError(1);
+        clock.addAndGet(5000);
+        // 新一轮半开的名额被占满后，上一轮的探测请求被取消不能归还新一轮的名额
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+        stale.onIgnored();
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.isAvailable());
+    }
+
+    @Test
+    void should_not_count_result_acquired_before_trip_as_probe() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(0);
+        CircuitBreaker.Permission beforeTrip = circuitBreaker.tryAcquirePermission();
+        for (int i = 0; i < 10; i++) {
+            error(circuitBreaker);
+        }
+        clock.addAndGet(5000);
+        CircuitBreaker.Permission probe = circuitBreaker.tryAcquirePermission();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        // 熔断前发出的请求迟到的成功不算探测成功
+        beforeTrip.onSuccess(1);
+        probe.onSuccess(1);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void registry_should_report_unknown_endpoints_available() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry(CircuitBreakerConfig.builder()
+                .enabled(true).windowSeconds(10).minRequests(1).errorRatePercent(50)
+                .openMillis(5000).halfOpenProbes(1).build());
+        assertTrue(registry.isAvailable("hello", "127.0.0.1:9998"));
+        error(registry.getCircuitBreaker("hello", "127.0.0.1:9998"));
+        assertFalse(registry.isAvailable("hello", "127.0.0.1:9998"));
+        assertTrue(registry.isAvailable("hello", "127.0.0.1:9999"));
+        assertTrue(registry.isAvailable("world", "127.0.0.1:9998"));
+    }
+}
@@ -5,8 +5,6 @@ import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.serialize.kyro.KryoSerializer;
 import org.junit.jupiter.api.Test;
 
-import java.util.UUID;
-
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class GzipCompressTest {
@@ -17,7 +15,6 @@ class GzipCompressTest {
                 .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
                 .interfaceName("github.javaguide.HelloService")
                 .paramTypes(new Class<?>[]{String.class, String.class})
-                .requestId(UUID.randomUUID().toString())
                 .group("group1")
                 .version("version1")
                 .build();
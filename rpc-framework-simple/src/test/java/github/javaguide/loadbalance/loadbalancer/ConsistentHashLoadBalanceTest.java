@@ -40,7 +40,6 @@ class ConsistentHashLoadBalanceTest {
         RpcRequest rpcRequest = RpcRequest.builder()
                 .parameters(demoRpcService.getClass().getTypeParameters())
                 .interfaceName(rpcServiceConfig.getServiceName())
-                .requestId(UUID.randomUUID().toString())
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
                 .build();
@@ -122,7 +121,6 @@ class ConsistentHashLoadBalanceTest {
                 RpcRequest rpcRequest = RpcRequest.builder()
                         .parameters(demoRpcService.getClass().getTypeParameters())
                         .interfaceName(rpcServiceConfig.getServiceName())
-                        .requestId(UUID.randomUUID().toString())
                         .group(rpcServiceConfig.getGroup())
                         .version(rpcServiceConfig.getVersion())
                         .build();
@@ -150,7 +148,6 @@ class ConsistentHashLoadBalanceTest {
                 RpcRequest rpcRequest = RpcRequest.builder()
                         .parameters(demoRpcService.getClass().getTypeParameters())
                         .interfaceName(rpcServiceConfig.getServiceName())
-                        .requestId(UUID.randomUUID().toString())
                         .group(rpcServiceConfig.getGroup())
                         .version(rpcServiceConfig.getVersion())
                         .build();
@@ -179,7 +176,6 @@ class ConsistentHashLoadBalanceTest {
         RpcRequest rpcRequest = RpcRequest.builder()
                 .parameters(demoRpcService.getClass().getTypeParameters())
                 .interfaceName(rpcServiceConfig.getServiceName())
-                .requestId(UUID.randomUUID().toString())
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
                 .build();
@@ -209,7 +205,6 @@ class ConsistentHashLoadBalanceTest {
         RpcRequest rpcRequest = RpcRequest.builder()
                 .parameters(demoRpcService.getClass().getTypeParameters())
                 .interfaceName(rpcServiceConfig.getServiceName())
-                .requestId(UUID.randomUUID().toString())
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
                 .build();
@@ -0,0 +1,56 @@
+package github.javaguide.provider;
+
+import github.javaguide.provider.ServiceInvokerTest.CalcServiceImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 与之前每次调用都反射查找方法的做法比较，耗时只记录不断言，不随单元测试运行，用 mvn test -Pbenchmark 运行
+ */
+@Tag("benchmark")
+class ServiceInvokerBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(ServiceInvokerBenchmarkTest.class);
+    private static final int WARMUP_CALLS = 2_000_000;
+    private static final int CALLS = 5_000_000;
+
+    @Test
+    void compare_with_reflection() throws Exception {
+        CalcServiceImpl service = new CalcServiceImpl();
+        ServiceInvoker serviceInvoker = new ServiceInvoker(service);
+        Class<?>[] paramTypes = {String.class};
+        Object[] parameters = {"rpc"};
+        long reflectionChecksum = 0;
+        long invokerChecksum = 0;
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            reflectionChecksum += reflect(service, paramTypes, parameters).length();
+            invokerChecksum += ((String) serviceInvoker.invoke("greet", paramTypes, parameters)).length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            reflectionChecksum += reflect(service, paramTypes, parameters).length();
+        }
+        long reflection = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            invokerChecksum += ((String) serviceInvoker.invoke("greet", paramTypes, parameters)).length();
+        }
+        long invoker = System.nanoTime() - start;
+        assertEquals(reflectionChecksum, invokerChecksum);
+        log.warn("getMethod + Method.invoke [{}]ns/call, ServiceInvoker [{}]ns/call",
+                reflection / CALLS, invoker / CALLS);
+        log.warn("elapsed: reflection [{}]ms, invoker [{}]ms",
+                TimeUnit.NANOSECONDS.toMillis(reflection), TimeUnit.NANOSECONDS.toMillis(invoker));
+    }
+
+    private static String reflect(Object service, Class<?>[] paramTypes, Object[] parameters) throws Exception {
+        Method method = service.getClass().getMethod("greet", paramTypes);
+        return (String) method.invoke(service, parameters);
+    }
+}
@@ -0,0 +1,85 @@
+package github.javaguide.provider;
+
+import github.javaguide.exception.RpcException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceInvokerTest {
+    public interface CalcService {
+        int add(int a, int b);
+
+        long add(long a, long b);
+
+        Number zero();
+
+        String greet(String name);
+
+        void crash();
+    }
+
+    public static class CalcServiceImpl implements CalcService {
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public long add(long a, long b) {
+            return a + b + 1;
+        }
+
+        // 协变返回值，编译器会生成返回 Number 的桥接方法
+        @Override
+        public Integer zero() {
+            return 0;
+        }
+
+        @Override
+        public String greet(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("name is null");
+            }
+            return "hello " + name;
+        }
+
+        @Override
+        public void crash() {
+            throw new AssertionError("crash");
+        }
+    }
+
+    private final ServiceInvoker serviceInvoker = new ServiceInvoker(new CalcServiceImpl());
+
+    @Test
+    void should_invoke_overloaded_methods_by_param_types() {
+        assertEquals(3, serviceInvoker.invoke("add", new Class<?>[]{int.class, int.class}, new Object[]{1, 2}));
+        assertEquals(4L, serviceInvoker.invoke("add", new Class<?>[]{long.class, long.class}, new Object[]{1L, 2L}));
+        assertEquals(0, serviceInvoker.invoke("zero", null, null));
+        assertEquals(0, serviceInvoker.invoke("zero", new Class<?>[0], new Object[0]));
+    }
+
+    @Test
+    void should_fail_unknown_method() {
+        RpcException e = assertThrows(RpcException.class,
+                () -> serviceInvoker.invoke("add", new Class<?>[]{String.class}, new Object[]{"1"}));
+        assertTrue(e.getMessage().contains("没有找到指定的方法"), e.getMessage());
+        assertThrows(RpcException.class, () -> serviceInvoker.invoke("sub", null, null));
+    }
+
+    @Test
+    void should_wrap_exception_of_service_method() {
+        RpcException e = assertThrows(RpcException.class,
+                () -> serviceInvoker.invoke("greet", new Class<?>[]{String.class}, new Object[]{null}));
+        assertSame(IllegalArgumentException.class, e.getCause().getClass());
+    }
+
+    @Test
+    void should_rethrow_error_of_service_method() {
+        AssertionError e = assertThrows(AssertionError.class, () -> serviceInvoker.invoke("crash", null, null));
+        assertEquals("crash", e.getMessage());
+    }
+}
@@ -0,0 +1,49 @@
+package github.javaguide.proxy;
+
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.socket.SocketRpcClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcClientProxyTest {
+    // 不会发起调用，不需要服务发现
+    private final RpcRequestTransport socketRpcClient = new SocketRpcClient(rpcRequest -> null);
+
+    public interface EchoService {
+        String echo(String message);
+    }
+
+    public interface FeedService {
+        Iterator<String> feed(Integer from);
+    }
+
+    public interface LogService {
+        Stream<String> tail(Integer lines);
+    }
+
+    public interface UploadService {
+        Integer upload(Iterator<String> lines);
+    }
+
+    public interface ChatService {
+        Stream<String> chat(Stream<String> messages);
+    }
+
+    @Test
+    void should_fail_fast_when_transport_does_not_support_streaming() {
+        RpcClientProxy rpcClientProxy = new RpcClientProxy(socketRpcClient);
+        RpcException e = assertThrows(RpcException.class, () -> rpcClientProxy.getProxy(FeedService.class));
+        assertTrue(e.getMessage().contains(FeedService.class.getName() + "#feed"), e.getMessage());
+        assertThrows(RpcException.class, () -> rpcClientProxy.getProxy(LogService.class));
+        assertThrows(RpcException.class, () -> rpcClientProxy.getProxy(UploadService.class));
+        assertThrows(RpcException.class, () -> rpcClientProxy.getProxy(ChatService.class));
+        assertNotNull(rpcClientProxy.getProxy(EchoService.class));
+    }
+}
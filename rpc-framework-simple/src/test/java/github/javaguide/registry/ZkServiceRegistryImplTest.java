@@ -9,7 +9,6 @@ import github.javaguide.remoting.dto.RpcRequest;
 import org.junit.jupiter.api.Test;
 
 import java.net.InetSocketAddress;
-import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -33,7 +32,6 @@ class ZkServiceRegistryImplTest {
 //                .parameters(args)
                 .interfaceName(rpcServiceConfig.getServiceName())
 //                .paramTypes(method.getParameterTypes())
-                .requestId(UUID.randomUUID().toString())
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
                 .build();
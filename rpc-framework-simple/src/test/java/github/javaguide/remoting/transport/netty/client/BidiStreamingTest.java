@@ -0,0 +1,233 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.exception.RpcException;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.transport.RpcStream;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import github.javaguide.remoting.transport.netty.server.NettyRpcServerHandler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BidiStreamingTest {
+    private static final AtomicBoolean streamClosed = new AtomicBoolean();
+    private static final AtomicBoolean inputFailed = new AtomicBoolean();
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private NettyRpcClient nettyRpcClient;
+    private InetSocketAddress address;
+
+    public interface QuoteService {
+        Iterator<Integer> doubled(Iterator<Integer> values);
+
+        Stream<Integer> ticks(Iterator<Integer> subscriptions);
+    }
+
+    public static class QuoteServiceImpl implements QuoteService {
+        @Override
+        public Iterator<Integer> doubled(Iterator<Integer> values) {
+            return new Iterator<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    return values.hasNext();
+                }
+
+                @Override
+                public Integer next() {
+                    return values.next() * 2;
+                }
+            };
+        }
+
+        @Override
+        public Stream<Integer> ticks(Iterator<Integer> subscriptions) {
+            // 一个线程持续读取订阅消息，直到客户端取消时读取失败
+            Thread reader = new Thread(() -> {
+                try {
+                    while (subscriptions.hasNext()) {
+                        subscriptions.next();
+                    }
+                } catch (RpcException e) {
+                    inputFailed.set(true);
+                }
+            });
+            reader.setDaemon(true);
+            reader.start();
+            return IntStream.iterate(0, i -> i + 1).boxed().onClose(() -> streamClosed.set(true));
+        }
+    }
+
+    /**
+     * 由阻塞队列支撑的流参数，调用方可以在收到服务端数据之后再决定发送什么
+     */
+    private static class QueueIterator implements Iterator<Integer> {
+        private static final int END = -1;
+        private final BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+        private Integer next;
+
+        void send(int value) {
+            queue.offer(value);
+        }
+
+        void end() {
+            queue.offer(END);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return next != END;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Integer value = next;
+            next = null;
+            return value;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        streamClosed.set(false);
+        inputFailed.set(false);
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new QuoteServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1);
+        serviceHandlerGroup = new DefaultEventExecutorGroup(2);
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        address = (InetSocketAddress) server.localAddress();
+        nettyRpcClient = new NettyRpcClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nettyRpcClient.close();
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+    }
+
+    private RpcStream<Object> call(String methodName, Iterator<Integer> values) {
+        RpcRequest rpcRequest = RpcRequest.builder().interfaceName(QuoteService.class.getCanonicalName())
+                .methodName(methodName).parameters(new Object[]{values}).paramTypes(new Class<?>[]{Iterator.class})
+                .group("").version("").build();
+        return nettyRpcClient.sendBidiStreamRequest(rpcRequest, address);
+    }
+
+    @Test
+    void should_exchange_messages_in_both_directions() throws Exception {
+        QueueIterator values = new QueueIterator();
+        RpcStream<Object> doubled = call("doubled", values);
+        Channel channel = nettyRpcClient.getChannel(address);
+        UnprocessedRequests unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+        // 每发送一个元素就等待服务端返回，两个方向交替进行，任何一方等待对方都会卡住
+        for (int i = 0; i < 1000; i++) {
+            values.send(i);
+            assertEquals(i * 2, doubled.next());
+            if (i % 100 == 0) {
+                // 普通请求与双向流复用同一个连接
+                assertEquals(RpcConstants.PONG, NettyRpcClientHandler.ping(channel, unprocessedRequests, 5000)
+                        .get(5, TimeUnit.SECONDS).getData());
+            }
+        }
+        values.end();
+        assertFalse(doubled.hasNext());
+    }
+
+    @Test
+    void should_stream_large_input_and_output() {
+        int count = 10_000;
+        RpcStream<Object> doubled = call("doubled", IntStream.range(0, count).boxed().iterator());
+        int expected = 0;
+        while (doubled.hasNext()) {
+            assertEquals(expected * 2, doubled.next());
+            expected++;
+        }
+        assertEquals(count, expected);
+    }
+
+    @Test
+    void should_cancel_both_directions() throws InterruptedException {
+        QueueIterator subscriptions = new QueueIterator();
+        RpcStream<Object> ticks = call("ticks", subscriptions);
+        subscriptions.send(1);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, ticks.next());
+        }
+        ticks.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(streamClosed.get() && inputFailed.get()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(streamClosed.get());
+        assertTrue(inputFailed.get());
+        assertFalse(ticks.hasNext());
+    }
+
+    @Test
+    void should_fail_client_when_input_fails() {
+        Iterator<Integer> broken = IntStream.range(0, 1000).boxed().map(i -> {
+            if (i == 500) {
+                throw new IllegalStateException("broken value " + i);
+            }
+            return i;
+        }).iterator();
+        RpcStream<Object> doubled = call("doubled", broken);
+        RpcException e = assertThrows(RpcException.class, () -> {
+            while (doubled.hasNext()) {
+                doubled.next();
+            }
+        });
+        assertTrue(e.getMessage().contains("服务调用失败"), e.getMessage());
+    }
+}
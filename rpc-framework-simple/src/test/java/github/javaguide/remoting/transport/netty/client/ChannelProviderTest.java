@@ -0,0 +1,64 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.factory.SingletonFactory;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChannelProviderTest {
+
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9998);
+
+    @Test
+    void should_select_channel_with_fewest_pending_requests() {
+        ChannelProvider channelProvider = new ChannelProvider(2);
+        UnprocessedRequests unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+        Channel busy = new EmbeddedChannel();
+        Channel idle = new EmbeddedChannel();
+        assertTrue(channelProvider.set(address, busy));
+        assertTrue(channelProvider.set(address, idle));
+        unprocessedRequests.put(busy, new CompletableFuture<>(), 0);
+        assertSame(idle, channelProvider.get(address));
+        unprocessedRequests.put(idle, new CompletableFuture<>(), 0);
+        unprocessedRequests.put(idle, new CompletableFuture<>(), 0);
+        assertSame(busy, channelProvider.get(address));
+    }
+
+    @Test
+    void should_reject_channel_when_pool_is_full() {
+        ChannelProvider channelProvider = new ChannelProvider(1);
+        assertTrue(channelProvider.set(address, new EmbeddedChannel()));
+        assertFalse(channelProvider.set(address, new EmbeddedChannel()));
+        assertEquals(0, channelProvider.reserveVacancies(address));
+    }
+
+    @Test
+    void should_skip_and_replace_dead_channel() {
+        ChannelProvider channelProvider = new ChannelProvider(2);
+        Channel dead = new EmbeddedChannel();
+        Channel alive = new EmbeddedChannel();
+        channelProvider.set(address, dead);
+        channelProvider.set(address, alive);
+        dead.close();
+        assertSame(alive, channelProvider.get(address));
+        // 失效的连接只补齐一次，连接建立结束之前不会重复预留
+        assertEquals(1, channelProvider.reserveVacancies(address));
+        assertEquals(0, channelProvider.reserveVacancies(address));
+        Channel replacement = new EmbeddedChannel();
+        assertTrue(channelProvider.set(address, replacement));
+        channelProvider.connected(address);
+        assertEquals(0, channelProvider.reserveVacancies(address));
+        alive.close();
+        replacement.close();
+        assertNull(channelProvider.get(address));
+    }
+}
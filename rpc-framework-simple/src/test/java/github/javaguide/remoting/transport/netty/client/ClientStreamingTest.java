@@ -0,0 +1,180 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import github.javaguide.remoting.transport.netty.server.NettyRpcServerHandler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientStreamingTest {
+    // 与默认配置一致：每批 128 个元素，服务端窗口 8 批
+    private static final int CHUNK_SIZE = 128;
+    private static final int WINDOW = 8;
+
+    private static final AtomicInteger sent = new AtomicInteger();
+    private static volatile CountDownLatch release;
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private NettyRpcClient nettyRpcClient;
+    private InetSocketAddress address;
+
+    public interface SumService {
+        Long sum(String name, Iterator<Integer> values);
+
+        Integer count(Stream<Integer> values);
+
+        Integer slowCount(Iterator<Integer> values);
+    }
+
+    public static class SumServiceImpl implements SumService {
+        @Override
+        public Long sum(String name, Iterator<Integer> values) {
+            long sum = 0;
+            while (values.hasNext()) {
+                sum += values.next();
+            }
+            return sum;
+        }
+
+        @Override
+        public Integer count(Stream<Integer> values) {
+            return (int) values.count();
+        }
+
+        @Override
+        public Integer slowCount(Iterator<Integer> values) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int count = 0;
+            while (values.hasNext()) {
+                values.next();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        sent.set(0);
+        release = new CountDownLatch(1);
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new SumServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1);
+        serviceHandlerGroup = new DefaultEventExecutorGroup(2);
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        address = (InetSocketAddress) server.localAddress();
+        nettyRpcClient = new NettyRpcClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        nettyRpcClient.close();
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+    }
+
+    private RpcResponse<Object> call(String methodName, Object[] parameters, Class<?>[] paramTypes) {
+        RpcRequest rpcRequest = RpcRequest.builder().interfaceName(SumService.class.getCanonicalName())
+                .methodName(methodName).parameters(parameters).paramTypes(paramTypes)
+                .group("").version("").build();
+        return nettyRpcClient.sendUploadRequest(rpcRequest, address);
+    }
+
+    private static Iterator<Integer> values(int count) {
+        return IntStream.range(0, count).peek(i -> sent.incrementAndGet()).boxed().iterator();
+    }
+
+    @Test
+    void should_upload_large_parameter_in_chunks() {
+        int count = 100_000;
+        Object[] parameters = {"numbers", values(count)};
+        RpcResponse<Object> rpcResponse = call("sum", parameters, new Class<?>[]{String.class, Iterator.class});
+        assertEquals(RpcResponseCodeEnum.SUCCESS.getCode(), rpcResponse.getCode());
+        assertEquals((long) count * (count - 1) / 2, rpcResponse.getData());
+        // 调用方传入的参数数组不会被修改
+        assertTrue(parameters[1] instanceof Iterator);
+    }
+
+    @Test
+    void should_pass_stream_parameter() {
+        RpcResponse<Object> rpcResponse = call("count", new Object[]{Stream.of(1, 2, 3)}, new Class<?>[]{Stream.class});
+        assertEquals(3, rpcResponse.getData());
+    }
+
+    @Test
+    void should_not_send_beyond_granted_credits_when_server_is_slow() throws InterruptedException {
+        Thread caller = new Thread(() -> call("slowCount", new Object[]{values(100_000)}, new Class<?>[]{Iterator.class}));
+        caller.start();
+        Thread.sleep(300);
+        // 服务方法还没有开始读取，客户端最多发送初始窗口的数据
+        assertTrue(sent.get() <= (WINDOW + 1) * CHUNK_SIZE, "sent " + sent.get());
+        release.countDown();
+        caller.join(5000);
+        assertEquals(100_000, sent.get());
+    }
+
+    @Test
+    void should_fail_server_method_when_client_source_fails() {
+        Iterator<Integer> broken = IntStream.range(0, 1000).boxed().map(i -> {
+            if (i == 500) {
+                throw new IllegalStateException("broken value " + i);
+            }
+            return i;
+        }).iterator();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> call("sum", new Object[]{"broken", broken}, new Class<?>[]{String.class, Iterator.class}));
+        assertEquals("broken value 500", e.getMessage());
+        // 同一个连接上的后续调用不受影响
+        assertEquals(6L, call("sum", new Object[]{"ok", values(4)}, new Class<?>[]{String.class, Iterator.class}).getData());
+    }
+
+    @Test
+    void should_reject_request_without_stream_parameter() {
+        assertThrows(IllegalArgumentException.class,
+                () -> call("sum", new Object[]{"x"}, new Class<?>[]{String.class}));
+    }
+}
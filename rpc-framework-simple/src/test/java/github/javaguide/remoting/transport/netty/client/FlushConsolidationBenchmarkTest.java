@@ -0,0 +1,30 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.TransportTypeEnum;
+import github.javaguide.remoting.transport.netty.NettyTransport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 小包请求下写合并的吞吐量与额外延迟对比
+ * 分别统计关闭和开启写合并时的吞吐量、p50 与 p99 延迟，不随单元测试运行，用 mvn test -Pbenchmark 运行
+ */
+@Tag("benchmark")
+class FlushConsolidationBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FlushConsolidationBenchmarkTest.class);
+
+    private static final int REQUESTS = 100_000;
+
+    @Test
+    void compare_throughput_and_latency_with_and_without_flush_consolidation() throws InterruptedException {
+        NettyTransport nettyTransport = NettyTransport.of(TransportTypeEnum.NIO);
+        for (boolean flushConsolidation : new boolean[]{false, true}) {
+            String result = LoopbackBenchmark.run(nettyTransport, new NettyRpcClient(nettyTransport, flushConsolidation, 256),
+                    REQUESTS);
+            log.warn("flush consolidation [{}]: {}", flushConsolidation, result);
+        }
+    }
+}
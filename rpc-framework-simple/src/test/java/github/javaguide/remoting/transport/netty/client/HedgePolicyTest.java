@@ -0,0 +1,64 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgePolicyTest {
+
+    @Test
+    void should_not_hedge_before_enough_samples() {
+        HedgePolicy hedgePolicy = new HedgePolicy(true, 95, 10);
+        for (int i = 0; i < 50; i++) {
+            hedgePolicy.record("hello", 10);
+        }
+        assertEquals(-1, hedgePolicy.getDelayMillis("hello"));
+        assertEquals(-1, hedgePolicy.getDelayMillis("unknown"));
+    }
+
+    @Test
+    void should_use_percentile_of_recent_latencies_as_delay() {
+        HedgePolicy hedgePolicy = new HedgePolicy(true, 90, 10);
+        // 90% 的请求 10ms，10% 的请求 200ms
+        for (int i = 0; i < 512; i++) {
+            hedgePolicy.record("hello", i % 10 == 0 ? 200 : 10);
+        }
+        assertEquals(200, hedgePolicy.getDelayMillis("hello"));
+        for (int i = 0; i < 512; i++) {
+            hedgePolicy.record("hello", 10);
+        }
+        // 旧样本滑出窗口后延迟随之下降
+        assertEquals(10, hedgePolicy.getDelayMillis("hello"));
+    }
+
+    @Test
+    void should_limit_hedged_requests_to_budget() {
+        HedgePolicy hedgePolicy = new HedgePolicy(true, 95, 10);
+        assertFalse(hedgePolicy.tryAcquire());
+        int hedged = 0;
+        for (int i = 0; i < 1000; i++) {
+            hedgePolicy.onRequest();
+            if (hedgePolicy.tryAcquire()) {
+                hedged++;
+            }
+        }
+        // 每 10 个普通请求最多 1 个对冲请求
+        assertEquals(100, hedged);
+        assertFalse(hedgePolicy.tryAcquire());
+    }
+
+    @Test
+    void should_cap_saved_budget() {
+        HedgePolicy hedgePolicy = new HedgePolicy(true, 95, 10);
+        for (int i = 0; i < 100_000; i++) {
+            hedgePolicy.onRequest();
+        }
+        int hedged = 0;
+        while (hedgePolicy.tryAcquire()) {
+            hedged++;
+        }
+        assertTrue(hedged <= 10, "saved budget " + hedged);
+    }
+}
@@ -0,0 +1,78 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.exception.RpcException;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightLimiterTest {
+
+    @Test
+    void should_queue_requests_over_cap_until_permit_released() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(2, false);
+        Channel channel = new EmbeddedChannel();
+        assertTrue(inFlightLimiter.acquire(channel, 0).isDone());
+        assertTrue(inFlightLimiter.acquire(channel, 0).isDone());
+        CompletableFuture<Void> third = inFlightLimiter.acquire(channel, 0);
+        assertFalse(third.isDone());
+        assertEquals(1, inFlightLimiter.getWaitingCount(channel));
+        assertEquals(1, inFlightLimiter.getWaitingCount());
+        inFlightLimiter.release(channel);
+        assertTrue(third.isDone());
+        assertEquals(0, inFlightLimiter.getWaitingCount());
+        assertEquals(2, inFlightLimiter.getInFlightCount(channel));
+    }
+
+    @Test
+    void should_fail_fast_when_cap_reached() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(1, true);
+        Channel channel = new EmbeddedChannel();
+        assertTrue(inFlightLimiter.acquire(channel, 0).isDone());
+        CompletableFuture<Void> rejected = inFlightLimiter.acquire(channel, 0);
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(e.getCause() instanceof RpcException);
+        assertEquals(1, inFlightLimiter.getInFlightCount(channel));
+    }
+
+    @Test
+    void should_fail_waiter_when_wait_times_out() throws InterruptedException {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(1, false);
+        Channel channel = new EmbeddedChannel();
+        inFlightLimiter.acquire(channel, 0);
+        CompletableFuture<Void> waiter = inFlightLimiter.acquire(channel, 50);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RpcException);
+        assertEquals(0, inFlightLimiter.getWaitingCount(channel));
+        // 超时的等待者不占用许可
+        inFlightLimiter.release(channel);
+        assertEquals(0, inFlightLimiter.getInFlightCount(channel));
+    }
+
+    @Test
+    void should_wait_while_channel_is_not_writable() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(0, false);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        // 只写不 flush，出站缓冲超过高水位
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(channel.isWritable());
+        CompletableFuture<Void> waiter = inFlightLimiter.acquire(channel, 0);
+        assertFalse(waiter.isDone());
+        channel.flush();
+        assertTrue(channel.isWritable());
+        inFlightLimiter.drain(channel);
+        assertTrue(waiter.isDone());
+        channel.finishAndReleaseAll();
+    }
+}
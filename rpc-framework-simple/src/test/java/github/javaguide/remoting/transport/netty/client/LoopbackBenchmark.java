@@ -0,0 +1,118 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.NettyTransport;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 本地回环压测：多个调用线程并发向应答服务发送小包请求，统计吞吐量与 p50/p99 延迟
+ */
+final class LoopbackBenchmark {
+
+    private static final int CALLER_THREADS = 16;
+    private static final int MAX_IN_FLIGHT = 512;
+
+    private LoopbackBenchmark() {
+    }
+
+    /**
+     * 启动应答服务并用给定的客户端压测，先发送 requests / 5 个请求预热
+     * 每次压测使用独立的服务端口，避免共用 ChannelProvider 中已建立的连接
+     * @param requests 计入结果的请求数
+     * @return 压测结果描述
+     */
+    static String run(NettyTransport nettyTransport, NettyRpcClient nettyRpcClient, int requests) throws InterruptedException {
+        EventLoopGroup serverGroup = nettyTransport.newEventLoopGroup(2);
+        try {
+            Channel server = startEchoServer(nettyTransport, serverGroup);
+            Channel channel = nettyRpcClient.getChannel((InetSocketAddress) server.localAddress());
+            send(nettyRpcClient, channel, new long[requests / 5]);
+            long[] latencies = new long[requests];
+            long start = System.nanoTime();
+            send(nettyRpcClient, channel, latencies);
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            server.close().sync();
+            return "throughput [" + requests * TimeUnit.SECONDS.toNanos(1) / elapsed + "] req/s, p50 ["
+                    + TimeUnit.NANOSECONDS.toMicros(latencies[requests / 2]) + "]us, p99 ["
+                    + TimeUnit.NANOSECONDS.toMicros(latencies[requests * 99 / 100]) + "]us";
+        } finally {
+            nettyRpcClient.close();
+            serverGroup.shutdownGracefully();
+        }
+    }
+
+    private static void send(NettyRpcClient nettyRpcClient, Channel channel, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        CountDownLatch done = new CountDownLatch(latencies.length);
+        for (int t = 0; t < CALLER_THREADS; t++) {
+            new Thread(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < latencies.length) {
+                    inFlight.acquireUninterruptibly();
+                    int slot = index;
+                    long start = System.nanoTime();
+                    CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+                    future.whenComplete((response, throwable) -> {
+                        latencies[slot] = System.nanoTime() - start;
+                        if (throwable == null) {
+                            succeeded.incrementAndGet();
+                        }
+                        inFlight.release();
+                        done.countDown();
+                    });
+                    nettyRpcClient.send(channel, RpcRequest.builder().interfaceName("hello").methodName("hello")
+                            .parameters(new Object[]{"hi"}).paramTypes(new Class<?>[]{String.class}).build(), future);
+                }
+            }).start();
+        }
+        done.await();
+        assertEquals(latencies.length, succeeded.get());
+    }
+
+    private static Channel startEchoServer(NettyTransport nettyTransport, EventLoopGroup serverGroup) throws InterruptedException {
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        return nettyTransport.configure(new ServerBootstrap()).group(serverGroup)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(new ChannelInboundHandlerAdapter() {
+                                    @Override
+                                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                        RpcMessage request = (RpcMessage) msg;
+                                        RpcMessage response = RpcMessage.builder().requestId(request.getRequestId())
+                                                .codec(request.getCodec()).compress(request.getCompress())
+                                                .messageType(RpcConstants.RESPONSE_TYPE)
+                                                .data(RpcResponse.success("hello")).build();
+                                        ctx.writeAndFlush(response);
+                                    }
+                                });
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+    }
+}
@@ -0,0 +1,314 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.TransportTypeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.registry.ServiceDiscovery;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.NettyTransport;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NettyRpcClientTest {
+
+    private static final int CONCURRENT_CALLERS = 32;
+
+    private NettyRpcClient nettyRpcClient;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        nettyRpcClient = new NettyRpcClient();
+        callers = Executors.newFixedThreadPool(CONCURRENT_CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        nettyRpcClient.close();
+    }
+
+    @Test
+    void should_share_one_connect_between_concurrent_first_calls() throws Exception {
+        EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            Channel server = new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelActive(ChannelHandlerContext ctx) {
+                            accepted.incrementAndGet();
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel();
+            InetSocketAddress address = (InetSocketAddress) server.localAddress();
+            List<CompletableFuture<Channel>> futures = callConcurrently(address);
+            Channel first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<Channel> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+            Thread.sleep(200);
+            assertEquals(1, accepted.get());
+        } finally {
+            serverGroup.shutdownGracefully();
+        }
+    }
+
+    @Test
+    void should_answer_every_request_with_flush_consolidation() throws Exception {
+        NettyTransport nettyTransport = NettyTransport.of(TransportTypeEnum.NIO);
+        // 请求全部成功才会返回
+        LoopbackBenchmark.run(nettyTransport, new NettyRpcClient(nettyTransport, true, 256), 2_000);
+    }
+
+    @Test
+    void should_answer_every_request_over_nio_and_epoll() throws Exception {
+        for (TransportTypeEnum transportType : new TransportTypeEnum[]{TransportTypeEnum.NIO, TransportTypeEnum.EPOLL}) {
+            NettyTransport nettyTransport = NettyTransport.of(transportType);
+            LoopbackBenchmark.run(nettyTransport, new NettyRpcClient(nettyTransport, false, 256), 2_000);
+        }
+    }
+
+    @Test
+    void should_fail_every_waiter_when_connect_fails() throws Exception {
+        InetSocketAddress address;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            address = new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+        }
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Channel>> futures = callConcurrently(address);
+        for (CompletableFuture<Channel> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                continue;
+            }
+            throw new AssertionError("connect to a closed port should fail");
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    void should_complete_ping_when_pong_arrives() throws Exception {
+        EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        try {
+            Channel server = new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                    .addLast(new ChannelInboundHandlerAdapter() {
+                                        @Override
+                                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                            RpcMessage request = (RpcMessage) msg;
+                                            ctx.writeAndFlush(RpcMessage.builder().requestId(request.getRequestId())
+                                                    .codec(request.getCodec()).compress(request.getCompress())
+                                                    .messageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE)
+                                                    .data(RpcConstants.PONG).build());
+                                        }
+                                    });
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel();
+            Channel channel = nettyRpcClient.getChannel((InetSocketAddress) server.localAddress());
+            UnprocessedRequests unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
+            List<CompletableFuture<RpcResponse<Object>>> pongs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                pongs.add(NettyRpcClientHandler.ping(channel, unprocessedRequests, 5000));
+            }
+            // 每个心跳都有自己的请求 id，各自收到 pong
+            for (CompletableFuture<RpcResponse<Object>> pong : pongs) {
+                assertEquals(RpcConstants.PONG, pong.get(5, TimeUnit.SECONDS).getData());
+            }
+            assertEquals(0, unprocessedRequests.getPendingCount(channel));
+        } finally {
+            serverGroup.shutdownGracefully();
+        }
+    }
+
+    @Test
+    void should_fail_pending_request_as_soon_as_channel_closes() throws Exception {
+        EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        try {
+            Channel server = new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                    .addLast(new ChannelInboundHandlerAdapter() {
+                                        @Override
+                                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                            // 服务端收到请求后不响应直接断开
+                                            ctx.close();
+                                        }
+                                    });
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel();
+            InetSocketAddress address = (InetSocketAddress) server.localAddress();
+            Channel channel = nettyRpcClient.getChannel(address);
+            CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+            long start = System.currentTimeMillis();
+            nettyRpcClient.send(channel, RpcRequest.builder().interfaceName("hello").methodName("hello")
+                    .timeout(60_000).build(), future);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                throw new AssertionError("request on a closed channel should fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RpcException);
+            }
+            // 不等到 60 秒的请求超时
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            // 重连成功之前不会交出已断开的连接
+            Channel reconnected = nettyRpcClient.getChannelAsync(address).handle((ch, throwable) -> ch).get(5, TimeUnit.SECONDS);
+            if (reconnected != null) {
+                assertTrue(reconnected.isActive());
+            }
+        } finally {
+            serverGroup.shutdownGracefully();
+        }
+    }
+
+    @Test
+    void should_fail_future_instead_of_throwing_when_lookup_fails() {
+        RpcException lookupFailure = new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, "hello");
+        NettyRpcClient lookupFailingClient = new NettyRpcClient(rpcRequest -> {
+            throw lookupFailure;
+        });
+        try {
+            RpcRequest rpcRequest = RpcRequest.builder().interfaceName("hello").methodName("hello").group("").version("")
+                    .parameters(new Object[0]).paramTypes(new Class<?>[0]).build();
+            CompletableFuture<RpcResponse<Object>> future = lookupFailingClient.sendRpcRequestAsync(rpcRequest);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertSame(lookupFailure, e.getCause());
+        } finally {
+            lookupFailingClient.close();
+        }
+    }
+
+    @Test
+    void should_retry_on_another_provider_after_attempt_times_out() throws Exception {
+        EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        NettyRpcClient retryingClient = null;
+        try {
+            // 第一个节点收到请求后一直不响应
+            InetSocketAddress hanging = (InetSocketAddress) new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec);
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel().localAddress();
+            InetSocketAddress answering = (InetSocketAddress) new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                    .addLast(new ChannelInboundHandlerAdapter() {
+                                        @Override
+                                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                            RpcMessage request = (RpcMessage) msg;
+                                            ctx.writeAndFlush(RpcMessage.builder().requestId(request.getRequestId())
+                                                    .codec(request.getCodec()).compress(request.getCompress())
+                                                    .messageType(RpcConstants.RESPONSE_TYPE)
+                                                    .data(RpcResponse.success("answered")).build());
+                                        }
+                                    });
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel().localAddress();
+            List<String> retryLookupThreads = new CopyOnWriteArrayList<>();
+            retryingClient = new NettyRpcClient(new ServiceDiscovery() {
+                @Override
+                public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+                    return hanging;
+                }
+
+                @Override
+                public InetSocketAddress lookupService(RpcRequest rpcRequest, Set<String> excludedAddresses) {
+                    retryLookupThreads.add(Thread.currentThread().getName());
+                    return excludedAddresses.contains("127.0.0.1:" + hanging.getPort()) ? answering : hanging;
+                }
+            });
+            RpcRequest rpcRequest = RpcRequest.builder().interfaceName("hello").methodName("hello").group("").version("")
+                    .parameters(new Object[0]).paramTypes(new Class<?>[0])
+                    .timeout(2000).idempotent(true).retries(1).build();
+            // 第一次尝试只用一半的超时时间，超时后还来得及在第二个节点上重试
+            RpcResponse<Object> rpcResponse = retryingClient.sendRpcRequestAsync(rpcRequest).get(5, TimeUnit.SECONDS);
+            assertEquals("answered", rpcResponse.getData());
+            // 重试的服务发现不在时间轮线程中执行
+            assertEquals(1, retryLookupThreads.size());
+            assertTrue(retryLookupThreads.get(0).startsWith("rpc-client-policy"), retryLookupThreads.get(0));
+        } finally {
+            if (retryingClient != null) {
+                retryingClient.close();
+            }
+            serverGroup.shutdownGracefully();
+        }
+    }
+
+    private List<CompletableFuture<Channel>> callConcurrently(InetSocketAddress address) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<CompletableFuture<Channel>>> calls = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_CALLERS; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return nettyRpcClient.getChannelAsync(address);
+            }, callers));
+        }
+        start.countDown();
+        List<CompletableFuture<Channel>> futures = new ArrayList<>();
+        for (CompletableFuture<CompletableFuture<Channel>> call : calls) {
+            futures.add(call.join());
+        }
+        return futures;
+    }
+}
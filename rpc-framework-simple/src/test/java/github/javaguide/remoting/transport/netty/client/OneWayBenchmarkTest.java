@@ -0,0 +1,141 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import github.javaguide.remoting.transport.netty.server.NettyRpcServerHandler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 本地回环上 void 方法的单向调用与普通调用的吞吐量对比，不随单元测试运行，用 mvn test -Pbenchmark 运行
+ */
+@Tag("benchmark")
+class OneWayBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OneWayBenchmarkTest.class);
+    private static final int MAX_IN_FLIGHT = 512;
+    private static final int WARMUP_REQUESTS = 20_000;
+    private static final int REQUESTS = 100_000;
+    private static final AtomicInteger recorded = new AtomicInteger();
+
+    public interface AuditService {
+        void record(Integer event);
+    }
+
+    public static class AuditServiceImpl implements AuditService {
+        @Override
+        public void record(Integer event) {
+            recorded.incrementAndGet();
+        }
+    }
+
+    @Test
+    void compare_throughput_of_one_way_and_request_response() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new AuditServiceImpl()).build());
+        EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(4);
+        NettyRpcClient nettyRpcClient = new NettyRpcClient();
+        try {
+            NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+            RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+            Channel server = new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                    .addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel();
+            InetSocketAddress address = (InetSocketAddress) server.localAddress();
+            Channel channel = nettyRpcClient.getChannel(address);
+
+            requestResponse(nettyRpcClient, channel, WARMUP_REQUESTS);
+            oneWay(nettyRpcClient, address, WARMUP_REQUESTS);
+
+            long requestResponse = requestResponse(nettyRpcClient, channel, REQUESTS);
+            long oneWay = oneWay(nettyRpcClient, address, REQUESTS);
+            log.warn("void calls: request-response [{}] req/s, one-way [{}] req/s", requestResponse, oneWay);
+        } finally {
+            nettyRpcClient.close();
+            serverGroup.shutdownGracefully();
+            serviceHandlerGroup.shutdownGracefully();
+        }
+    }
+
+    private static RpcRequest request(int event) {
+        return RpcRequest.builder().interfaceName(AuditService.class.getCanonicalName())
+                .methodName("record").parameters(new Object[]{event}).paramTypes(new Class<?>[]{Integer.class})
+                .group("").version("").build();
+    }
+
+    /**
+     * @return 每秒完成的调用数
+     */
+    private static long requestResponse(NettyRpcClient nettyRpcClient, Channel channel, int requests) {
+        recorded.set(0);
+        // 与 LoopbackBenchmark 相同，限制等待响应的请求数，避免请求在发送许可上排队超时
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+            future.whenComplete((response, throwable) -> inFlight.release());
+            nettyRpcClient.send(channel, request(i), future);
+            futures[i] = future;
+        }
+        CompletableFuture.allOf(futures).join();
+        long elapsed = System.nanoTime() - start;
+        assertEquals(requests, recorded.get());
+        return requests * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * 单向调用没有响应，以服务端执行完全部调用为结束
+     * @return 每秒完成的调用数
+     */
+    private static long oneWay(NettyRpcClient nettyRpcClient, InetSocketAddress address, int requests) throws InterruptedException {
+        recorded.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            // 单向调用没有响应可等，按服务端已执行的调用数限制积压，否则请求在 channel 不可写时排队到超时被丢弃
+            while (i - recorded.get() >= MAX_IN_FLIGHT) {
+                Thread.yield();
+            }
+            nettyRpcClient.sendOneWayRequest(request(i), address);
+        }
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (recorded.get() < requests && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(requests, recorded.get());
+        return requests * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+}
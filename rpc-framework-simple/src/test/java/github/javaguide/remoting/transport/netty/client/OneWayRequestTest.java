@@ -0,0 +1,124 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import github.javaguide.remoting.transport.netty.server.NettyRpcServerHandler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OneWayRequestTest {
+    private static final int REQUESTS = 100;
+    private static final AtomicInteger recorded = new AtomicInteger();
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private NettyRpcClient nettyRpcClient;
+    private InetSocketAddress address;
+
+    public interface EventService {
+        void record(Integer event);
+
+        Integer count();
+    }
+
+    public static class EventServiceImpl implements EventService {
+        @Override
+        public void record(Integer event) {
+            recorded.incrementAndGet();
+        }
+
+        @Override
+        public Integer count() {
+            return recorded.get();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        recorded.set(0);
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new EventServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1);
+        serviceHandlerGroup = new DefaultEventExecutorGroup(1);
+        nettyRpcClient = new NettyRpcClient();
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        address = (InetSocketAddress) server.localAddress();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nettyRpcClient.close();
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+    }
+
+    private static RpcRequest request(String methodName, Object[] parameters, Class<?>[] paramTypes) {
+        return RpcRequest.builder().interfaceName(EventService.class.getCanonicalName())
+                .methodName(methodName).parameters(parameters).paramTypes(paramTypes)
+                .group("").version("").build();
+    }
+
+    @Test
+    void should_execute_every_one_way_request() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            nettyRpcClient.sendOneWayRequest(request("record", new Object[]{i}, new Class<?>[]{Integer.class}), address);
+        }
+        // 单向调用在后台等待许可后才写出，可能晚于下面的普通调用；同一连接上的普通调用仍能收到自己的响应
+        long deadline = System.currentTimeMillis() + 5000;
+        Object count;
+        do {
+            CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+            nettyRpcClient.send(nettyRpcClient.getChannel(address), request("count", new Object[0], new Class<?>[0]), future);
+            count = future.get(5, TimeUnit.SECONDS).getData();
+        } while (!Integer.valueOf(REQUESTS).equals(count) && System.currentTimeMillis() < deadline);
+        assertEquals(REQUESTS, count);
+    }
+
+    @Test
+    void should_drop_one_way_request_when_lookup_fails() {
+        NettyRpcClient lookupFailingClient = new NettyRpcClient(rpcRequest -> {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcRequest.getRpcServiceName());
+        });
+        try {
+            assertDoesNotThrow(() -> lookupFailingClient.sendOneWayRequest(
+                    request("record", new Object[]{0}, new Class<?>[]{Integer.class})));
+        } finally {
+            lookupFailingClient.close();
+        }
+    }
+}
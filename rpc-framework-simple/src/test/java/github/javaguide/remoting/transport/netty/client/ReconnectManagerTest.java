@@ -0,0 +1,104 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReconnectManagerTest {
+
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9998);
+    private final ChannelProvider channelProvider = new ChannelProvider(1);
+
+    /**
+     * 前 failures 次连接失败，之后成功并放入连接池
+     */
+    private Function<InetSocketAddress, CompletableFuture<Channel>> connector(int failures, AtomicInteger attempts) {
+        return inetSocketAddress -> {
+            CompletableFuture<Channel> future = new CompletableFuture<>();
+            if (attempts.incrementAndGet() <= failures) {
+                future.completeExceptionally(new IllegalStateException("connection refused"));
+            } else {
+                Channel channel = new EmbeddedChannel();
+                channelProvider.set(inetSocketAddress, channel);
+                future.complete(channel);
+            }
+            return future;
+        };
+    }
+
+    @Test
+    void should_reconnect_with_backoff_until_connected() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ReconnectManager reconnectManager = new ReconnectManager(channelProvider, connector(3, attempts), 1, 10, 0);
+        reconnectManager.onChannelClosed(address);
+        // 重连期间不会交出任何连接
+        assertTrue(reconnectManager.isReconnecting(address));
+        assertNull(channelProvider.get(address));
+        awaitReconnected(reconnectManager);
+        assertFalse(reconnectManager.isReconnecting(address));
+        assertEquals(4, attempts.get());
+        assertNotNull(channelProvider.get(address));
+    }
+
+    @Test
+    void should_give_up_after_max_attempts() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ReconnectManager reconnectManager = new ReconnectManager(channelProvider, connector(Integer.MAX_VALUE, attempts), 1, 10, 5);
+        reconnectManager.onChannelClosed(address);
+        awaitReconnected(reconnectManager);
+        assertEquals(5, attempts.get());
+        assertNull(channelProvider.get(address));
+    }
+
+    @Test
+    void should_run_one_reconnect_per_address() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ReconnectManager reconnectManager = new ReconnectManager(channelProvider, connector(0, attempts), 50, 50, 0);
+        for (int i = 0; i < 10; i++) {
+            reconnectManager.onChannelClosed(address);
+        }
+        awaitReconnected(reconnectManager);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void should_back_off_after_failed_replenish() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ReconnectManager reconnectManager = new ReconnectManager(channelProvider, connector(0, attempts), 50, 50, 0);
+        reconnectManager.onConnectFailed(address);
+        // 补齐失败后先退避，由后台补齐，而不是由下一次调用立即重试
+        assertTrue(reconnectManager.isReconnecting(address));
+        awaitReconnected(reconnectManager);
+        assertEquals(1, attempts.get());
+        assertNotNull(channelProvider.get(address));
+    }
+
+    @Test
+    void should_not_reconnect_after_close() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ReconnectManager reconnectManager = new ReconnectManager(channelProvider, connector(0, attempts), 1, 1, 0);
+        reconnectManager.close();
+        reconnectManager.onChannelClosed(address);
+        Thread.sleep(100);
+        assertFalse(reconnectManager.isReconnecting(address));
+        assertEquals(0, attempts.get());
+    }
+
+    private void awaitReconnected(ReconnectManager reconnectManager) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reconnectManager.isReconnecting(address) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
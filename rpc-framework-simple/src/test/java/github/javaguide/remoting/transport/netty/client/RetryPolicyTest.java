@@ -0,0 +1,35 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    @Test
+    void should_prefer_request_retries_over_global_config() {
+        RetryPolicy retryPolicy = new RetryPolicy(2, 50, 1000);
+        assertEquals(2, retryPolicy.getRetries(0));
+        assertEquals(5, retryPolicy.getRetries(5));
+    }
+
+    @Test
+    void should_back_off_exponentially_with_jitter_up_to_max() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 50, 1000);
+        long maxOfFirst = 0;
+        long maxOfThird = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long first = retryPolicy.getBackoffMillis(0);
+            long third = retryPolicy.getBackoffMillis(2);
+            assertTrue(first >= 0 && first <= 50, "first backoff " + first);
+            assertTrue(third >= 0 && third <= 200, "third backoff " + third);
+            assertTrue(retryPolicy.getBackoffMillis(30) <= 1000);
+            maxOfFirst = Math.max(maxOfFirst, first);
+            maxOfThird = Math.max(maxOfThird, third);
+        }
+        // 随机抖动覆盖整个退避区间
+        assertTrue(maxOfFirst > 40);
+        assertTrue(maxOfThird > 150);
+    }
+}
@@ -0,0 +1,199 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.exception.RpcException;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.transport.RpcStream;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import github.javaguide.remoting.transport.netty.server.NettyRpcServerHandler;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerStreamingTest {
+    // 与默认配置一致：每批 128 个元素，客户端窗口 8 批
+    private static final int CHUNK_SIZE = 128;
+    private static final int WINDOW = 8;
+
+    private static final AtomicInteger produced = new AtomicInteger();
+    private static final AtomicBoolean streamClosed = new AtomicBoolean();
+    private static volatile CountDownLatch gate = new CountDownLatch(1);
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private NettyRpcClient nettyRpcClient;
+    private InetSocketAddress address;
+
+    public interface RowService {
+        Iterator<Integer> rows(Integer count);
+
+        Stream<Integer> failAfter(Integer count);
+
+        Iterator<Integer> blocked(Integer count);
+    }
+
+    public static class RowServiceImpl implements RowService {
+        @Override
+        public Iterator<Integer> rows(Integer count) {
+            return IntStream.range(0, count).peek(i -> produced.incrementAndGet()).iterator();
+        }
+
+        @Override
+        public Stream<Integer> failAfter(Integer count) {
+            return IntStream.range(0, Integer.MAX_VALUE).boxed().map(i -> {
+                if (i.equals(count)) {
+                    throw new IllegalStateException("broken row " + i);
+                }
+                return i;
+            }).onClose(() -> streamClosed.set(true));
+        }
+
+        @Override
+        public Iterator<Integer> blocked(Integer count) {
+            // 每个元素都要等 gate 打开才能产出
+            return IntStream.range(0, count).peek(i -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).iterator();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        produced.set(0);
+        streamClosed.set(false);
+        gate = new CountDownLatch(1);
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new RowServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1);
+        // 只有一个线程：若迭代在连接绑定的线程上执行，阻塞的流会拖住其他所有请求
+        serviceHandlerGroup = new DefaultEventExecutorGroup(1);
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                // 水位线很低，流在发送过程中会多次因连接不可写而暂停
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(16, 32))
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        address = (InetSocketAddress) server.localAddress();
+        nettyRpcClient = new NettyRpcClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        nettyRpcClient.close();
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+    }
+
+    private RpcStream<Object> call(String methodName, int count) {
+        RpcRequest rpcRequest = RpcRequest.builder().interfaceName(RowService.class.getCanonicalName())
+                .methodName(methodName).parameters(new Object[]{count}).paramTypes(new Class<?>[]{Integer.class})
+                .group("").version("").build();
+        return nettyRpcClient.sendStreamRequest(rpcRequest, address);
+    }
+
+    @Test
+    void should_stream_large_result_in_order() {
+        int count = 100_000;
+        RpcStream<Object> rows = call("rows", count);
+        int expected = 0;
+        while (rows.hasNext()) {
+            assertEquals(expected++, rows.next());
+        }
+        assertEquals(count, expected);
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    void should_not_produce_beyond_granted_credits_for_slow_consumer() throws InterruptedException {
+        RpcStream<Object> rows = call("rows", 100_000);
+        assertEquals(0, rows.next());
+        Thread.sleep(300);
+        // 客户端只取走了一批，服务端最多发送初始窗口加上补充的半个窗口
+        int limit = (WINDOW + WINDOW / 2 + 1) * CHUNK_SIZE;
+        assertTrue(produced.get() <= limit, "produced " + produced.get());
+        rows.close();
+    }
+
+    @Test
+    void should_stop_server_when_client_cancels() throws InterruptedException {
+        RpcStream<Object> rows = call("failAfter", Integer.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, rows.next());
+        }
+        rows.close();
+        // 当前批次还剩 24 个元素未取走，关闭后不再返回
+        assertFalse(rows.hasNext());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!streamClosed.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(streamClosed.get());
+    }
+
+    @Test
+    void should_fail_client_when_server_stream_fails() {
+        RpcStream<Object> rows = call("failAfter", 1000);
+        RpcException e = assertThrows(RpcException.class, () -> {
+            while (rows.hasNext()) {
+                rows.next();
+            }
+        });
+        assertTrue(e.getMessage().contains("服务调用失败"), e.getMessage());
+        assertTrue(streamClosed.get());
+    }
+
+    @Test
+    void should_not_stall_other_streams_while_iterator_blocks() {
+        RpcStream<Object> blocked = call("blocked", 10);
+        RpcStream<Object> rows = call("rows", 10_000);
+        int expected = 0;
+        while (rows.hasNext()) {
+            assertEquals(expected++, rows.next());
+        }
+        assertEquals(10_000, expected);
+        gate.countDown();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, blocked.next());
+        }
+        assertFalse(blocked.hasNext());
+    }
+}
@@ -0,0 +1,29 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.TransportTypeEnum;
+import github.javaguide.remoting.transport.netty.NettyTransport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * nio 与 epoll 传输层在本地回环上的吞吐量与延迟对比，epoll 不可用时两次都是 nio
+ * 不随单元测试运行，用 mvn test -Pbenchmark 运行
+ */
+@Tag("benchmark")
+class TransportBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransportBenchmarkTest.class);
+
+    private static final int REQUESTS = 100_000;
+
+    @Test
+    void compare_throughput_and_latency_of_nio_and_epoll() throws InterruptedException {
+        for (TransportTypeEnum transportType : new TransportTypeEnum[]{TransportTypeEnum.NIO, TransportTypeEnum.EPOLL}) {
+            NettyTransport nettyTransport = NettyTransport.of(transportType);
+            String result = LoopbackBenchmark.run(nettyTransport, new NettyRpcClient(nettyTransport, false, 256), REQUESTS);
+            log.warn("transport [{}]: {}", nettyTransport.getTransportType().getName(), result);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 模拟服务端永远不响应：发出 100 万个请求，全部应当超时，
+ * 并且未处理请求表、时间轮和堆内存都不会随请求数增长
+ */
+@Slf4j
+class UnprocessedRequestsTest {
+
+    private static final int TOTAL_REQUESTS = 1_000_000;
+    private static final int BATCH_SIZE = 100_000;
+    private static final long TIMEOUT_MILLIS = 20;
+
+    @Test
+    void should_expire_all_requests_and_keep_heap_flat_when_server_never_replies() throws InterruptedException {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        Channel channel = new EmbeddedChannel();
+        AtomicInteger timeoutCount = new AtomicInteger();
+        long baselineHeap = usedHeap();
+        long maxHeapGrowth = 0;
+        for (int batch = 0; batch < TOTAL_REQUESTS / BATCH_SIZE; batch++) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+                future.whenComplete((response, throwable) -> {
+                    if (throwable != null) {
+                        timeoutCount.incrementAndGet();
+                    }
+                });
+                unprocessedRequests.put(channel, future, TIMEOUT_MILLIS);
+            }
+            awaitDrained(unprocessedRequests, channel);
+            long heapGrowth = usedHeap() - baselineHeap;
+            maxHeapGrowth = Math.max(maxHeapGrowth, heapGrowth);
+            log.info("batch [{}] done, timeout count [{}], heap growth [{}]KB", batch, timeoutCount.get(), heapGrowth / 1024);
+        }
+        assertEquals(TOTAL_REQUESTS, timeoutCount.get());
+        assertEquals(0, unprocessedRequests.getPendingCount(channel));
+        assertEquals(0, unprocessedRequests.getPendingTimeoutCount());
+        // 每批 10 万个请求全部过期后，堆内存回到基线附近，不随总请求数线性增长
+        assertTrue(maxHeapGrowth < 32 * 1024 * 1024, "heap grows " + maxHeapGrowth + " bytes");
+    }
+
+    @Test
+    void should_cancel_timeout_when_response_arrives_in_time() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        Channel channel = new EmbeddedChannel();
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        int requestId = unprocessedRequests.put(channel, future, 60_000);
+        unprocessedRequests.complete(channel, requestId, RpcResponse.success("ok"));
+        assertEquals("ok", future.join().getData());
+        assertEquals(0, unprocessedRequests.getPendingCount(channel));
+    }
+
+    @Test
+    void should_allocate_request_id_per_channel() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        Channel channel1 = new EmbeddedChannel();
+        Channel channel2 = new EmbeddedChannel();
+        assertEquals(0, unprocessedRequests.put(channel1, new CompletableFuture<>(), 0));
+        assertEquals(1, unprocessedRequests.put(channel1, new CompletableFuture<>(), 0));
+        assertEquals(0, unprocessedRequests.put(channel2, new CompletableFuture<>(), 0));
+        // 另一个 channel 上相同 id 的响应不会完成本 channel 的请求
+        unprocessedRequests.complete(channel2, 1, RpcResponse.success("other"));
+        assertEquals(2, unprocessedRequests.getPendingCount(channel1));
+        assertEquals(1, unprocessedRequests.getPendingCount(channel2));
+    }
+
+    @Test
+    void should_fail_all_pending_requests_of_closed_channel() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        Channel closed = new EmbeddedChannel();
+        Channel alive = new EmbeddedChannel();
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> second = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> other = new CompletableFuture<>();
+        unprocessedRequests.put(closed, first, 60_000);
+        unprocessedRequests.put(closed, second, 0);
+        unprocessedRequests.put(alive, other, 0);
+        assertEquals(2, unprocessedRequests.failAll(closed, new IllegalStateException("closed")));
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertFalse(other.isDone());
+        assertEquals(0, unprocessedRequests.getPendingCount(closed));
+    }
+
+    private static void awaitDrained(UnprocessedRequests unprocessedRequests, Channel channel) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((unprocessedRequests.getPendingCount(channel) > 0 || unprocessedRequests.getPendingTimeoutCount() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
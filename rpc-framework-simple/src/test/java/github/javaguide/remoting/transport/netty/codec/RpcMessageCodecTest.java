@@ -0,0 +1,309 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import lombok.AllArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcMessageCodecTest {
+    private static final Logger log = LoggerFactory.getLogger(RpcMessageCodecTest.class);
+    private static final int FRAGMENT_SIZE = 64 * 1024;
+
+    // 与 hello-service-api 中的 HelloService 相同
+    public interface HelloService {
+        String hello(Hello hello);
+    }
+
+    @AllArgsConstructor
+    public static class Hello implements Serializable {
+        private String message;
+        private String description;
+    }
+
+    private static RpcMessage helloRequest(int requestId) {
+        RpcRequest rpcRequest = RpcRequest.builder().interfaceName(HelloService.class.getCanonicalName())
+                .methodName("hello").parameters(new Object[]{new Hello("111", "222")}).paramTypes(new Class<?>[]{Hello.class})
+                .group("test1").version("version1").build();
+        return RpcMessage.builder().requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.REQUEST_TYPE)
+                .data(rpcRequest).build();
+    }
+
+    private static RpcMessage response(int requestId, int size) {
+        byte[] blob = new byte[size];
+        // 随机数据压缩不了，压缩后仍然超过分片大小
+        new Random(requestId).nextBytes(blob);
+        return RpcMessage.builder().requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .data(RpcResponse.success(blob)).build();
+    }
+
+    private static List<ByteBuf> encode(RpcMessageCodec codec, RpcMessage rpcMessage) {
+        EmbeddedChannel channel = new EmbeddedChannel(codec);
+        channel.writeOutbound(rpcMessage);
+        List<ByteBuf> frames = new ArrayList<>();
+        for (ByteBuf frame = channel.readOutbound(); frame != null; frame = channel.readOutbound()) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    @Test
+    void should_fragment_and_reassemble_large_message() {
+        RpcMessageCodec codec = new RpcMessageCodec(FRAGMENT_SIZE, Long.MAX_VALUE, Long.MAX_VALUE);
+        RpcMessage rpcMessage = response(7, 1024 * 1024);
+        List<ByteBuf> frames = encode(codec, rpcMessage);
+        assertTrue(frames.size() > 16, "frames " + frames.size());
+        frames.forEach(frame -> assertTrue(frame.readableBytes() <= FRAGMENT_SIZE));
+
+        EmbeddedChannel receiver = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        for (int i = 0; i < frames.size() - 1; i++) {
+            receiver.writeInbound(frames.get(i));
+            assertNull(receiver.readInbound());
+        }
+        receiver.writeInbound(frames.get(frames.size() - 1));
+        RpcMessage decoded = receiver.readInbound();
+        assertEquals(RpcConstants.RESPONSE_TYPE, decoded.getMessageType());
+        assertEquals(7, decoded.getRequestId());
+        assertArrayEquals((byte[]) ((RpcResponse<?>) rpcMessage.getData()).getData(),
+                (byte[]) ((RpcResponse<?>) decoded.getData()).getData());
+        assertEquals(0, MessageReassembler.getTotalBytes());
+    }
+
+    @Test
+    void should_keep_small_message_in_one_frame() {
+        RpcMessageCodec codec = new RpcMessageCodec(FRAGMENT_SIZE, Long.MAX_VALUE, Long.MAX_VALUE);
+        List<ByteBuf> frames = encode(codec, response(1, 1024));
+        assertEquals(1, frames.size());
+        assertEquals(RpcConstants.RESPONSE_TYPE, frames.get(0).getByte(9));
+    }
+
+    @Test
+    void should_reject_only_response_beyond_connection_limit() {
+        RpcMessageCodec sender = new RpcMessageCodec(FRAGMENT_SIZE, Long.MAX_VALUE, Long.MAX_VALUE);
+        List<ByteBuf> frames = encode(sender, response(1, 512 * 1024));
+        RpcMessageCodec codec = new RpcMessageCodec(FRAGMENT_SIZE, 256 * 1024, Long.MAX_VALUE);
+        EmbeddedChannel receiver = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        // 第一个分片就带有总长度，收到时即拒绝，不会先缓存一部分；上层收到失败响应，不必等到超时
+        receiver.writeInbound(frames.get(0));
+        RpcMessage rejected = receiver.readInbound();
+        assertEquals(RpcConstants.RESPONSE_TYPE, rejected.getMessageType());
+        assertEquals(1, rejected.getRequestId());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), ((RpcResponse<?>) rejected.getData()).getCode());
+        assertEquals(0, MessageReassembler.getTotalBytes());
+        // 后续分片直接丢弃，不会以同一 requestId 开始新的重组
+        for (int i = 1; i < frames.size(); i++) {
+            receiver.writeInbound(frames.get(i));
+            assertNull(receiver.readInbound());
+        }
+        assertEquals(0, MessageReassembler.getTotalBytes());
+        // 连接仍然可用
+        assertTrue(receiver.isActive());
+        for (ByteBuf frame : encode(sender, response(1, 128 * 1024))) {
+            receiver.writeInbound(frame);
+        }
+        RpcMessage decoded = receiver.readInbound();
+        assertEquals(1, decoded.getRequestId());
+        assertEquals(RpcResponseCodeEnum.SUCCESS.getCode(), ((RpcResponse<?>) decoded.getData()).getCode());
+    }
+
+    private static RpcMessage uploadRequest(byte messageType, int requestId, long seed, int size) {
+        byte[] blob = new byte[size];
+        new Random(seed).nextBytes(blob);
+        RpcRequest rpcRequest = RpcRequest.builder().interfaceName(HelloService.class.getCanonicalName())
+                .methodName("upload").parameters(new Object[]{blob}).paramTypes(new Class<?>[]{byte[].class})
+                .group("").version("").build();
+        return RpcMessage.builder().requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(messageType)
+                .data(rpcRequest).build();
+    }
+
+    @Test
+    void should_answer_request_beyond_connection_limit_with_fail() {
+        RpcMessage rpcMessage = uploadRequest(RpcConstants.REQUEST_TYPE, 3, 3, 512 * 1024);
+        List<ByteBuf> frames = encode(new RpcMessageCodec(FRAGMENT_SIZE, Long.MAX_VALUE, Long.MAX_VALUE), rpcMessage);
+        RpcMessageCodec codec = new RpcMessageCodec(FRAGMENT_SIZE, 256 * 1024, Long.MAX_VALUE);
+        EmbeddedChannel receiver = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        frames.forEach(receiver::writeInbound);
+        assertNull(receiver.readInbound());
+        assertTrue(receiver.isActive());
+        // 立即响应失败
+        EmbeddedChannel client = new EmbeddedChannel(new RpcMessageFrameDecoder(), new RpcMessageCodec());
+        client.writeInbound((ByteBuf) receiver.readOutbound());
+        RpcMessage response = client.readInbound();
+        assertEquals(RpcConstants.RESPONSE_TYPE, response.getMessageType());
+        assertEquals(3, response.getRequestId());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), ((RpcResponse<?>) response.getData()).getCode());
+        assertNull(receiver.readOutbound());
+    }
+
+    @Test
+    void should_reassemble_interleaved_one_way_requests() {
+        RpcMessageCodec codec = new RpcMessageCodec(FRAGMENT_SIZE, Long.MAX_VALUE, Long.MAX_VALUE);
+        // 单向请求都没有 requestId，同一连接上发送的两条分片消息需要区分开
+        RpcMessage first = uploadRequest(RpcConstants.ONEWAY_REQUEST_TYPE, 0, 1, 256 * 1024);
+        RpcMessage second = uploadRequest(RpcConstants.ONEWAY_REQUEST_TYPE, 0, 2, 256 * 1024);
+        EmbeddedChannel sender = new EmbeddedChannel(codec);
+        List<ByteBuf> firstFrames = new ArrayList<>();
+        sender.writeOutbound(first);
+        for (ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound()) {
+            firstFrames.add(frame);
+        }
+        List<ByteBuf> secondFrames = new ArrayList<>();
+        sender.writeOutbound(second);
+        for (ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound()) {
+            secondFrames.add(frame);
+        }
+        assertTrue(firstFrames.size() > 1 && secondFrames.size() > 1);
+
+        EmbeddedChannel receiver = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        int size = Math.max(firstFrames.size(), secondFrames.size());
+        for (int i = 0; i < size; i++) {
+            if (i < firstFrames.size()) {
+                receiver.writeInbound(firstFrames.get(i));
+            }
+            if (i < secondFrames.size()) {
+                receiver.writeInbound(secondFrames.get(i));
+            }
+        }
+        List<byte[]> received = new ArrayList<>();
+        for (RpcMessage decoded = receiver.readInbound(); decoded != null; decoded = receiver.readInbound()) {
+            assertEquals(RpcConstants.ONEWAY_REQUEST_TYPE, decoded.getMessageType());
+            received.add((byte[]) ((RpcRequest) decoded.getData()).getParameters()[0]);
+        }
+        assertEquals(2, received.size());
+        assertArrayEquals((byte[]) ((RpcRequest) first.getData()).getParameters()[0], received.get(0));
+        assertArrayEquals((byte[]) ((RpcRequest) second.getData()).getParameters()[0], received.get(1));
+        assertEquals(0, MessageReassembler.getTotalBytes());
+    }
+
+    @Test
+    void should_share_process_limit_across_connections() {
+        RpcMessageCodec sender = new RpcMessageCodec(FRAGMENT_SIZE, Long.MAX_VALUE, Long.MAX_VALUE);
+        List<ByteBuf> first = encode(sender, response(1, 512 * 1024));
+        List<ByteBuf> second = encode(sender, response(2, 512 * 1024));
+        RpcMessageCodec codec = new RpcMessageCodec(FRAGMENT_SIZE, Long.MAX_VALUE, 800 * 1024);
+        EmbeddedChannel a = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        EmbeddedChannel b = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        // a 上的消息只收到第一个分片，为它预留的内存使 b 上的消息超过进程上限
+        a.writeInbound(first.get(0));
+        assertTrue(MessageReassembler.getTotalBytes() > 0);
+        second.forEach(b::writeInbound);
+        RpcMessage rejected = b.readInbound();
+        assertEquals(2, rejected.getRequestId());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), ((RpcResponse<?>) rejected.getData()).getCode());
+        assertNull(b.readInbound());
+        // a 断开后归还预留的内存
+        a.close();
+        assertEquals(0, MessageReassembler.getTotalBytes());
+        for (ByteBuf frame : encode(sender, response(2, 512 * 1024))) {
+            b.writeInbound(frame);
+        }
+        RpcMessage decoded = b.readInbound();
+        assertEquals(2, decoded.getRequestId());
+        assertEquals(RpcResponseCodeEnum.SUCCESS.getCode(), ((RpcResponse<?>) decoded.getData()).getCode());
+        first.subList(1, first.size()).forEach(ByteBuf::release);
+    }
+
+    @Test
+    void should_send_only_method_id_after_first_request() {
+        RpcMessageCodec codec = new RpcMessageCodec();
+        EmbeddedChannel sender = new EmbeddedChannel(codec);
+        EmbeddedChannel receiver = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        int[] sizes = new int[3];
+        for (int i = 0; i < sizes.length; i++) {
+            sender.writeOutbound(helloRequest(i + 1));
+            ByteBuf frame = sender.readOutbound();
+            sizes[i] = frame.readableBytes();
+            receiver.writeInbound(frame);
+            RpcMessage decoded = receiver.readInbound();
+            RpcRequest rpcRequest = (RpcRequest) decoded.getData();
+            assertEquals(HelloService.class.getCanonicalName(), rpcRequest.getInterfaceName());
+            assertEquals("hello", rpcRequest.getMethodName());
+            assertEquals("test1", rpcRequest.getGroup());
+            assertEquals("version1", rpcRequest.getVersion());
+            assertArrayEquals(new Class<?>[]{Hello.class}, rpcRequest.getParamTypes());
+            assertEquals("111", ((Hello) rpcRequest.getParameters()[0]).message);
+        }
+        log.info("HelloService#hello frame size: first [{}] bytes, then [{}] bytes", sizes[0], sizes[1]);
+        assertTrue(sizes[1] < sizes[0], sizes[1] + " >= " + sizes[0]);
+        assertEquals(sizes[1], sizes[2]);
+    }
+
+    @Test
+    void should_round_trip_requests_and_responses_with_every_serialization() {
+        for (SerializationTypeEnum serializationType : SerializationTypeEnum.values()) {
+            RpcMessageCodec codec = new RpcMessageCodec();
+            EmbeddedChannel sender = new EmbeddedChannel(codec);
+            EmbeddedChannel receiver = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+            // 第一个请求定义方法编号，之后的请求只带编号
+            for (int i = 1; i <= 3; i++) {
+                RpcRequest rpcRequest = RpcRequest.builder().interfaceName(HelloService.class.getCanonicalName())
+                        .methodName("echo").parameters(new Object[]{"hello " + i, i}).paramTypes(new Class<?>[]{String.class, Integer.class})
+                        .group("test1").version("version1").build();
+                sender.writeOutbound(RpcMessage.builder().requestId(i).codec(serializationType.getCode())
+                        .compress(CompressTypeEnum.GZIP.getCode()).messageType(RpcConstants.REQUEST_TYPE).data(rpcRequest).build());
+                receiver.writeInbound((ByteBuf) sender.readOutbound());
+                RpcMessage decoded = receiver.readInbound();
+                RpcRequest actual = (RpcRequest) decoded.getData();
+                assertEquals(HelloService.class.getCanonicalName(), actual.getInterfaceName(), serializationType.getName());
+                assertEquals("echo", actual.getMethodName(), serializationType.getName());
+                assertEquals("test1", actual.getGroup(), serializationType.getName());
+                assertArrayEquals(new Class<?>[]{String.class, Integer.class}, actual.getParamTypes(), serializationType.getName());
+                assertArrayEquals(new Object[]{"hello " + i, i}, actual.getParameters(), serializationType.getName());
+            }
+            sender.writeOutbound(RpcMessage.builder().requestId(4).codec(serializationType.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode()).messageType(RpcConstants.RESPONSE_TYPE)
+                    .data(RpcResponse.success("world")).build());
+            receiver.writeInbound((ByteBuf) sender.readOutbound());
+            RpcMessage decoded = receiver.readInbound();
+            assertEquals("world", ((RpcResponse<?>) decoded.getData()).getData(), serializationType.getName());
+        }
+    }
+
+    @Test
+    void should_keep_method_ids_per_connection() {
+        RpcMessageCodec codec = new RpcMessageCodec();
+        EmbeddedChannel sender = new EmbeddedChannel(codec);
+        sender.writeOutbound(helloRequest(1));
+        ((ByteBuf) sender.readOutbound()).release();
+        sender.writeOutbound(helloRequest(2));
+        ByteBuf compact = sender.readOutbound();
+        // 新连接上没有定义过编号，只有编号的请求无法还原
+        EmbeddedChannel receiver = new EmbeddedChannel(new RpcMessageFrameDecoder(), codec);
+        assertThrows(CorruptedFrameException.class, () -> receiver.writeInbound(compact));
+        // 另一个发送连接重新定义编号
+        EmbeddedChannel another = new EmbeddedChannel(codec);
+        another.writeOutbound(helloRequest(3));
+        receiver.writeInbound((ByteBuf) another.readOutbound());
+        RpcMessage decoded = receiver.readInbound();
+        assertEquals("hello", ((RpcRequest) decoded.getData()).getMethodName());
+    }
+}
@@ -0,0 +1,88 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+    private static final long SERVICE_NANOS = 1_000_000;
+
+    /**
+     * 模拟能同时处理 capacity 个请求的服务端：每轮到达 offered 个请求，超过 capacity 的部分排队，
+     * 延迟随排队的请求数线性增长
+     *
+     * @return 本轮被接受的请求数
+     */
+    private static int round(AdaptiveConcurrencyLimiter limiter, int offered, int capacity) {
+        int admitted = 0;
+        while (admitted < offered && limiter.tryAcquire()) {
+            admitted++;
+        }
+        long rtt = SERVICE_NANOS * Math.max(capacity, admitted) / capacity;
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(rtt);
+        }
+        return admitted;
+    }
+
+    @Test
+    void should_reject_above_limit_and_return_cancelled_permits() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.cancel();
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void should_shrink_to_capacity_under_overload() {
+        int capacity = 16;
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100, 1000);
+        // 低负载时测得无排队的延迟
+        for (int i = 0; i < 20; i++) {
+            round(limiter, 4, capacity);
+        }
+        // 到达量远超处理能力
+        long admittedSum = 0;
+        long limitSum = 0;
+        int rounds = 500;
+        for (int i = 0; i < rounds; i++) {
+            int admitted = round(limiter, 10 * capacity, capacity);
+            if (i >= rounds / 2) {
+                admittedSum += admitted;
+                limitSum += limiter.getLimit();
+            }
+        }
+        double averageAdmitted = (double) admittedSum / (rounds / 2);
+        double averageLimit = (double) limitSum / (rounds / 2);
+        // 接受的请求基本占满处理能力，又不会大量排队
+        assertTrue(averageAdmitted >= capacity * 0.9, "admitted " + averageAdmitted);
+        assertTrue(averageLimit <= capacity + 10, "limit " + averageLimit);
+    }
+
+    @Test
+    void should_grow_when_latency_stays_flat() {
+        int capacity = 200;
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1000);
+        int maxLimit = 0;
+        for (int i = 0; i < 1000; i++) {
+            round(limiter, 1000, capacity);
+            maxLimit = Math.max(maxLimit, limiter.getLimit());
+        }
+        assertTrue(maxLimit >= capacity, "limit " + maxLimit);
+        assertTrue(limiter.getLimit() <= capacity + 20, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void should_not_grow_when_load_is_far_below_limit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1000);
+        for (int i = 0; i < 1000; i++) {
+            round(limiter, 5, 100);
+        }
+        assertTrue(limiter.getLimit() <= 20, "limit " + limiter.getLimit());
+    }
+}
@@ -0,0 +1,144 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncServiceTest {
+    private static final int CALLS = 50;
+    private static final int DELAY_MILLIS = 100;
+    // 模拟下游 I/O 的完成线程
+    private static final ScheduledExecutorService downstream = Executors.newSingleThreadScheduledExecutor();
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private RpcTestClient rpcTestClient;
+
+    public interface QuoteService {
+        CompletableFuture<Integer> quote(Integer id);
+
+        CompletableFuture<Integer> reject(Integer id);
+    }
+
+    public static class QuoteServiceImpl implements QuoteService {
+        @Override
+        public CompletableFuture<Integer> quote(Integer id) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            downstream.schedule(() -> {
+                if (id < 0) {
+                    future.completeExceptionally(new IllegalArgumentException("id " + id));
+                } else {
+                    future.complete(id * 10);
+                }
+            }, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<Integer> reject(Integer id) {
+            // 同步抛出异常，而不是返回异常完成的 future
+            throw new IllegalArgumentException("id " + id);
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new QuoteServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1);
+        // 只有一个工作线程，且不按请求分发
+        serviceHandlerGroup = new DefaultEventExecutorGroup(1);
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        rpcTestClient = new RpcTestClient((InetSocketAddress) server.localAddress());
+    }
+
+    @AfterEach
+    void tearDown() {
+        rpcTestClient.close();
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+    }
+
+    private CompletableFuture<RpcResponse<Object>> quote(int id) {
+        return send("quote", id);
+    }
+
+    private CompletableFuture<RpcResponse<Object>> send(String methodName, int id) {
+        RpcRequest rpcRequest = RpcRequest.builder().interfaceName(QuoteService.class.getCanonicalName())
+                .methodName(methodName).parameters(new Object[]{id}).paramTypes(new Class<?>[]{Integer.class})
+                .group("").version("").build();
+        return rpcTestClient.send(rpcRequest);
+    }
+
+    @Test
+    void should_not_hold_worker_while_future_is_pending() throws Exception {
+        List<CompletableFuture<RpcResponse<Object>>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            futures.add(quote(i));
+        }
+        for (int i = 0; i < CALLS; i++) {
+            assertEquals(i * 10, futures.get(i).get(5, TimeUnit.SECONDS).getData());
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 唯一的工作线程阻塞等待时至少需要 CALLS * DELAY_MILLIS
+        assertTrue(elapsed < (long) CALLS * DELAY_MILLIS / 5, "elapsed " + elapsed + "ms");
+    }
+
+    @Test
+    void should_respond_fail_when_future_completes_exceptionally() throws Exception {
+        RpcResponse<Object> rpcResponse = quote(-1).get(5, TimeUnit.SECONDS);
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), rpcResponse.getCode());
+        // 连接仍然可用
+        assertEquals(10, quote(1).get(5, TimeUnit.SECONDS).getData());
+    }
+
+    @Test
+    void should_respond_fail_when_method_throws_synchronously() throws Exception {
+        CompletableFuture<RpcResponse<Object>> pending = quote(1);
+        RpcResponse<Object> rpcResponse = send("reject", 1).get(5, TimeUnit.SECONDS);
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), rpcResponse.getCode());
+        // 同一连接上进行中的调用不受影响
+        assertFalse(pending.isDone());
+        assertEquals(10, pending.get(5, TimeUnit.SECONDS).getData());
+    }
+}
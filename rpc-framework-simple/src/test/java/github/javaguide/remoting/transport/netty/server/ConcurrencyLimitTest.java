@@ -0,0 +1,128 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimitTest {
+    private static final long LIMIT_TIMEOUT_MILLIS = 300;
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private RpcTestClient rpcTestClient;
+
+    public interface HangService {
+        CompletableFuture<Integer> hang(Integer id);
+
+        Integer echo(Integer id);
+    }
+
+    public static class HangServiceImpl implements HangService {
+        @Override
+        public CompletableFuture<Integer> hang(Integer id) {
+            // 永远不会完成
+            return new CompletableFuture<>();
+        }
+
+        @Override
+        public Integer echo(Integer id) {
+            return id;
+        }
+    }
+
+    private static RpcRequest request(String methodName, int id) {
+        return RpcRequest.builder().interfaceName(HangService.class.getCanonicalName())
+                .methodName(methodName).parameters(new Object[]{id}).paramTypes(new Class<?>[]{Integer.class})
+                .group("").version("").build();
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new HangServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1);
+        serviceHandlerGroup = new DefaultEventExecutorGroup(1);
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        // 同时只允许 1 个调用
+        RpcRequestDispatcher rpcRequestDispatcher = new RpcRequestDispatcher(nettyRpcServerHandler, 1, LIMIT_TIMEOUT_MILLIS);
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(rpcRequestDispatcher).addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        rpcTestClient = new RpcTestClient((InetSocketAddress) server.localAddress());
+    }
+
+    @AfterEach
+    void tearDown() {
+        rpcTestClient.close();
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+    }
+
+    private RpcResponse<Object> echo(int id) throws Exception {
+        return rpcTestClient.send(request("echo", id)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void should_return_permit_before_response() throws Exception {
+        // 收到响应时名额已归还，逐个发出的调用都不会被拒绝
+        for (int i = 0; i < 1000; i++) {
+            RpcResponse<Object> rpcResponse = echo(i);
+            assertEquals(RpcResponseCodeEnum.SUCCESS.getCode(), rpcResponse.getCode());
+            assertEquals(i, rpcResponse.getData());
+        }
+    }
+
+    @Test
+    void should_release_permit_of_call_that_never_completes() throws Exception {
+        long start = System.nanoTime();
+        CompletableFuture<RpcResponse<Object>> hang = rpcTestClient.send(request("hang", 0));
+        // 同一连接上的请求按顺序获取名额，hang 占着唯一的名额
+        assertEquals(RpcResponseCodeEnum.LIMITED.getCode(), echo(1).getCode());
+
+        // 超过 LIMIT_TIMEOUT_MILLIS 后名额被归还
+        long deadline = System.currentTimeMillis() + 5000;
+        RpcResponse<Object> rpcResponse = echo(2);
+        while (!Integer.valueOf(RpcResponseCodeEnum.SUCCESS.getCode()).equals(rpcResponse.getCode()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            rpcResponse = echo(2);
+        }
+        assertEquals(2, rpcResponse.getData());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= LIMIT_TIMEOUT_MILLIS);
+        for (int i = 3; i < 10; i++) {
+            assertEquals(i, echo(i).getData());
+        }
+        assertFalse(hang.isDone());
+    }
+}
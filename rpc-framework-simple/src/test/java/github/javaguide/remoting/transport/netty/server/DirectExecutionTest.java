@@ -0,0 +1,156 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.annotation.RpcMethod;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectExecutionTest {
+    private static final String IO_THREAD_PREFIX = "direct-test-io";
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private RpcRequestDispatcher rpcRequestDispatcher;
+    private RpcTestClient rpcTestClient;
+
+    public interface LookupService {
+        @RpcMethod(direct = true)
+        String lookup(Integer id);
+
+        String load(Integer id);
+    }
+
+    public static class LookupServiceImpl implements LookupService {
+        @Override
+        public String lookup(Integer id) {
+            return id + "@" + Thread.currentThread().getName();
+        }
+
+        @Override
+        public String load(Integer id) {
+            return lookup(id);
+        }
+    }
+
+    public interface CacheService {
+        String get(Integer id);
+    }
+
+    public static class CacheServiceImpl implements CacheService {
+        @Override
+        public String get(Integer id) {
+            if (id < 0) {
+                // 直接执行的方法阻塞过久，由 watchdog 告警
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return id + "@" + Thread.currentThread().getName();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        ZkServiceProviderImpl serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        serviceProvider.addService(RpcServiceConfig.builder().group("").version("").service(new LookupServiceImpl()).build());
+        serviceProvider.addService(RpcServiceConfig.builder().group("").version("").direct(true)
+                .service(new CacheServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1, new DefaultThreadFactory(IO_THREAD_PREFIX));
+        serviceHandlerGroup = new DefaultEventExecutorGroup(1);
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        rpcRequestDispatcher = new RpcRequestDispatcher(nettyRpcServerHandler);
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                .addLast(rpcRequestDispatcher).addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        rpcTestClient = new RpcTestClient((InetSocketAddress) server.localAddress());
+    }
+
+    @AfterEach
+    void tearDown() {
+        rpcTestClient.close();
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+        rpcRequestDispatcher.close();
+    }
+
+    private static Set<Thread> watchdogThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("direct-call-watchdog"))
+                .collect(Collectors.toSet());
+    }
+
+    private String call(Class<?> serviceInterface, String methodName, int id) throws Exception {
+        RpcRequest rpcRequest = RpcRequest.builder().interfaceName(serviceInterface.getCanonicalName())
+                .methodName(methodName).parameters(new Object[]{id}).paramTypes(new Class<?>[]{Integer.class})
+                .group("").version("").build();
+        return (String) rpcTestClient.send(rpcRequest).get(5, TimeUnit.SECONDS).getData();
+    }
+
+    @Test
+    void should_run_direct_method_on_io_thread() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            String result = call(LookupService.class, "lookup", i);
+            assertTrue(result.startsWith(i + "@" + IO_THREAD_PREFIX), result);
+        }
+        // 未声明的方法仍交给工作线程
+        String result = call(LookupService.class, "load", 1);
+        assertTrue(result.startsWith("1@"), result);
+        assertFalse(result.startsWith("1@" + IO_THREAD_PREFIX), result);
+    }
+
+    @Test
+    void should_run_all_methods_of_direct_service_on_io_thread() throws Exception {
+        String result = call(CacheService.class, "get", 1);
+        assertTrue(result.startsWith("1@" + IO_THREAD_PREFIX), result);
+        // 阻塞的直接调用只告警，结果不受影响
+        result = call(CacheService.class, "get", -1);
+        assertTrue(result.startsWith("-1@" + IO_THREAD_PREFIX), result);
+    }
+
+    @Test
+    void should_stop_watchdog_when_dispatcher_closes() throws Exception {
+        Set<Thread> before = watchdogThreads();
+        call(CacheService.class, "get", 1);
+        Set<Thread> started = watchdogThreads();
+        started.removeAll(before);
+        assertEquals(1, started.size());
+        rpcRequestDispatcher.close();
+        Thread watchdog = started.iterator().next();
+        watchdog.join(5000);
+        assertFalse(watchdog.isAlive());
+    }
+}
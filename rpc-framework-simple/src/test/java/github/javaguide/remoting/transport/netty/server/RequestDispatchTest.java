@@ -0,0 +1,181 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.annotation.RpcMethod;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDispatchTest {
+    private static final int CALLS = 8;
+    private static final int SLEEP_MILLIS = 100;
+
+    private static final AtomicInteger running = new AtomicInteger();
+    private static final AtomicInteger maxRunning = new AtomicInteger();
+    private static final List<Integer> executed = new CopyOnWriteArrayList<>();
+
+    private EventLoopGroup serverGroup;
+    private DefaultEventExecutorGroup serviceHandlerGroup;
+    private RpcTestClient rpcTestClient;
+
+    public interface SleepService {
+        Integer sleep(Integer id);
+
+        @RpcMethod(ordered = true)
+        Integer sleepInOrder(Integer id);
+
+        Integer fail(Integer id);
+    }
+
+    public static class SleepServiceImpl implements SleepService {
+        @Override
+        public Integer sleep(Integer id) {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(SLEEP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.add(id);
+            running.decrementAndGet();
+            return id;
+        }
+
+        @Override
+        public Integer sleepInOrder(Integer id) {
+            return sleep(id);
+        }
+
+        @Override
+        public Integer fail(Integer id) {
+            throw new IllegalStateException("id " + id);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        running.set(0);
+        maxRunning.set(0);
+        executed.clear();
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class)
+                .addService(RpcServiceConfig.builder().group("").version("").service(new SleepServiceImpl()).build());
+        serverGroup = new NioEventLoopGroup(1);
+        serviceHandlerGroup = new DefaultEventExecutorGroup(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (rpcTestClient != null) {
+            rpcTestClient.close();
+        }
+        serverGroup.shutdownGracefully();
+        serviceHandlerGroup.shutdownGracefully();
+    }
+
+    private InetSocketAddress startServer(boolean dispatchPerRequest) throws InterruptedException {
+        NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+        RpcRequestDispatcher rpcRequestDispatcher = new RpcRequestDispatcher(nettyRpcServerHandler);
+        RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+        Channel server = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline p = ch.pipeline();
+                        p.addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec);
+                        if (dispatchPerRequest) {
+                            p.addLast(rpcRequestDispatcher);
+                        }
+                        p.addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        return (InetSocketAddress) server.localAddress();
+    }
+
+    private static RpcRequest request(String methodName, int id) {
+        return RpcRequest.builder().interfaceName(SleepService.class.getCanonicalName())
+                .methodName(methodName).parameters(new Object[]{id}).paramTypes(new Class<?>[]{Integer.class})
+                .group("").version("").build();
+    }
+
+    /**
+     * 在一个连接上同时发起 CALLS 个调用，返回全部完成的耗时(毫秒)
+     */
+    private long callConcurrently(InetSocketAddress address, String methodName) throws InterruptedException {
+        rpcTestClient = new RpcTestClient(address);
+        List<CompletableFuture<RpcResponse<Object>>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            futures.add(rpcTestClient.send(request(methodName, i)));
+        }
+        for (int i = 0; i < CALLS; i++) {
+            assertEquals(i, futures.get(i).join().getData());
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void should_run_calls_of_one_connection_in_parallel() throws InterruptedException {
+        long elapsed = callConcurrently(startServer(true), "sleep");
+        // 分发线程池默认有 2 * CPU 个线程，至少能同时执行两个调用
+        assertTrue(maxRunning.get() > 1, "max running " + maxRunning.get());
+        assertTrue(elapsed < (long) CALLS * SLEEP_MILLIS, "elapsed " + elapsed + "ms");
+    }
+
+    @Test
+    void should_keep_order_of_ordered_method() throws InterruptedException {
+        callConcurrently(startServer(true), "sleepInOrder");
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < CALLS; i++) {
+            assertEquals(i, executed.get(i));
+        }
+    }
+
+    @Test
+    void should_pin_connection_to_one_thread_without_dispatcher() throws InterruptedException {
+        long elapsed = callConcurrently(startServer(false), "sleep");
+        assertEquals(1, maxRunning.get());
+        assertFalse(elapsed < (long) CALLS * SLEEP_MILLIS, "elapsed " + elapsed + "ms");
+    }
+
+    @Test
+    void should_respond_fail_without_closing_connection() throws Exception {
+        rpcTestClient = new RpcTestClient(startServer(true));
+        CompletableFuture<RpcResponse<Object>> pending = rpcTestClient.send(request("sleep", 0));
+        RpcResponse<Object> rpcResponse = rpcTestClient.send(request("fail", 1)).get(5, TimeUnit.SECONDS);
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), rpcResponse.getCode());
+        // 同一连接上进行中的调用不受影响
+        assertEquals(0, pending.get(5, TimeUnit.SECONDS).getData());
+        assertEquals(2, rpcTestClient.send(request("sleep", 2)).get(5, TimeUnit.SECONDS).getData());
+    }
+}
@@ -0,0 +1,83 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端测试用的客户端，只有一个连接，按请求 id 把响应交给对应的 future，没有超时、重试等客户端策略
+ */
+final class RpcTestClient {
+    private final EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+    private final Map<Integer, CompletableFuture<RpcResponse<Object>>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final Channel channel;
+
+    RpcTestClient(InetSocketAddress address) throws InterruptedException {
+        channel = new Bootstrap().group(eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(new RpcMessageCodec())
+                                .addLast(new SimpleChannelInboundHandler<RpcMessage>() {
+                                    @Override
+                                    @SuppressWarnings("unchecked")
+                                    protected void channelRead0(ChannelHandlerContext ctx, RpcMessage msg) {
+                                        if (msg.getMessageType() != RpcConstants.RESPONSE_TYPE) {
+                                            return;
+                                        }
+                                        CompletableFuture<RpcResponse<Object>> future = pendingRequests.remove(msg.getRequestId());
+                                        if (future != null) {
+                                            future.complete((RpcResponse<Object>) msg.getData());
+                                        }
+                                    }
+                                });
+                    }
+                })
+                .connect(address).sync().channel();
+    }
+
+    CompletableFuture<RpcResponse<Object>> send(RpcRequest rpcRequest) {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        pendingRequests.put(requestId, future);
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                .requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        channel.writeAndFlush(rpcMessage).addListener(f -> {
+            if (!f.isSuccess()) {
+                pendingRequests.remove(requestId);
+                future.completeExceptionally(f.cause());
+            }
+        });
+        return future;
+    }
+
+    void close() {
+        channel.close();
+        eventLoopGroup.shutdownGracefully();
+    }
+}
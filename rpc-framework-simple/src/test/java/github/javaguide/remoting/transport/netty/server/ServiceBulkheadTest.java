@@ -0,0 +1,129 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.ServiceBulkhead;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageCodec;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageFrameDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceBulkheadTest {
+    private static final CountDownLatch release = new CountDownLatch(1);
+
+    public interface ReportService {
+        String report(Integer id);
+    }
+
+    public static class ReportServiceImpl implements ReportService {
+        @Override
+        public String report(Integer id) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "report " + id;
+        }
+    }
+
+    public interface PriceService {
+        Integer price(Integer id);
+    }
+
+    public static class PriceServiceImpl implements PriceService {
+        @Override
+        public Integer price(Integer id) {
+            return id * 100;
+        }
+    }
+
+    private static RpcRequest request(Class<?> serviceInterface, String methodName, int id) {
+        return RpcRequest.builder().interfaceName(serviceInterface.getCanonicalName())
+                .methodName(methodName).parameters(new Object[]{id}).paramTypes(new Class<?>[]{Integer.class})
+                .group("").version("").build();
+    }
+
+    @Test
+    void should_isolate_slow_service_and_reject_when_full() throws Exception {
+        ZkServiceProviderImpl serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        // 报表服务只有 1 个线程和 1 个排队位置
+        serviceProvider.addService(RpcServiceConfig.builder().group("").version("").threads(1).queueSize(1)
+                .service(new ReportServiceImpl()).build());
+        serviceProvider.addService(RpcServiceConfig.builder().group("").version("").service(new PriceServiceImpl()).build());
+        ServiceBulkhead bulkhead = serviceProvider.getBulkheads().stream()
+                .filter(b -> b.getRpcServiceName().startsWith(ReportService.class.getCanonicalName()))
+                .findFirst().orElseThrow(IllegalStateException::new);
+
+        EventLoopGroup serverGroup = new NioEventLoopGroup(1);
+        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(1);
+        RpcTestClient rpcTestClient = null;
+        try {
+            NettyRpcServerHandler nettyRpcServerHandler = new NettyRpcServerHandler();
+            RpcRequestDispatcher rpcRequestDispatcher = new RpcRequestDispatcher(nettyRpcServerHandler);
+            RpcMessageCodec rpcMessageCodec = new RpcMessageCodec();
+            Channel server = new ServerBootstrap().group(serverGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new RpcMessageFrameDecoder()).addLast(rpcMessageCodec)
+                                    .addLast(rpcRequestDispatcher).addLast(serviceHandlerGroup, nettyRpcServerHandler);
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel();
+            rpcTestClient = new RpcTestClient((InetSocketAddress) server.localAddress());
+
+            List<CompletableFuture<RpcResponse<Object>>> reports = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                reports.add(rpcTestClient.send(request(ReportService.class, "report", i)));
+            }
+            // 超出线程和队列的 3 个请求立即得到过载响应
+            for (int i = 2; i < 5; i++) {
+                RpcResponse<Object> rpcResponse = reports.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(RpcResponseCodeEnum.OVERLOADED.getCode(), rpcResponse.getCode());
+            }
+            assertEquals(1, bulkhead.getActiveCount());
+            assertEquals(1, bulkhead.getQueueSize());
+            assertEquals(3, bulkhead.getRejectedCount());
+
+            // 报表服务占满了自己的线程，其他服务不受影响
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i * 100, rpcTestClient.send(request(PriceService.class, "price", i)).get(5, TimeUnit.SECONDS).getData());
+            }
+            assertTrue(!reports.get(0).isDone() && !reports.get(1).isDone());
+
+            release.countDown();
+            assertEquals("report 0", reports.get(0).get(5, TimeUnit.SECONDS).getData());
+            assertEquals("report 1", reports.get(1).get(5, TimeUnit.SECONDS).getData());
+        } finally {
+            release.countDown();
+            if (rpcTestClient != null) {
+                rpcTestClient.close();
+            }
+            serverGroup.shutdownGracefully();
+            serviceHandlerGroup.shutdownGracefully();
+        }
+    }
+}
@@ -3,8 +3,6 @@ package github.javaguide.serialize.hessian;
 import github.javaguide.remoting.dto.RpcRequest;
 import org.junit.jupiter.api.Test;
 
-import java.util.UUID;
-
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class HessianSerializerTest {
@@ -15,7 +13,6 @@ class HessianSerializerTest {
                 .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
                 .interfaceName("github.javaguide.HelloService")
                 .paramTypes(new Class<?>[]{String.class, String.class})
-                .requestId(UUID.randomUUID().toString())
                 .group("group1")
                 .version("version1")
                 .build();
@@ -24,6 +21,6 @@ class HessianSerializerTest {
         RpcRequest actual = hessianSerializer.deserialize(bytes, RpcRequest.class);
         assertEquals(target.getGroup(), actual.getGroup());
         assertEquals(target.getVersion(), actual.getVersion());
-        assertEquals(target.getRequestId(), actual.getRequestId());
+        assertEquals(target.getMethodName(), actual.getMethodName());
     }
 }
\ No newline at end of file